@@ -0,0 +1,124 @@
+package br.usp.language.automata;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Computes the FIRST and NULLABLE sets of the compiled submachines of a StackMachine, and from them which machine
+ * call each state should take for each input.
+ *
+ * FIRST(s) has the inputs that can be consumed next from state s, following the epsilon transition taken by the
+ * interpreter and calls of submachines; NULLABLE(s) tells whether an accept state can be reached from s without
+ * consuming any input. The sets of a machine are the ones of its initial state.
+ *
+ * @author Marcelo Li Koga
+ */
+final class Lookahead {
+
+    private Lookahead() {
+    }
+
+    /**
+     * Fills the lookahead tables of all compiled machines. All tables must have the same width.
+     *
+     * @param tables tables of the compiled machines indexed by the id of their names (null for terminals)
+     */
+    static void compute(TransitionTable[] tables) {
+        for (TransitionTable table : tables) {
+            if (table != null) {
+                table.first = new BitSet[table.states.length];
+                table.nullable = new boolean[table.states.length];
+                for (int s = 0; s < table.states.length; s++) {
+                    table.first[s] = new BitSet(table.width);
+                }
+            }
+        }
+
+        // Fixed point: the sets only grow
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (TransitionTable table : tables) {
+                if (table != null) {
+                    changed |= update(table, tables);
+                }
+            }
+        }
+
+        for (TransitionTable table : tables) {
+            if (table != null) {
+                fillChoices(table, tables);
+            }
+        }
+    }
+
+    /**
+     * One pass over the states of a table
+     *
+     * @return true if any set changed
+     */
+    private static boolean update(TransitionTable table, TransitionTable[] tables) {
+        boolean changed = false;
+        for (int s = 0; s < table.states.length; s++) {
+            BitSet first = table.first[s];
+            int before = first.cardinality();
+            boolean nullable = table.epsilonAccept[s];
+
+            int row = s * table.width;
+            for (int symbol = 0; symbol < table.width; symbol++) {
+                if (table.next[row + symbol] != TransitionTable.NONE)
+                    first.set(symbol);
+            }
+            if (table.epsilonTo[s] != TransitionTable.NONE) {
+                first.or(table.first[table.epsilonTo[s]]);
+                nullable |= table.nullable[table.epsilonTo[s]];
+            }
+            for (int c = table.callStart[s]; c < table.callStart[s + 1]; c++) {
+                TransitionTable called = tables[table.callSymbol[c]];
+                first.or(called.first[called.initial]);
+                if (called.nullable[called.initial]) {
+                    // The call may consume nothing, so what comes after it also counts
+                    first.or(table.first[table.callTo[c]]);
+                    nullable |= table.nullable[table.callTo[c]];
+                }
+            }
+
+            if (first.cardinality() != before || nullable != table.nullable[s]) {
+                table.nullable[s] = nullable;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * For each state and input, the first call of the state whose machine can start with the input or consume
+     * nothing.
+     */
+    private static void fillChoices(TransitionTable table, TransitionTable[] tables) {
+        table.callChoice = new int[table.states.length * table.width];
+        table.nullableChoice = new int[table.states.length];
+        Arrays.fill(table.callChoice, TransitionTable.NONE);
+        Arrays.fill(table.nullableChoice, TransitionTable.NONE);
+
+        for (int s = 0; s < table.states.length; s++) {
+            int row = s * table.width;
+            for (int c = table.callStart[s]; c < table.callStart[s + 1]; c++) {
+                TransitionTable called = tables[table.callSymbol[c]];
+                BitSet first = called.first[called.initial];
+                for (int symbol = first.nextSetBit(0); symbol >= 0; symbol = first.nextSetBit(symbol + 1)) {
+                    if (table.callChoice[row + symbol] == TransitionTable.NONE)
+                        table.callChoice[row + symbol] = c;
+                }
+                if (called.nullable[called.initial]) {
+                    for (int symbol = 0; symbol < table.width; symbol++) {
+                        if (table.callChoice[row + symbol] == TransitionTable.NONE)
+                            table.callChoice[row + symbol] = c;
+                    }
+                    if (table.nullableChoice[s] == TransitionTable.NONE)
+                        table.nullableChoice[s] = c;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package br.usp.language.automata;
+
+import java.util.BitSet;
+
+/**
+ * Tells which inputs a StackMachineCursor can consume next, without trying them. For every state of every machine,
+ * the table keeps the inputs consumed from that state and the ones for which the machine returns to its caller
+ * first, both found once by running a cursor on each (state, input) pair. The inputs of a configuration are then
+ * found by going down the stack of the cursor, so they cost one union of sets per stacked machine.
+ *
+ * The table is built from the compiled machine, which must not change afterwards. It is only read, so it can be
+ * shared by many threads.
+ *
+ * @author Marcelo Li Koga
+ */
+public final class PrefixTable {
+
+    private final TransitionTable[] tables;
+
+    private final SymbolTable symbols;
+
+    /** Inputs that are not machine names */
+    private final BitSet terminals;
+
+    /** Inputs consumed from each state of each machine, when the machine is at the bottom of the stack */
+    private final BitSet[][] consumedAtBottom;
+
+    /** Inputs consumed from each state of each machine, when it was called by another one */
+    private final BitSet[][] consumed;
+
+    /** Inputs for which each state of each machine returns to its caller before consuming them */
+    private final BitSet[][] returned;
+
+    public PrefixTable(StackMachine machine) {
+        StackMachineCursor probe = machine.newCursor();
+        this.tables = probe.getTables();
+        this.symbols = probe.getSymbolTable();
+        this.terminals = new BitSet();
+        for (int symbol = 0; symbol < this.symbols.size(); symbol++) {
+            if (!this.symbols.isNonTerminal(symbol))
+                this.terminals.set(symbol);
+        }
+
+        this.consumedAtBottom = new BitSet[this.tables.length][];
+        this.consumed = new BitSet[this.tables.length][];
+        this.returned = new BitSet[this.tables.length][];
+        for (int m = 0; m < this.tables.length; m++) {
+            if (this.tables[m] == null)
+                continue;
+            int states = this.tables[m].states.length;
+            this.consumedAtBottom[m] = new BitSet[states];
+            this.consumed[m] = new BitSet[states];
+            this.returned[m] = new BitSet[states];
+            for (int s = 0; s < states; s++) {
+                this.consumedAtBottom[m][s] = new BitSet();
+                this.consumed[m][s] = new BitSet();
+                this.returned[m][s] = new BitSet();
+                for (int t = this.terminals.nextSetBit(0); t >= 0; t = this.terminals.nextSetBit(t + 1)) {
+                    probe.moveTo(m, s);
+                    if (probe.input(t, false) == StackMachineCursor.CONSUMED && !probe.isAtErrorState())
+                        this.consumedAtBottom[m][s].set(t);
+                    probe.moveTo(m, s);
+                    int result = probe.input(t, true);
+                    if (result == StackMachineCursor.CONSUMED && !probe.isAtErrorState())
+                        this.consumed[m][s].set(t);
+                    else if (result == StackMachineCursor.RETURNED)
+                        this.returned[m][s].set(t);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return ids of the symbols of the machine
+     */
+    public SymbolTable getSymbolTable() {
+        return this.symbols;
+    }
+
+    /**
+     * @param cursor a cursor of the machine of this table
+     * @return ids of the inputs that the cursor consumes at its current configuration; a new set
+     */
+    public BitSet getExpected(StackMachineCursor cursor) {
+        BitSet result = new BitSet();
+        BitSet pending = (BitSet) this.terminals.clone();
+        int machine = cursor.getMachine();
+        int state = cursor.getState();
+        for (int level = cursor.getStackDepth(); !pending.isEmpty(); level--) {
+            if (level == 0) {
+                pending.and(this.consumedAtBottom[machine][state]);
+                result.or(pending);
+                break;
+            }
+            BitSet here = (BitSet) pending.clone();
+            here.and(this.consumed[machine][state]);
+            result.or(here);
+            pending.and(this.returned[machine][state]);
+
+            // Goes on at the caller, after the call of this machine
+            int caller = cursor.getStackedMachine(level - 1);
+            int returnState = cursor.getStackedState(level - 1);
+            int call = this.tables[caller].callIndex(returnState, machine);
+            machine = caller;
+            state = call == TransitionTable.NONE ? returnState : this.tables[caller].callTo[call];
+        }
+        return result;
+    }
+}
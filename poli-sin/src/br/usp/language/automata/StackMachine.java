@@ -13,10 +13,18 @@ public class StackMachine {
     /** Map with submachines. Key: name */
     private Map<String, StateMachine> subMachines;
 
-    // The machines stack is not enough because the same machine can be stacked more than once
-    // Thus, we need to know which is the state, because we only use 1 instance of each machine
-    private Stack<StateMachine> stackMachines;
-    private Stack<String> stackReturnStates;
+    /** Ids of the symbols of the compiled submachines; null until the machine is compiled */
+    private SymbolTable symbols;
+
+    /** Compiled submachines indexed by the id of their names */
+    private StateMachine[] machinesBySymbol;
+
+    /** Their compiled tables, which are the definition shared by the cursors */
+    private TransitionTable[] tables;
+
+    // The machine runs through its own cursor, which keeps the current machine, state and the stack of calling
+    // machines. The current states of the StateMachines and the actions of the transitions follow the cursor.
+    private StackMachineCursor cursor;
 
     /**
      * Creates a Stack Machine
@@ -32,9 +40,6 @@ public class StackMachine {
         for (StateMachine stateMachine : machines) {
             this.subMachines.put(stateMachine.getName(), stateMachine);
         }
-
-        this.stackMachines = new Stack<StateMachine>();
-        this.stackReturnStates = new Stack<String>();
     }
 
     /**
@@ -59,8 +64,6 @@ public class StackMachine {
             this.subMachines.put(stateMachine.getName(), stateMachine);
         }
         currentStateMachine = this.subMachines.get(first);
-        this.stackMachines = new Stack<StateMachine>();
-        this.stackReturnStates = new Stack<String>();
     }
 
     public StateMachine getCurrentStateMachine() {
@@ -71,124 +74,142 @@ public class StackMachine {
         return subMachines.values();
     }
 
+    /**
+     * @return a copy of the stack of calling machines; the top is the machine that called the current one
+     */
     public Stack<StateMachine> getStackMachines() {
-        return stackMachines;
+        Stack<StateMachine> stack = new Stack<StateMachine>();
+        for (int i = 0; i < this.getStackDepth(); i++) {
+            stack.push(this.machinesBySymbol[this.cursor.getStackedMachine(i)]);
+        }
+        return stack;
     }
 
     /**
-     * Consumes one input.
-     * Preference order: SubMachineCall > local input > epsilon > alternative
+     * @return number of machines waiting for a submachine to return
+     */
+    public int getStackDepth() {
+        return this.cursor == null ? 0 : this.cursor.getStackDepth();
+    }
+
+    /**
+     * @return ids of the symbols used by the submachines; null if the machine was not compiled yet
+     */
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
+    /**
+     * Compiles all submachines into their transition tables, with a SymbolTable of their own. The machine is
+     * compiled on its first use anyway; it only runs from the compiled tables. If the structure of a submachine
+     * changes, the machine is compiled again when it is restarted.
      * 
-     * @param input
-     * @return true, if the input is consumed.
+     * @see StateMachine#compile()
      */
-    public boolean input(String input) {
-        boolean consumed = false;
-        int max = 100;
-        int i = 0;
-        
-        // Saves current state
-        StateMachine initialSM = this.currentStateMachine;
-        State initialState = this.currentStateMachine.getCurrentState();
-
-        while (!consumed && i <= max && !this.currentStateMachine.isAtErrorState()) {
-            
-            // Check if there is an eligible submachine call
-            boolean subCalled = checkSubMachineCall(input);
-            
-            if (!subCalled) { // Necessary to maintain preference order
-                // Tries to consume locally
-                consumed = this.currentStateMachine.input(input);
-                i++;
+    public void compile() {
+        this.compile(new SymbolTable());
+    }
+
+    /**
+     * Compiles all submachines into their transition tables, taking the ids of the symbols from the given table,
+     * so the ids of a grammar can be used as input.
+     * 
+     * @param symbols
+     */
+    public synchronized void compile(SymbolTable symbols) {
+        for (StateMachine stateMachine : this.subMachines.values()) {
+            symbols.internNonTerminal(stateMachine.getName());
+        }
+        // Compiles again if new symbols were found, so all tables have the same width
+        int size;
+        do {
+            size = symbols.size();
+            for (StateMachine stateMachine : this.subMachines.values()) {
+                stateMachine.compile(symbols);
             }
-            
-            checkReturnSubMachine();
+        } while (size != symbols.size());
+        this.machinesBySymbol = new StateMachine[symbols.size()];
+        this.tables = new TransitionTable[symbols.size()];
+        for (StateMachine stateMachine : this.subMachines.values()) {
+            int id = symbols.getId(stateMachine.getName());
+            this.machinesBySymbol[id] = stateMachine;
+            this.tables[id] = stateMachine.getTable();
         }
-        
-        // If not successful return to initial state
-        if (!consumed) {
-            this.currentStateMachine = initialSM;
-            this.currentStateMachine.goToState(initialState.getName());
+        // FIRST and NULLABLE sets, which decide the submachine calls
+        Lookahead.compute(this.tables);
+        this.symbols = symbols;
+
+        // The own cursor keeps its position, as the ids of the states do not change
+        StackMachineCursor position = this.cursor;
+        this.cursor = new StackMachineCursor(this.tables, symbols.getId(this.initialStateMachineName));
+        this.cursor.setListener(new ActionRunner());
+        if (position != null) {
+            this.cursor.moveTo(position);
         }
-        
-        return consumed;
     }
 
     /**
-     * Check if there is an eligible submachine call. If there is, call it.
-     * @param input
-     * @return true if a submachine was called.
-     */
-    private boolean checkSubMachineCall(String input) {
-        // Verifies if there's a submachine call
-
-        MachineCall call = this.chooseSubMachineCall(this.currentStateMachine.getCurrentState(), input);
-        
-        if (call != null) {
-            
-            // Stack current machine
-            this.stackMachines.push(this.currentStateMachine);
-            this.stackReturnStates.push(this.currentStateMachine.getCurrentState().getName());
-
-            // Called machine takes control
-            // MachineCall call = this.currentStateMachine.getCurrentState().getMachineCall();
-            this.currentStateMachine = this.subMachines.get(call.getCalledMachineName());
-            // Deve-se executar a ação relacionada a chamada da submaquina
-            call.executeActionBefore();
-            this.currentStateMachine.restart();
-            // Calls input function again
-            //this.input(input);
-            return true;
+     * Compiles the machine if it was not compiled yet or if the structure of a submachine changed since then. It
+     * looks at every submachine, so it is only done when the machine is restarted or a cursor is created; input and
+     * finish only compile a machine that was never compiled.
+     */
+    private void checkCompiled() {
+        if (this.symbols == null) {
+            this.compile();
+            return;
+        }
+        for (StateMachine stateMachine : this.machinesBySymbol) {
+            if (stateMachine != null && !stateMachine.isCompiled()) {
+                this.compile(this.symbols);
+                return;
+            }
         }
-        return false;
     }
 
     /**
-     * Chooses which Machine Call should be called, given the input.
+     * Compiles the machine if it was never compiled
+     */
+    private void checkStarted() {
+        if (this.cursor == null)
+            this.compile();
+    }
+
+    /**
+     * Creates a new cursor, which runs this machine independently of the machine itself and of the other cursors.
+     * The structure of the machine should not change anymore: the cursor keeps running the structure compiled when
+     * it was created. Cursors of the same machine can be used in different threads.
+     * 
+     * @return a new cursor at the initial state
+     */
+    public synchronized StackMachineCursor newCursor() {
+        this.checkCompiled();
+        return new StackMachineCursor(this.tables, this.symbols.getId(this.initialStateMachineName));
+    }
+
+    /**
+     * Consumes one input.
+     * Preference order: SubMachineCall > local input > epsilon > alternative
      * 
-     * @param state
      * @param input
-     * @return
-     */
-    private MachineCall chooseSubMachineCall(State state, String input) {
-        for (MachineCall m : state.getMachineCalls()) {
-            // Gets initial state of called Machine
-            State s = this.subMachines.get(m.getCalledMachineName()).getInitialState();
-            // Verifies inputs for the initial state
-            if (s.containsTransitionForInput(input)) {
-                return m;
-            }
-            // Verifies machineCalls of the initial state
-            if (s.hasMachineCalls()) {
-                // Recusiverly searches for the right call
-                MachineCall call = this.chooseSubMachineCall(s, input);
-                if (call != null) {
-                    return m;
-                }
-            }
-            if (s.hasEpsilonTransition()) {
-                MachineCall call = this.chooseSubMachineCall(s.getNextEpsilonState(), input);
-                if (s.getNextEpsilonState().isAcceptState() || call != null) {
-                    return m;
-                }
-            }
-            if (s.isAcceptState()) {
-                return m;
-            }
-        }
-        return null;
-    }
-
-    private void checkReturnSubMachine() {
-        // If it's in an accept state, pop the stack
-        if (this.currentStateMachine.isAtAcceptState() && !this.stackMachines.empty()) {
-            String name = this.currentStateMachine.getName();
-            this.currentStateMachine = this.stackMachines.pop();
-            // Returns to the calling state
-            this.currentStateMachine.goToState(this.stackReturnStates.pop());
-            this.currentStateMachine.machineTransition(name);
-            // this.input(input);
-        }
+     * @return true, if the input is consumed.
+     */
+    public boolean input(String input) {
+        this.checkStarted();
+        return this.input(this.symbols.getId(input));
+    }
+
+    /**
+     * Consumes one input, given by its id in the SymbolTable.
+     * Preference order: SubMachineCall > local input > epsilon > alternative
+     * 
+     * @param input id of the input
+     * @return true, if the input is consumed.
+     */
+    public boolean input(int input) {
+        this.checkStarted();
+        boolean consumed = this.cursor.input(input);
+        this.followCursor();
+        return consumed;
     }
 
     public boolean execute(String[] inputs) {
@@ -201,30 +222,66 @@ public class StackMachine {
         return this.currentStateMachine.isAtAcceptState();
     }
 
+    /**
+     * Same as execute(String[]), with the ids of the inputs
+     * 
+     * @param inputs ids of the inputs in the SymbolTable
+     * @return true if the machine is at an accept state after the inputs
+     */
+    public boolean execute(int[] inputs) {
+        for (int input : inputs) {
+            this.input(input);
+        }
+        this.finish();
+        return this.currentStateMachine.isAtAcceptState();
+    }
+
     /**
      * If the machine is not on a final state, checks if there are still epsilon transitions to make Or SubMachines
      * calls and returns.
      */
     public void finish() {
-        // If the machine is not on a final state, checks if there are still epsilon transitions to make
-        while (this.currentStateMachine.hasEpsilonTransitionNow() 
-                || this.currentStateMachine.hasSubMachineCallNow() && this.chooseSubMachineCall(this.currentStateMachine.getCurrentState(), null) != null  
-                || (!this.stackMachines.empty() && this.currentStateMachine.isAtAcceptState())) {
-
-            this.currentStateMachine.inputEpsilon();
-            this.checkReturnSubMachine();
-            this.checkSubMachineCall(null);
-        }
+        this.checkStarted();
+        this.cursor.finish();
+        this.followCursor();
     }
 
     /**
      * Returns to initial state
      */
     public void restart() {
-        this.currentStateMachine = this.subMachines.get(initialStateMachineName);
-        this.currentStateMachine.restart();
-        // Empty stacks!
-        this.stackMachines.clear();
-        this.stackReturnStates.clear();
+        this.checkCompiled();
+        this.cursor.restart();
+        this.followCursor();
+    }
+
+    /**
+     * Makes the current machine and its current state the ones of the cursor
+     */
+    private void followCursor() {
+        this.currentStateMachine = this.machinesBySymbol[this.cursor.getMachine()];
+        this.currentStateMachine.goToState(this.cursor.getState());
+    }
+
+    /**
+     * Runs the actions of the transitions taken by the own cursor
+     */
+    private class ActionRunner implements TransitionListener {
+
+        public void transitionTaken(Transition transition) {
+            followCursor();
+            transition.execute();
+        }
+
+        public void machineCalled(MachineCall call) {
+            followCursor();
+            // Deve-se executar a ação relacionada a chamada da submaquina
+            call.executeActionBefore();
+        }
+
+        public void machineReturned(MachineCall call) {
+            followCursor();
+            call.execute();
+        }
     }
 }
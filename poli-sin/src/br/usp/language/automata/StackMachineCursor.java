@@ -0,0 +1,451 @@
+package br.usp.language.automata;
+
+import java.util.Arrays;
+
+/**
+ * Execution state of a StackMachine: current machine, current state and the stack of calling machines.
+ *
+ * The structure (states, transitions and machine calls) is taken from the compiled tables of the StackMachine
+ * and is never changed by the cursor, so many cursors of the same StackMachine can run at the same time, each one
+ * in its own thread. A cursor itself must not be shared between threads.
+ *
+ * The cursor does not run the actions of the transitions; it tells its TransitionListener instead.
+ *
+ * @author Marcelo Li Koga
+ * @see StackMachine#newCursor()
+ */
+public class StackMachineCursor {
+
+    /** Results of input(int, boolean) */
+    static final int CONSUMED = 0;
+    static final int REJECTED = 1;
+    static final int RETURNED = 2;
+
+    /** Compiled machines indexed by the id of their names */
+    private final TransitionTable[] tables;
+
+    /** Id of the initial machine */
+    private final int initialMachine;
+
+    /** Id of the current machine */
+    private int machine;
+
+    /** Id of the current state, in the table of the current machine */
+    private int state;
+
+    /** Each frame takes two positions: id of the calling machine and id of its return state */
+    private int[] callStack;
+
+    /** Number of frames in the callStack */
+    private int depth;
+
+    private TransitionListener listener;
+
+    /** Steps taken since the cursor was created; see getSteps */
+    private long steps;
+
+    StackMachineCursor(TransitionTable[] tables, int initialMachine) {
+        this.tables = tables;
+        this.initialMachine = initialMachine;
+        this.callStack = new int[16];
+        this.restart();
+    }
+
+    /**
+     * Puts this cursor at the same position (machine, state and stack) as the other one.
+     * 
+     * @param other a cursor of the same StackMachine
+     */
+    void moveTo(StackMachineCursor other) {
+        this.machine = other.machine;
+        this.state = other.state;
+        this.depth = other.depth;
+        if (this.callStack.length < other.callStack.length) {
+            this.callStack = new int[other.callStack.length];
+        }
+        System.arraycopy(other.callStack, 0, this.callStack, 0, 2 * other.depth);
+    }
+
+    /**
+     * @return the current configuration (machine, state and stack) of the cursor
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Goes back to a configuration taken by snapshot. The listener is not told about it.
+     * 
+     * @param snapshot a snapshot of this cursor
+     */
+    public void restore(Snapshot snapshot) {
+        this.machine = snapshot.machine;
+        this.state = snapshot.state;
+        this.depth = snapshot.callStack.length / 2;
+        if (this.callStack.length < snapshot.callStack.length) {
+            this.callStack = new int[2 * snapshot.callStack.length];
+        }
+        System.arraycopy(snapshot.callStack, 0, this.callStack, 0, snapshot.callStack.length);
+    }
+
+    public void setListener(TransitionListener listener) {
+        this.listener = listener;
+    }
+
+    public TransitionListener getListener() {
+        return this.listener;
+    }
+
+    /**
+     * @return ids of the symbols of the machine
+     */
+    public SymbolTable getSymbolTable() {
+        return this.tables[this.initialMachine].symbols;
+    }
+
+    /**
+     * @return name of the current machine
+     */
+    public String getCurrentMachineName() {
+        return this.getSymbolTable().getName(this.machine);
+    }
+
+    /**
+     * @return current state; only to be read, as it belongs to the shared structure
+     */
+    public State getCurrentState() {
+        return this.tables[this.machine].states[this.state];
+    }
+
+    public boolean isAtAcceptState() {
+        return this.tables[this.machine].accept[this.state];
+    }
+
+    public boolean isAtErrorState() {
+        return this.tables[this.machine].error[this.state];
+    }
+
+    /**
+     * @return number of machines waiting for a submachine to return
+     */
+    public int getStackDepth() {
+        return this.depth;
+    }
+
+    /**
+     * @param i position in the stack, 0 being the bottom
+     * @return name of the machine stacked at the position
+     */
+    public String getStackedMachineName(int i) {
+        return this.getSymbolTable().getName(this.callStack[2 * i]);
+    }
+
+    /**
+     * @param i position in the stack, 0 being the bottom
+     * @return id of the machine stacked at the position
+     */
+    int getStackedMachine(int i) {
+        return this.callStack[2 * i];
+    }
+
+    /**
+     * Counts the work done by the cursor: each round of input and finish (trying a call, a transition and the
+     * returns) is a step. Restoring a snapshot does not change the count, so it measures backtracking too.
+     * 
+     * @return steps taken since the cursor was created
+     */
+    public long getSteps() {
+        return this.steps;
+    }
+
+    /**
+     * @param i position in the stack, 0 being the bottom
+     * @return id of the state the machine stacked at the position returns to
+     */
+    int getStackedState(int i) {
+        return this.callStack[2 * i + 1];
+    }
+
+    /**
+     * Goes to a state of a machine, with an empty stack
+     */
+    void moveTo(int machine, int state) {
+        this.machine = machine;
+        this.state = state;
+        this.depth = 0;
+    }
+
+    /**
+     * @return compiled tables of the machines, indexed by the id of their names (null for the other symbols)
+     */
+    TransitionTable[] getTables() {
+        return this.tables;
+    }
+
+    int getMachine() {
+        return this.machine;
+    }
+
+    int getState() {
+        return this.state;
+    }
+
+    /**
+     * Consumes one input.
+     * Preference order: SubMachineCall > local input > epsilon > alternative
+     *
+     * @param input id of the input
+     * @return true, if the input is consumed.
+     */
+    public boolean input(int input) {
+        return this.input(input, false) == CONSUMED;
+    }
+
+    /**
+     * Consumes one input, as input(int) does.
+     *
+     * @param input id of the input
+     * @param called whether the machine at the bottom of the stack was called by another machine, which is not in
+     *            the stack; if it reaches an accept state without consuming the input, it returns to that machine
+     * @return CONSUMED; RETURNED if the bottom machine would return before consuming the input; REJECTED otherwise
+     */
+    int input(int input, boolean called) {
+        boolean consumed = false;
+        int max = 100;
+        int i = 0;
+
+        // Saves current state
+        int initialSM = this.machine;
+        int initialState = this.state;
+
+        while (!consumed && i <= max && !this.isAtErrorState()) {
+            this.steps++;
+
+            // Check if there is an eligible submachine call
+            boolean subCalled = this.checkSubMachineCall(input);
+
+            if (!subCalled) { // Necessary to maintain preference order
+                // Tries to consume locally
+                consumed = this.consume(input);
+                i++;
+            }
+
+            if (called && !consumed && this.depth == 0 && this.isAtAcceptState())
+                return RETURNED;
+            this.checkReturnSubMachine();
+        }
+
+        // If not successful return to initial state
+        if (!consumed) {
+            this.machine = initialSM;
+            this.state = initialState;
+        }
+
+        return consumed ? CONSUMED : REJECTED;
+    }
+
+    /**
+     * Consumes one input, given by its name.
+     *
+     * @param input
+     * @return true, if the input is consumed.
+     */
+    public boolean input(String input) {
+        return this.input(this.getSymbolTable().getId(input));
+    }
+
+    /**
+     * Applies the input to the current machine (as StateMachine.input does)
+     *
+     * @return true if the input was consumed
+     */
+    private boolean consume(int input) {
+        TransitionTable table = this.tables[this.machine];
+        while (true) {
+            // 1) Entrada normal
+            int t = table.transitionIndex(this.state, input);
+            if (t != TransitionTable.NONE) {
+                this.state = table.transitionTo[t];
+                this.fire(table.transitions[t]);
+                return true;
+            }
+            // 2) Epsilon: tries it and the input again
+            if (table.epsilonTo[this.state] != TransitionTable.NONE) {
+                Transition epsilon = table.epsilon[this.state];
+                this.state = table.epsilonTo[this.state];
+                if (epsilon.getAction() != null)
+                    this.fire(epsilon);
+            }
+            // 3) Alternate transition
+            else if (table.alternateTo[this.state] != TransitionTable.NONE) {
+                Transition alternate = table.alternate[this.state];
+                this.state = table.alternateTo[this.state];
+                this.fire(alternate);
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Check if there is an eligible submachine call. If there is, call it.
+     *
+     * @param input
+     * @return true if a submachine was called.
+     */
+    private boolean checkSubMachineCall(int input) {
+        TransitionTable table = this.tables[this.machine];
+        int call = table.choice(this.state, input);
+
+        if (call != TransitionTable.NONE) {
+            // Stack current machine
+            if (2 * this.depth == this.callStack.length) {
+                this.callStack = Arrays.copyOf(this.callStack, 2 * this.callStack.length);
+            }
+            this.callStack[2 * this.depth] = this.machine;
+            this.callStack[2 * this.depth + 1] = this.state;
+            this.depth++;
+
+            // Called machine takes control
+            this.machine = table.callSymbol[call];
+            this.state = this.tables[this.machine].initial;
+            if (this.listener != null)
+                this.listener.machineCalled(table.calls[call]);
+            return true;
+        }
+        return false;
+    }
+
+    private void checkReturnSubMachine() {
+        // If it's in an accept state, pop the stack
+        if (this.isAtAcceptState() && this.depth > 0) {
+            this.returnToCaller();
+        }
+    }
+
+    /**
+     * Leaves the current machine as if it had reached an accept state: the calling machine takes control after the
+     * call, and the listener is told so. Used to recover from errors, when the rest of the current machine is given
+     * up.
+     *
+     * @return false if the current machine was not called by another one
+     */
+    public boolean abandonMachine() {
+        if (this.depth == 0)
+            return false;
+        this.returnToCaller();
+        return true;
+    }
+
+    private void returnToCaller() {
+        int returned = this.machine;
+        this.depth--;
+        this.machine = this.callStack[2 * this.depth];
+        // Returns to the calling state and takes the call transition
+        this.state = this.callStack[2 * this.depth + 1];
+        TransitionTable table = this.tables[this.machine];
+        int call = table.callIndex(this.state, returned);
+        if (call != TransitionTable.NONE) {
+            this.state = table.callTo[call];
+            if (this.listener != null)
+                this.listener.machineReturned(table.calls[call]);
+        }
+    }
+
+    /**
+     * Makes an epsilon transition if there is one. A chain of epsilon transitions without actions is taken at once,
+     * up to the first state where finish has something else to do.
+     */
+    private void inputEpsilon() {
+        TransitionTable table = this.tables[this.machine];
+        if (table.closureSilent[this.state]) {
+            if (table.closureTo[this.state] != TransitionTable.NONE)
+                this.state = table.closureTo[this.state];
+        } else if (table.epsilonTo[this.state] != TransitionTable.NONE) {
+            Transition epsilon = table.epsilon[this.state];
+            this.state = table.epsilonTo[this.state];
+            this.fire(epsilon);
+        }
+    }
+
+    private void fire(Transition transition) {
+        if (this.listener != null)
+            this.listener.transitionTaken(transition);
+    }
+
+    /**
+     * Consumes all inputs and finishes.
+     *
+     * @param inputs ids of the inputs
+     * @return true if the machine is at an accept state after the inputs
+     */
+    public boolean execute(int[] inputs) {
+        for (int input : inputs) {
+            this.input(input);
+        }
+        this.finish();
+        return this.isAtAcceptState();
+    }
+
+    /**
+     * If the machine is not on a final state, checks if there are still epsilon transitions to make Or SubMachines
+     * calls and returns.
+     */
+    public void finish() {
+        while (this.tables[this.machine].epsilonTo[this.state] != TransitionTable.NONE
+                || this.tables[this.machine].choice(this.state, SymbolTable.UNKNOWN) != TransitionTable.NONE
+                || (this.depth > 0 && this.isAtAcceptState())) {
+            this.steps++;
+
+            this.inputEpsilon();
+            this.checkReturnSubMachine();
+            this.checkSubMachineCall(SymbolTable.UNKNOWN);
+        }
+    }
+
+    /**
+     * Returns to initial state
+     */
+    public void restart() {
+        this.machine = this.initialMachine;
+        this.state = this.tables[this.initialMachine].initial;
+        this.depth = 0;
+    }
+
+    /**
+     * Configuration of a cursor at some moment: current machine, current state and a copy of the used part of the
+     * stack. Snapshots are immutable, so they can be kept as long as needed, and can be used as keys.
+     */
+    public static final class Snapshot {
+
+        private final int machine;
+
+        private final int state;
+
+        private final int[] callStack;
+
+        private Snapshot(StackMachineCursor cursor) {
+            this.machine = cursor.machine;
+            this.state = cursor.state;
+            this.callStack = Arrays.copyOf(cursor.callStack, 2 * cursor.depth);
+        }
+
+        /**
+         * Snapshots are equal when they hold the same configuration, so the cursor goes on in the same way from both.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Snapshot))
+                return false;
+            Snapshot other = (Snapshot) obj;
+            return this.machine == other.machine && this.state == other.state
+                    && Arrays.equals(this.callStack, other.callStack);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * this.machine + this.state) * 31 + Arrays.hashCode(this.callStack);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package br.usp.language.automata;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 
 /**
@@ -40,6 +39,15 @@ public class State {
      */
     private Transition alternateTransition;
 
+    /** Destinations of the epsilon transitions, kept until the structure changes */
+    private State[] nextEpsilonStates;
+
+    /** Compiled table of the machine, when it has been compiled; null otherwise */
+    private TransitionTable table;
+
+    /** Id of the state inside its compiled table */
+    private int id;
+
     /* Constructor */
 
     public State(String name) {
@@ -49,6 +57,7 @@ public class State {
         this.epsilonTransitions = new ArrayList<Transition>();
         this.alternateTransition = null;
         this.type = StateType.NORMAL_STATE;
+        this.id = TransitionTable.NONE;
     }
 
     /* Methods */
@@ -57,6 +66,40 @@ public class State {
         return name;
     }
 
+    /**
+     * @return id of the state in the compiled machine; -1 if the machine was not compiled
+     */
+    public int getId() {
+        return this.isCompiled() ? this.id : TransitionTable.NONE;
+    }
+
+    void setTable(TransitionTable table, int id) {
+        this.table = table;
+        this.id = id;
+    }
+
+    /**
+     * @return compiled table of the machine of this state; null if it is not compiled
+     */
+    TransitionTable getTable() {
+        return this.isCompiled() ? this.table : null;
+    }
+
+    private boolean isCompiled() {
+        return this.table != null && this.table.isValid();
+    }
+
+    /**
+     * The structure changed, so the compiled table (if any) is not valid anymore.
+     */
+    void discardTable() {
+        this.nextEpsilonStates = null;
+        if (this.table != null) {
+            this.table.invalidate();
+            this.table = null;
+        }
+    }
+
     /**
      * Returns all transitions with a normal condition, i.e.,
      * do not return: machine calls or epsilon transitions
@@ -83,6 +126,7 @@ public class State {
      * @param action Ação que deve ser tomada quando a transição ocorrer. Pode ser null.
      */
     public void createTransitionTo(State to, String condition, Action action) {
+        this.discardTable();
         this.transitions.add(new Transition(this, to, condition, action));
     }
 
@@ -94,6 +138,7 @@ public class State {
      * @param action Ação que deve ser tomada quando a transição ocorrer. Pode ser null.
      */
     public void createTransitionTo(State to, List<String> conditions, Action action) {
+        this.discardTable();
         this.transitions.add(new Transition(this, to, conditions, action));
     }
 
@@ -105,6 +150,7 @@ public class State {
      * @param action Ação que deve ser tomada quando a transição ocorrer. Pode ser null.
      */
     public void createMachineCallTo(State to, String machineName, Action actionBefore, Action actionAfter) {
+        this.discardTable();
         this.machineCalls.add(new MachineCall(this, to, actionBefore, actionAfter, machineName));
     }
 
@@ -116,6 +162,7 @@ public class State {
      * @param action Ação que deve ser tomada quando a transição ocorrer. Pode ser null.
      */
     public void createEpsilonTransitionTo(State to, Action action) {
+        this.discardTable();
         this.epsilonTransitions.add(new Transition(this, to, Transition.EPSILON, action));
     }
 
@@ -141,6 +188,7 @@ public class State {
      * @param alternateTransition
      */
     public void setAlternateTransition(State to, Action action) {
+        this.discardTable();
         this.alternateTransition = new Transition(this, to, action);
     }
 
@@ -186,8 +234,15 @@ public class State {
      * @return next state
      */
     public State getNextState(String input) {
-        // Searches for the right condition
+        if (this.isCompiled()) {
+            int symbol = this.table.symbolOf(input);
+            Transition trans = this.table.transition(this.id, symbol);
+            if (trans == null)
+                trans = this.table.call(this.id, symbol);
+            return trans == null ? null : trans.getStateTo();
+        }
 
+        // Searches for the right condition
         for (Transition trans : this.transitions) {
             if (trans.getConditions().contains(input)) {
                 return trans.getStateTo();
@@ -216,16 +271,20 @@ public class State {
     }
 
     /**
-     * Returns the set of state which the epsilon transition leads to
+     * Returns the set of state which the epsilon transition leads to. The states are kept until the structure
+     * changes; each call gets its own copy of them.
      * 
-     * @return null if there is not an epsilon transition
+     * @return empty array if there is not an epsilon transition
      */
     public State[] getNextEpsilonStates() {
-        Collection<State> nextStates = new ArrayList<State>();
-        for (Transition e : this.epsilonTransitions) {
-            nextStates.add(e.getStateTo());
+        if (this.nextEpsilonStates == null) {
+            State[] nextStates = new State[this.epsilonTransitions.size()];
+            for (int i = 0; i < nextStates.length; i++) {
+                nextStates[i] = this.epsilonTransitions.get(i).getStateTo();
+            }
+            this.nextEpsilonStates = nextStates;
         }
-        return nextStates.toArray(new State[0]);
+        return this.nextEpsilonStates.clone();
     }
 
     /**
@@ -244,6 +303,9 @@ public class State {
      * @return whether the given input leads to a state change or not
      */
     public boolean containsTransitionForInput(String input) {
+        if (this.isCompiled()) {
+            return this.table.transition(this.id, this.table.symbolOf(input)) != null;
+        }
         for (Transition transition : this.transitions) {
             if (transition.getConditions().contains(input)) {
                 return true;
@@ -283,6 +345,9 @@ public class State {
      * @return whether this state has it or not
      */
     public boolean containsMachineCall(String machineName) {
+        if (this.isCompiled()) {
+            return this.table.call(this.id, this.table.symbolOf(machineName)) != null;
+        }
         for (MachineCall m : this.machineCalls) {
             if (m.getCalledMachineName().equals(machineName)) {
                 return true;
@@ -295,6 +360,7 @@ public class State {
      * Turns the state into an accept State
      */
     public void setAcceptState() {
+        this.discardTable();
         this.type = StateType.ACCEPT_STATE;
     }
 
@@ -302,6 +368,7 @@ public class State {
      * Turns the state into an error State
      */
     public void setErrorState() {
+        this.discardTable();
         this.type = StateType.ERROR_STATE;
     }
 
@@ -327,15 +394,18 @@ public class State {
      */
     public boolean removeTransition(Transition t) {
 
+        this.discardTable();
         return this.transitions.remove(t);
     }
 
     public void setStateType(StateType type) {
 
+        this.discardTable();
         this.type = type;
     }
     
     public void addTransition(Transition t) {
+        this.discardTable();
         if (t.isEpsilon()) {
             this.epsilonTransitions.add(t);
         } else if (t.isMachineCall()) {
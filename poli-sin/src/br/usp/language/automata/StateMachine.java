@@ -15,6 +15,9 @@ public class StateMachine {
 
     private State initialState;
 
+    /** Compiled form of the machine; null until compile() is called */
+    private TransitionTable table;
+
     /* Constructor */
 
     /**
@@ -95,9 +98,43 @@ public class StateMachine {
         // If not, create it
         State state = new State(name);
         this.states.add(state);
+        this.table = null;
         return state;
     }
 
+    /**
+     * Compiles the machine into integer transition tables, which are used by the methods of the machine from now
+     * on. Should be called once the machine is finished; any later change in its structure discards the tables.
+     */
+    public void compile() {
+        this.compile(new SymbolTable());
+    }
+
+    /**
+     * Compiles the machine taking the ids of the inputs from the given SymbolTable. Inputs not in the table yet are
+     * added to it.
+     * 
+     * @param symbols
+     * @see #compile()
+     */
+    public void compile(SymbolTable symbols) {
+        this.table = new TransitionTable(this.name, this.states, this.initialState, symbols);
+    }
+
+    /**
+     * @return compiled table; null if the machine is not compiled
+     */
+    TransitionTable getTable() {
+        return this.isCompiled() ? this.table : null;
+    }
+
+    /**
+     * @return whether the machine is running from its compiled tables or not
+     */
+    public boolean isCompiled() {
+        return this.table != null && this.table.isValid();
+    }
+
     /**
      * Check if an given input will lead to a state change. Note that this depends on the current state.
      * 
@@ -140,6 +177,9 @@ public class StateMachine {
      * @return true if the input was consumed.
      */
     public boolean input(String input) {
+        if (this.isCompiled()) {
+            return this.inputCompiled(this.table.symbolOf(input));
+        }
         // 1) Entrada normal
         for (Transition trans : this.currentState.getTransitions()) {
             if (trans.getConditions().contains(input)) {
@@ -162,6 +202,36 @@ public class StateMachine {
         return false;
     }
 
+    /**
+     * Same as input(String), but the transitions are found in the compiled table. The machine must be compiled.
+     * 
+     * @param symbol id of the input in the SymbolTable
+     * @return true if the input was consumed.
+     */
+    boolean inputCompiled(int symbol) {
+        TransitionTable t = this.table;
+        while (true) {
+            int state = this.currentState.getId();
+            // 1) Entrada normal
+            Transition trans = t.transition(state, symbol);
+            if (trans != null) {
+                this.currentState = trans.execute();
+                return true;
+            }
+            // 2) Epsilon: tries it and the input again
+            if (t.epsilon[state] != null) {
+                this.currentState = t.epsilon[state].execute();
+            }
+            // 3) Alternate transition
+            else if (t.alternate[state] != null) {
+                this.currentState = t.alternate[state].execute();
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
     /**
      * Makes an epsilon transition if there is one.
      */
@@ -182,6 +252,9 @@ public class StateMachine {
      * @return true, if it is on an accept state after transition
      */
     public boolean machineTransition(String name) {
+        if (this.isCompiled()) {
+            return this.machineTransition(this.table.symbolOf(name));
+        }
         for(MachineCall call : this.currentState.getMachineCalls()) {
             if (call.getCalledMachineName().equals(name)) {
                 this.currentState = call.execute();
@@ -191,6 +264,19 @@ public class StateMachine {
         return this.currentState.isAcceptState();
     }
 
+    /**
+     * Same as machineTransition(String), for compiled machines
+     * 
+     * @param symbol id of the name of the submachine that finished
+     * @return true, if it is on an accept state after transition
+     */
+    boolean machineTransition(int symbol) {
+        MachineCall call = this.table.call(this.currentState.getId(), symbol);
+        if (call != null)
+            this.currentState = call.execute();
+        return this.currentState.isAcceptState();
+    }
+
     /**
      * Apply the inputs in the machine, which makes transitions activate
      * 
@@ -212,8 +298,13 @@ public class StateMachine {
      * If the machine is not on a final state, checks if there are still epsilon transitions to make
      */
     public void finish() {
-        while (this.hasEpsilonTransitionNow()) {            
-            this.inputEpsilon();
+        while (this.hasEpsilonTransitionNow()) {
+            if (this.isCompiled() && this.table.closureSilent[this.currentState.getId()]) {
+                // Jumps over the epsilon transitions without actions
+                this.currentState = this.table.states[this.table.closureTo[this.currentState.getId()]];
+            } else {
+                this.inputEpsilon();
+            }
             if (this.isAtAcceptState()) {
                 break;
             }
@@ -242,6 +333,15 @@ public class StateMachine {
         }
     }
 
+    /**
+     * Forces the compiled state machine to go to a state, given its id.
+     * 
+     * @param id id of the state in the compiled table
+     */
+    void goToState(int id) {
+        this.currentState = this.table.states[id];
+    }
+
     // methods that change the automata behavior
     // intended to allow adaptatvive actions
 
@@ -252,6 +352,7 @@ public class StateMachine {
     public void setInitialState(State s) {
     	
     	this.initialState = s;
+    	this.table = null;
     }
     
     @Override
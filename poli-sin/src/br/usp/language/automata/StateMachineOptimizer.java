@@ -0,0 +1,434 @@
+package br.usp.language.automata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds smaller, deterministic versions of finished StateMachines: epsilon transitions are removed, the transitions
+ * are determinized by subset construction and the states are minimized with Hopcroft's algorithm. Machine calls are
+ * treated as opaque symbols, so a called machine is never looked into.
+ *
+ * The optimized machine has a single accept state ("Final"), without transitions, and a single error state ("Error"),
+ * which loops on its alternate transition. States that could finish (the ones that reached an accept state through
+ * epsilon transitions) get one epsilon transition to Final, and states that had an alternate transition to an error
+ * state keep one to Error, so the optimized machine behaves as the original one in a StackMachine. States that can
+ * only finish are not merged into Final, as a StackMachine only returns from a called machine once it takes the
+ * epsilon transition.
+ *
+ * Only machines without actions, whose alternate transitions lead to error states and whose error states do not
+ * leave, can be optimized, as the machines created by the SyntacticAnalyser. Other machines are returned unchanged.
+ *
+ * @author Marcelo Li Koga
+ */
+public final class StateMachineOptimizer {
+
+    private StateMachineOptimizer() {
+    }
+
+    /**
+     * Optimizes all machines of a list.
+     *
+     * @param machines
+     * @return the optimized machines, in the same order
+     */
+    public static List<StateMachine> optimize(List<StateMachine> machines) {
+        List<StateMachine> optimized = new ArrayList<StateMachine>(machines.size());
+        for (StateMachine machine : machines) {
+            optimized.add(optimize(machine));
+        }
+        return optimized;
+    }
+
+    /**
+     * @param machine
+     * @return a new machine with the same name, deterministic and minimal; the machine itself if it cannot be
+     *         optimized
+     */
+    public static StateMachine optimize(StateMachine machine) {
+        Nfa nfa = new Nfa(machine);
+        if (!nfa.optimizable) {
+            return machine;
+        }
+        Dfa dfa = new Dfa(nfa);
+        int[] blockOf = minimize(dfa);
+        return build(machine.getName(), nfa, dfa, blockOf);
+    }
+
+    /**
+     * Original machine, with dense ids for its states and symbols
+     */
+    private static class Nfa {
+
+        final List<State> states = new ArrayList<State>();
+
+        final Map<State, Integer> ids = new IdentityHashMap<State, Integer>();
+
+        /** Symbols: conditions of the transitions and names of the called machines */
+        final List<String> symbols = new ArrayList<String>();
+
+        final List<Boolean> isCall = new ArrayList<Boolean>();
+
+        final Map<String, Integer> symbolIds = new HashMap<String, Integer>();
+
+        boolean optimizable = true;
+
+        Nfa(StateMachine machine) {
+            this.add(machine.getInitialState());
+            for (State s : machine.getAllStates()) {
+                this.add(s);
+            }
+            for (int i = 0; i < this.states.size(); i++) {
+                State s = this.states.get(i);
+                for (Transition t : s.getAllTransitions()) {
+                    this.add(t.getStateTo());
+                    this.check(t.getAction() == null && !t.getStateTo().isErrorState());
+                    if (t.isMachineCall()) {
+                        MachineCall call = (MachineCall) t;
+                        this.check(call.getActionBefore() == null);
+                        this.symbol(call.getCalledMachineName(), true);
+                    } else if (!t.isEpsilon()) {
+                        for (String condition : t.getConditions()) {
+                            this.symbol(condition, false);
+                        }
+                    }
+                }
+                if (s.hasAlternateTransition()) {
+                    Transition alternate = s.getAlternateTransition();
+                    this.add(alternate.getStateTo());
+                    this.check(alternate.getAction() == null && alternate.getStateTo().isErrorState());
+                }
+                if (s.isErrorState()) {
+                    this.check(s.getAllTransitions().isEmpty());
+                }
+            }
+        }
+
+        private void add(State s) {
+            if (!this.ids.containsKey(s)) {
+                this.ids.put(s, this.states.size());
+                this.states.add(s);
+            }
+        }
+
+        private void check(boolean condition) {
+            this.optimizable &= condition;
+        }
+
+        private int symbol(String name, boolean call) {
+            // Calls and terminals with the same name are different symbols
+            String key = (call ? "c:" : "t:") + name;
+            Integer id = this.symbolIds.get(key);
+            if (id == null) {
+                id = this.symbols.size();
+                this.symbolIds.put(key, id);
+                this.symbols.add(name);
+                this.isCall.add(call);
+            }
+            return id;
+        }
+
+        int symbolOf(String name, boolean call) {
+            return this.symbolIds.get((call ? "c:" : "t:") + name);
+        }
+
+        /**
+         * Adds to the set the states reached from its states by epsilon transitions
+         */
+        void closure(BitSet set) {
+            LinkedList<Integer> pending = new LinkedList<Integer>();
+            for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+                pending.add(i);
+            }
+            while (!pending.isEmpty()) {
+                State s = this.states.get(pending.removeFirst());
+                for (Transition e : s.getEpsilonTransitions()) {
+                    int to = this.ids.get(e.getStateTo());
+                    if (!set.get(to)) {
+                        set.set(to);
+                        pending.add(to);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Deterministic machine given by the subset construction
+     */
+    private static class Dfa {
+
+        /** (state, symbol) -> state; -1 if there is no transition */
+        final List<int[]> next = new ArrayList<int[]>();
+
+        final List<BitSet> members = new ArrayList<BitSet>();
+
+        /** Whether each state is an accept state itself */
+        final List<Boolean> acceptNow = new ArrayList<Boolean>();
+
+        /** Whether an accept state is reached from each state, maybe through epsilon transitions */
+        final List<Boolean> accept = new ArrayList<Boolean>();
+
+        final List<Boolean> alternate = new ArrayList<Boolean>();
+
+        /** Called machines of each state, in the order they appear in the original states */
+        final List<List<Integer>> calls = new ArrayList<List<Integer>>();
+
+        /** Symbol that first reached each state (-1 for the initial one), used to name the states */
+        final List<Integer> reachedBy = new ArrayList<Integer>();
+
+        Dfa(Nfa nfa) {
+            Map<BitSet, Integer> ids = new HashMap<BitSet, Integer>();
+            BitSet initial = new BitSet();
+            initial.set(nfa.ids.get(nfa.states.get(0)));
+            this.close(initial, nfa);
+            this.add(ids, initial, nfa, -1);
+
+            for (int d = 0; d < this.members.size(); d++) {
+                BitSet set = this.members.get(d);
+                BitSet[] targets = new BitSet[nfa.symbols.size()];
+                List<Integer> order = new ArrayList<Integer>();
+                for (int i = set.nextSetBit(0); i >= 0 && i < nfa.states.size(); i = set.nextSetBit(i + 1)) {
+                    State s = nfa.states.get(i);
+                    for (Transition t : s.getTransitions()) {
+                        for (String condition : t.getConditions()) {
+                            this.target(targets, order, nfa.symbolOf(condition, false), nfa.ids.get(t.getStateTo()));
+                        }
+                    }
+                    for (MachineCall call : s.getMachineCalls()) {
+                        int symbol = nfa.symbolOf(call.getCalledMachineName(), true);
+                        this.target(targets, order, symbol, nfa.ids.get(call.getStateTo()));
+                        if (!this.calls.get(d).contains(symbol))
+                            this.calls.get(d).add(symbol);
+                    }
+                }
+                int[] row = this.next.get(d);
+                for (int symbol : order) {
+                    this.close(targets[symbol], nfa);
+                    Integer id = ids.get(targets[symbol]);
+                    row[symbol] = id != null ? id : this.add(ids, targets[symbol], nfa, symbol);
+                }
+            }
+        }
+
+        /**
+         * Adds the epsilon closure to a set of states reached by a transition. States reached directly can be accept
+         * states themselves, which is not the same as reaching one by epsilon transitions; that is marked in the set
+         * by an extra bit after the ids of the states.
+         */
+        private void close(BitSet set, Nfa nfa) {
+            boolean acceptNow = false;
+            for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+                acceptNow |= nfa.states.get(i).isAcceptState();
+            }
+            nfa.closure(set);
+            if (acceptNow)
+                set.set(nfa.states.size());
+        }
+
+        private void target(BitSet[] targets, List<Integer> order, int symbol, int to) {
+            if (targets[symbol] == null) {
+                targets[symbol] = new BitSet();
+                order.add(symbol);
+            }
+            targets[symbol].set(to);
+        }
+
+        private int add(Map<BitSet, Integer> ids, BitSet set, Nfa nfa, int symbol) {
+            int id = this.members.size();
+            ids.put(set, id);
+            this.members.add(set);
+            int[] row = new int[nfa.symbols.size()];
+            Arrays.fill(row, -1);
+            this.next.add(row);
+            boolean accepts = false;
+            boolean alternates = false;
+            for (int i = set.nextSetBit(0); i >= 0 && i < nfa.states.size(); i = set.nextSetBit(i + 1)) {
+                accepts |= nfa.states.get(i).isAcceptState();
+                alternates |= nfa.states.get(i).hasAlternateTransition();
+            }
+            this.acceptNow.add(set.get(nfa.states.size()));
+            this.accept.add(accepts);
+            // An epsilon transition is taken before the alternate one, so finishing states never use it
+            this.alternate.add(alternates && !accepts);
+            this.calls.add(new ArrayList<Integer>());
+            this.reachedBy.add(symbol);
+            return id;
+        }
+
+        int size() {
+            return this.members.size();
+        }
+    }
+
+    /**
+     * Hopcroft's algorithm. A dead state (id = size) completes the transitions; it is never merged with the others.
+     *
+     * @return block of each state of the dfa
+     */
+    private static int[] minimize(Dfa dfa) {
+        int n = dfa.size() + 1;
+        int dead = n - 1;
+        int symbols = dfa.next.isEmpty() ? 0 : dfa.next.get(0).length;
+
+        // Predecessors of each state, by symbol
+        List<List<List<Integer>>> previous = new ArrayList<List<List<Integer>>>(symbols);
+        for (int a = 0; a < symbols; a++) {
+            List<List<Integer>> bySymbol = new ArrayList<List<Integer>>(n);
+            for (int q = 0; q < n; q++) {
+                bySymbol.add(new ArrayList<Integer>());
+            }
+            for (int p = 0; p < n; p++) {
+                int q = p == dead ? dead : dfa.next.get(p)[a];
+                bySymbol.get(q == -1 ? dead : q).add(p);
+            }
+            previous.add(bySymbol);
+        }
+
+        // Initial partition: states that behave differently by themselves
+        int[] blockOf = new int[n];
+        List<List<Integer>> blocks = new ArrayList<List<Integer>>();
+        Map<String, Integer> signatures = new HashMap<String, Integer>();
+        for (int q = 0; q < n; q++) {
+            String signature = q == dead ? "dead" : dfa.acceptNow.get(q) + " " + dfa.accept.get(q) + " "
+                    + dfa.alternate.get(q) + " " + dfa.calls.get(q);
+            Integer block = signatures.get(signature);
+            if (block == null) {
+                block = blocks.size();
+                signatures.put(signature, block);
+                blocks.add(new ArrayList<Integer>());
+            }
+            blockOf[q] = block;
+            blocks.get(block).add(q);
+        }
+
+        // Splitters (block, symbol) still to be used
+        LinkedList<int[]> pending = new LinkedList<int[]>();
+        List<boolean[]> isPending = new ArrayList<boolean[]>();
+        for (int b = 0; b < blocks.size(); b++) {
+            isPending.add(new boolean[symbols]);
+            for (int a = 0; a < symbols; a++) {
+                pending.add(new int[] { b, a });
+                isPending.get(b)[a] = true;
+            }
+        }
+
+        while (!pending.isEmpty()) {
+            int[] splitter = pending.removeFirst();
+            isPending.get(splitter[0])[splitter[1]] = false;
+
+            // States that go into the splitter block with the symbol
+            BitSet into = new BitSet(n);
+            for (int q : blocks.get(splitter[0])) {
+                for (int p : previous.get(splitter[1]).get(q)) {
+                    into.set(p);
+                }
+            }
+
+            // Blocks partly inside are split
+            BitSet touched = new BitSet();
+            for (int p = into.nextSetBit(0); p >= 0; p = into.nextSetBit(p + 1)) {
+                touched.set(blockOf[p]);
+            }
+            for (int y = touched.nextSetBit(0); y >= 0; y = touched.nextSetBit(y + 1)) {
+                List<Integer> inside = new ArrayList<Integer>();
+                List<Integer> outside = new ArrayList<Integer>();
+                for (int q : blocks.get(y)) {
+                    (into.get(q) ? inside : outside).add(q);
+                }
+                if (outside.isEmpty())
+                    continue;
+
+                int z = blocks.size();
+                blocks.set(y, outside);
+                blocks.add(inside);
+                isPending.add(new boolean[symbols]);
+                for (int q : inside) {
+                    blockOf[q] = z;
+                }
+                for (int a = 0; a < symbols; a++) {
+                    // Both halves are needed if the whole block was pending; otherwise the smaller one is enough
+                    int add = isPending.get(y)[a] || inside.size() <= outside.size() ? z : y;
+                    if (!isPending.get(add)[a]) {
+                        pending.add(new int[] { add, a });
+                        isPending.get(add)[a] = true;
+                    }
+                }
+            }
+        }
+        return blockOf;
+    }
+
+    /**
+     * Creates the optimized machine from the blocks of the minimized dfa
+     */
+    private static StateMachine build(String name, Nfa nfa, Dfa dfa, int[] blockOf) {
+        StateMachine machine = new StateMachine(name);
+        int dead = dfa.size();
+        State[] blockStates = new State[dead + 1];
+        State finalState = null;
+        State errorState = null;
+        int numStates = 1;
+
+        // Blocks in the order they are reached from the initial state
+        List<Integer> order = new ArrayList<Integer>();
+        BitSet seen = new BitSet();
+        order.add(0);
+        seen.set(blockOf[0]);
+        for (int i = 0; i < order.size(); i++) {
+            int[] row = dfa.next.get(order.get(i));
+            for (int to : row) {
+                if (to != -1 && !seen.get(blockOf[to])) {
+                    seen.set(blockOf[to]);
+                    order.add(to);
+                }
+            }
+        }
+
+        for (int q : order) {
+            if (q == 0) {
+                blockStates[blockOf[q]] = machine.getInitialState();
+            } else {
+                int symbol = dfa.reachedBy.get(q);
+                blockStates[blockOf[q]] = machine.createState("State" + numStates + "_" + nfa.symbols.get(symbol));
+                numStates++;
+            }
+        }
+
+        for (int q : order) {
+            State from = blockStates[blockOf[q]];
+            int[] row = dfa.next.get(q);
+            for (int symbol = 0; symbol < row.length; symbol++) {
+                if (row[symbol] != -1 && !nfa.isCall.get(symbol)) {
+                    from.createTransitionTo(blockStates[blockOf[row[symbol]]], nfa.symbols.get(symbol), null);
+                }
+            }
+            for (int symbol : dfa.calls.get(q)) {
+                from.createMachineCallTo(blockStates[blockOf[row[symbol]]], nfa.symbols.get(symbol), null, null);
+            }
+            if (dfa.acceptNow.get(q)) {
+                from.setAcceptState();
+            } else if (dfa.accept.get(q)) {
+                if (finalState == null) {
+                    finalState = machine.createState("Final");
+                    finalState.setAcceptState();
+                }
+                from.createEpsilonTransitionTo(finalState, null);
+            }
+            if (dfa.alternate.get(q)) {
+                if (errorState == null) {
+                    errorState = machine.createState("Error");
+                    errorState.setErrorState();
+                    errorState.setAlternateTransition(errorState, null);
+                }
+                from.setAlternateTransition(errorState, null);
+            }
+        }
+        return machine;
+    }
+}
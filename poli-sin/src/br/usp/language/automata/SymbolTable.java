@@ -0,0 +1,114 @@
+package br.usp.language.automata;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives every symbol (terminals and non-terminals/machine names) a dense int id, so that grammars, automata and
+ * tokens can refer to the symbols without hashing or comparing strings. Ids start at 0 and are never reused.
+ *
+ * A table may grow while grammars and machines are being built, but should not be changed once it is shared by
+ * compiled machines running in other threads.
+ *
+ * @author Marcelo Li Koga
+ */
+public class SymbolTable {
+
+    /** Id of symbols that are not in the table */
+    public static final int UNKNOWN = -1;
+
+    private Map<String, Integer> ids;
+
+    private List<String> names;
+
+    private BitSet nonTerminals;
+
+    public SymbolTable() {
+        this.ids = new HashMap<String, Integer>();
+        this.names = new ArrayList<String>();
+        this.nonTerminals = new BitSet();
+    }
+
+    /**
+     * Adds a terminal symbol, if it is not in the table yet.
+     *
+     * @param name
+     * @return id of the symbol
+     */
+    public int intern(String name) {
+        Integer id = this.ids.get(name);
+        if (id == null) {
+            id = this.names.size();
+            this.ids.put(name, id);
+            this.names.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * Adds a non-terminal symbol (the name of a machine), if it is not in the table yet. A symbol already added as a
+     * terminal becomes a non-terminal.
+     *
+     * @param name
+     * @return id of the symbol
+     */
+    public int internNonTerminal(String name) {
+        int id = this.intern(name);
+        this.nonTerminals.set(id);
+        return id;
+    }
+
+    /**
+     * @param name
+     * @return id of the symbol; UNKNOWN if it is not in the table
+     */
+    public int getId(String name) {
+        Integer id = this.ids.get(name);
+        if (id == null)
+            return UNKNOWN;
+        return id;
+    }
+
+    /**
+     * Translates a sequence of symbols into their ids.
+     *
+     * @param names
+     * @return ids; UNKNOWN for the symbols that are not in the table
+     */
+    public int[] getIds(String[] names) {
+        int[] result = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            result[i] = this.getId(names[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @param id
+     * @return name of the symbol; null if the id is UNKNOWN
+     */
+    public String getName(int id) {
+        if (id == UNKNOWN)
+            return null;
+        return this.names.get(id);
+    }
+
+    public boolean isNonTerminal(int id) {
+        return id != UNKNOWN && this.nonTerminals.get(id);
+    }
+
+    /**
+     * @return number of symbols; all ids are smaller than it
+     */
+    public int size() {
+        return this.names.size();
+    }
+
+    @Override
+    public String toString() {
+        return "SymbolTable:" + this.names;
+    }
+}
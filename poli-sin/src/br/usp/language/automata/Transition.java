@@ -64,6 +64,7 @@ public class Transition {
      * @param condition nova condição
      */
     public void addCondition(String condition) {
+        this.discardTable();
         this.conditions.add(condition);
     }
 
@@ -111,6 +112,8 @@ public class Transition {
     }
 
     public void setAction(Action action) {
+        // Compiled tables know which transitions have actions
+        this.discardTable();
         this.action = action;
     }
 
@@ -133,16 +136,27 @@ public class Transition {
     // intended to allow adaptatvive actions
 
     public void setFrom(State from) {
+        this.discardTable();
         this.from = from;
     }
 
     public void setTo(State to) {
+        this.discardTable();
         this.to = to;
     }
 
     public void setConditions(List<String> conditions) {
+        this.discardTable();
         this.conditions = conditions;
     }
+
+    /**
+     * The compiled table of the origin state refers to this transition's conditions and destination.
+     */
+    private void discardTable() {
+        if (this.from != null)
+            this.from.discardTable();
+    }
     
     /**
      * Inverts this transition, i.e., swaps states from and to
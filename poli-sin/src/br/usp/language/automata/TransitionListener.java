@@ -0,0 +1,32 @@
+package br.usp.language.automata;
+
+/**
+ * Receives the transitions taken by a StackMachineCursor. Cursors share the structure of their StackMachine, so
+ * instead of running the actions of the transitions (which belong to the shared structure) they tell their own
+ * listener what happened.
+ *
+ * @author Marcelo Li Koga
+ */
+public interface TransitionListener {
+
+    /**
+     * A normal, epsilon or alternate transition was taken. Epsilon transitions without an action are not reported.
+     *
+     * @param transition
+     */
+    void transitionTaken(Transition transition);
+
+    /**
+     * A submachine was called; the cursor is already at the initial state of the called machine
+     *
+     * @param call
+     */
+    void machineCalled(MachineCall call);
+
+    /**
+     * A submachine returned; the cursor is already back at the calling machine
+     *
+     * @param call the call that called the machine
+     */
+    void machineReturned(MachineCall call);
+}
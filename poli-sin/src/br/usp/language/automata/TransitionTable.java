@@ -0,0 +1,314 @@
+package br.usp.language.automata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled form of a finished StateMachine. States receive dense ids, input symbols take their ids from a
+ * SymbolTable, and the transitions are stored in tables indexed by <i>state id * width + symbol id</i>, so the next
+ * transition is found in constant time.
+ *
+ * The table is discarded as soon as the structure of one of its states changes; the machine then goes back to the
+ * list based interpretation until it is compiled again.
+ *
+ * @author Marcelo Li Koga
+ */
+final class TransitionTable {
+
+    /** Marks an absent entry in the tables */
+    static final int NONE = -1;
+
+    /** States indexed by id */
+    final State[] states;
+
+    /** Id of the initial state */
+    final int initial;
+
+    /** Types of the states, as they were when the machine was compiled */
+    final boolean[] accept;
+    final boolean[] error;
+
+    /** Ids of the input symbols (transition conditions and called machine names) */
+    final SymbolTable symbols;
+
+    /** Id of the name of the machine itself */
+    final int machineSymbol;
+
+    /** Number of columns of the tables; symbols added to the SymbolTable afterwards have no transitions */
+    final int width;
+
+    /** Normal transitions; the tables below keep indexes of this array */
+    final Transition[] transitions;
+
+    /** Id of the destination state of each normal transition */
+    final int[] transitionTo;
+
+    /** Submachine calls, grouped by state in the same order as in the states */
+    final MachineCall[] calls;
+
+    /** Id of the machine called by each call */
+    final int[] callSymbol;
+
+    /** Id of the state each call goes to when the called machine returns */
+    final int[] callTo;
+
+    /** Calls of state i are the ones from callStart[i] (inclusive) to callStart[i + 1] (exclusive) */
+    final int[] callStart;
+
+    /** (state, symbol) -> index of the normal transition activated */
+    final int[] next;
+
+    /** (state, called machine) -> index of the machine call */
+    final int[] callNext;
+
+    /** First epsilon transition of each state (the only one the interpreter follows) */
+    final Transition[] epsilon;
+
+    /** Id of the destination of the epsilon transition of each state; NONE if there is none */
+    final int[] epsilonTo;
+
+    /** Alternate transition of each state */
+    final Transition[] alternate;
+
+    /** Id of the destination of the alternate transition of each state; NONE if there is none */
+    final int[] alternateTo;
+
+    /**
+     * End of the chain of epsilon transitions taken by finish from each state. The chain stops at the first state
+     * that accepts, calls machines or has no epsilon transition; NONE if the state has no epsilon transition.
+     */
+    final int[] closureTo;
+
+    /** Whether no transition of the chain of each state has an action, so the chain can be taken at once */
+    final boolean[] closureSilent;
+
+    /** Whether an accept state is reached from each state by epsilon transitions only */
+    final boolean[] epsilonAccept;
+
+    /* Lookahead, filled by the StackMachine (see Lookahead) */
+
+    /** FIRST set of each state, over the symbol ids */
+    BitSet[] first;
+
+    /** NULLABLE flag of each state */
+    boolean[] nullable;
+
+    /** (state, symbol) -> index of the call to be taken for the symbol */
+    int[] callChoice;
+
+    /** Index of the call to be taken by each state when the input is not in any FIRST set (or at the end) */
+    int[] nullableChoice;
+
+    private boolean valid;
+
+    TransitionTable(String machineName, List<State> machineStates, State initialState, SymbolTable symbols) {
+        this.symbols = symbols;
+        this.machineSymbol = symbols.internNonTerminal(machineName);
+
+        // Collects the states of the machine and the ones only reachable through transitions
+        Map<State, Integer> ids = new IdentityHashMap<State, Integer>();
+        List<State> all = new ArrayList<State>();
+        for (State s : machineStates) {
+            addState(ids, all, s);
+        }
+        addState(ids, all, initialState);
+        for (int i = 0; i < all.size(); i++) {
+            for (Transition t : all.get(i).getAllTransitions()) {
+                addState(ids, all, t.getStateTo());
+            }
+            if (all.get(i).hasAlternateTransition()) {
+                addState(ids, all, all.get(i).getAlternateTransition().getStateTo());
+            }
+        }
+        this.states = all.toArray(new State[all.size()]);
+        this.initial = ids.get(initialState);
+        this.accept = new boolean[this.states.length];
+        this.error = new boolean[this.states.length];
+
+        List<Transition> trans = new ArrayList<Transition>();
+        List<MachineCall> machineCalls = new ArrayList<MachineCall>();
+        for (State s : this.states) {
+            for (Transition t : s.getTransitions()) {
+                trans.add(t);
+                for (String condition : t.getConditions()) {
+                    symbols.intern(condition);
+                }
+            }
+            for (MachineCall m : s.getMachineCalls()) {
+                machineCalls.add(m);
+                symbols.internNonTerminal(m.getCalledMachineName());
+            }
+        }
+        this.transitions = trans.toArray(new Transition[trans.size()]);
+        this.calls = machineCalls.toArray(new MachineCall[machineCalls.size()]);
+        this.transitionTo = new int[this.transitions.length];
+        this.callSymbol = new int[this.calls.length];
+        this.callTo = new int[this.calls.length];
+        this.callStart = new int[this.states.length + 1];
+        this.width = Math.max(1, symbols.size());
+
+        this.next = new int[this.states.length * this.width];
+        this.callNext = new int[this.states.length * this.width];
+        Arrays.fill(this.next, NONE);
+        Arrays.fill(this.callNext, NONE);
+        this.epsilon = new Transition[this.states.length];
+        this.epsilonTo = new int[this.states.length];
+        this.alternate = new Transition[this.states.length];
+        this.alternateTo = new int[this.states.length];
+
+        int t = 0;
+        int c = 0;
+        for (int i = 0; i < this.states.length; i++) {
+            State s = this.states[i];
+            int row = i * this.width;
+            this.accept[i] = s.isAcceptState();
+            this.error[i] = s.isErrorState();
+            for (Transition trn : s.getTransitions()) {
+                this.transitionTo[t] = ids.get(trn.getStateTo());
+                for (String condition : trn.getConditions()) {
+                    // The first transition in the list has precedence
+                    int cell = row + symbols.getId(condition);
+                    if (this.next[cell] == NONE)
+                        this.next[cell] = t;
+                }
+                t++;
+            }
+            this.callStart[i] = c;
+            for (MachineCall m : s.getMachineCalls()) {
+                this.callSymbol[c] = symbols.getId(m.getCalledMachineName());
+                this.callTo[c] = ids.get(m.getStateTo());
+                int cell = row + this.callSymbol[c];
+                if (this.callNext[cell] == NONE)
+                    this.callNext[cell] = c;
+                c++;
+            }
+            this.epsilonTo[i] = NONE;
+            if (s.hasEpsilonTransition()) {
+                this.epsilon[i] = s.getEpsilonTransitions().get(0);
+                this.epsilonTo[i] = ids.get(this.epsilon[i].getStateTo());
+            }
+            this.alternateTo[i] = NONE;
+            if (s.hasAlternateTransition()) {
+                this.alternate[i] = s.getAlternateTransition();
+                this.alternateTo[i] = ids.get(this.alternate[i].getStateTo());
+            }
+        }
+        this.callStart[this.states.length] = c;
+
+        this.closureTo = new int[this.states.length];
+        this.closureSilent = new boolean[this.states.length];
+        this.epsilonAccept = new boolean[this.states.length];
+        for (int i = 0; i < this.states.length; i++) {
+            this.computeClosure(i);
+        }
+
+        // Only now the states know the table
+        for (int i = 0; i < this.states.length; i++) {
+            this.states[i].setTable(this, i);
+        }
+        this.valid = true;
+    }
+
+    /**
+     * Follows the epsilon transitions from a state. Chains longer than the number of states have a cycle, and are
+     * cut there.
+     */
+    private void computeClosure(int state) {
+        boolean silent = true;
+        int current = state;
+        int steps = 0;
+        while (this.epsilonTo[current] != NONE && steps < this.states.length) {
+            silent &= this.epsilon[current].getAction() == null;
+            current = this.epsilonTo[current];
+            steps++;
+            if (this.accept[current] || this.callStart[current] != this.callStart[current + 1])
+                break;
+        }
+        this.closureTo[state] = steps == 0 ? NONE : current;
+        this.closureSilent[state] = silent;
+
+        boolean accepts = this.accept[state];
+        current = state;
+        for (steps = 0; !accepts && this.epsilonTo[current] != NONE && steps < this.states.length; steps++) {
+            current = this.epsilonTo[current];
+            accepts = this.accept[current];
+        }
+        this.epsilonAccept[state] = accepts;
+    }
+
+    private static void addState(Map<State, Integer> ids, List<State> all, State s) {
+        if (!ids.containsKey(s)) {
+            ids.put(s, all.size());
+            all.add(s);
+        }
+    }
+
+    /**
+     * @return id of the input; NONE if it is not in the SymbolTable
+     */
+    int symbolOf(String input) {
+        return this.symbols.getId(input);
+    }
+
+    /**
+     * @return index of the normal transition activated by symbol at the given state; NONE if there is none
+     */
+    int transitionIndex(int state, int symbol) {
+        if (symbol < 0 || symbol >= this.width)
+            return NONE;
+        return this.next[state * this.width + symbol];
+    }
+
+    /**
+     * @return index of the call of the given machine (symbol) at the given state; NONE if there is none
+     */
+    int callIndex(int state, int symbol) {
+        if (symbol < 0 || symbol >= this.width)
+            return NONE;
+        return this.callNext[state * this.width + symbol];
+    }
+
+    /**
+     * @return normal transition activated by symbol at the given state; null if there is none
+     */
+    Transition transition(int state, int symbol) {
+        if (symbol < 0 || symbol >= this.width)
+            return null;
+        int i = this.next[state * this.width + symbol];
+        return i == NONE ? null : this.transitions[i];
+    }
+
+    /**
+     * @return machine call that calls the given machine (symbol) at the given state; null if there is none
+     */
+    MachineCall call(int state, int symbol) {
+        if (symbol < 0 || symbol >= this.width)
+            return null;
+        int i = this.callNext[state * this.width + symbol];
+        return i == NONE ? null : this.calls[i];
+    }
+
+    /**
+     * @return index of the call that should be taken at the given state for the symbol; NONE if there is none
+     */
+    int choice(int state, int symbol) {
+        if (symbol < 0 || symbol >= this.width)
+            return this.nullableChoice[state];
+        return this.callChoice[state * this.width + symbol];
+    }
+
+    boolean isValid() {
+        return this.valid;
+    }
+
+    /**
+     * Called when the structure of one of the states changes.
+     */
+    void invalidate() {
+        this.valid = false;
+    }
+}
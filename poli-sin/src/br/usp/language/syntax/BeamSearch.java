@@ -0,0 +1,123 @@
+package br.usp.language.syntax;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import br.usp.language.automata.StackMachineCursor;
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.tree.SyntaxTree;
+
+/**
+ * Beam search of SyntacticAnalyser.analyseBeam: the readings of each word are tried on every configuration kept, and
+ * only the beamWidth best configurations go on to the next word. The search moves a cursor of its own, without
+ * building trees; the trees of the best configurations are built at the end by the analyser.
+ *
+ * @author Marcelo Li Koga
+ */
+final class BeamSearch {
+
+    private final ReadingScorer scorer;
+
+    private final int beamWidth;
+
+    private final int k;
+
+    /**
+     * @param scorer ranks the readings
+     * @param beamWidth maximum number of configurations kept after each word
+     * @param k maximum number of trees returned
+     */
+    BeamSearch(ReadingScorer scorer, int beamWidth, int k) {
+        this.scorer = scorer;
+        this.beamWidth = beamWidth;
+        this.k = k;
+    }
+
+    /**
+     * @param analyser analyser whose tree is left as the best one
+     * @param allTokens possible tokens of each word
+     * @return the trees of the best configurations that reach an accept state, best first
+     */
+    List<SyntaxTree> run(SyntacticAnalyser analyser, List<TokenMorph[]> allTokens) {
+        int[][] allSymbols = analyser.toSymbols(allTokens);
+        StackMachineCursor cursor = analyser.getStackMachine().newCursor();
+        StackMachineCursor.Snapshot start = analyser.getCursor().snapshot();
+        List<Configuration> beam = new ArrayList<Configuration>();
+        beam.add(new Configuration(start, 0, null));
+
+        for (int i = 0; i < allTokens.size() && !beam.isEmpty(); i++) {
+            TokenMorph[] wordTokens = allTokens.get(i);
+            List<Configuration> next = new ArrayList<Configuration>();
+            for (Configuration c : beam) {
+                for (int j = 0; j < wordTokens.length; j++) {
+                    cursor.restore(c.snapshot);
+                    if (cursor.input(allSymbols[i][j]) && !cursor.isAtErrorState()) {
+                        double score = c.score + this.scorer.score(wordTokens[j]);
+                        next.add(new Configuration(cursor.snapshot(), score, new ReadingPath(j, c.readings)));
+                    }
+                }
+            }
+            // Stable, so ties keep the order of analyse2
+            Collections.sort(next);
+            beam = this.prune(next);
+        }
+
+        List<Configuration> complete = new ArrayList<Configuration>();
+        for (Configuration c : beam) {
+            cursor.restore(c.snapshot);
+            cursor.finish();
+            if (cursor.isAtAcceptState() && complete.size() < this.k)
+                complete.add(c);
+        }
+
+        // The best one is built last, so the analyser ends with its tree and configuration
+        SyntaxTree[] trees = new SyntaxTree[complete.size()];
+        for (int t = trees.length - 1; t >= 0; t--) {
+            trees[t] = analyser.replay(start, ReadingPath.toArray(complete.get(t).readings, allTokens.size()),
+                    allTokens, allSymbols);
+        }
+        List<SyntaxTree> result = new ArrayList<SyntaxTree>();
+        Collections.addAll(result, trees);
+        return result;
+    }
+
+    /**
+     * Keeps the beamWidth best configurations. Readings that lead to the same configuration have the same future,
+     * so only the best of them is kept and the beam is not filled with copies of one configuration.
+     *
+     * @param sorted configurations, best first
+     */
+    private List<Configuration> prune(List<Configuration> sorted) {
+        List<Configuration> beam = new ArrayList<Configuration>();
+        Set<StackMachineCursor.Snapshot> kept = new HashSet<StackMachineCursor.Snapshot>();
+        for (int c = 0; c < sorted.size() && beam.size() < this.beamWidth; c++) {
+            if (kept.add(sorted.get(c).snapshot))
+                beam.add(sorted.get(c));
+        }
+        return beam;
+    }
+
+    /**
+     * A configuration kept by the search, with the readings chosen to reach it
+     */
+    private static final class Configuration implements Comparable<Configuration> {
+
+        final StackMachineCursor.Snapshot snapshot;
+        final double score;
+        final ReadingPath readings;
+
+        Configuration(StackMachineCursor.Snapshot snapshot, double score, ReadingPath readings) {
+            this.snapshot = snapshot;
+            this.score = score;
+            this.readings = readings;
+        }
+
+        public int compareTo(Configuration other) {
+            // Best score first
+            return Double.compare(other.score, this.score);
+        }
+    }
+}
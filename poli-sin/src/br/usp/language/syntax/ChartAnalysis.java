@@ -0,0 +1,38 @@
+package br.usp.language.syntax;
+
+import java.util.List;
+
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.chart.CYKParser;
+import br.usp.language.syntax.chart.Chart;
+import br.usp.language.syntax.tree.SyntaxTree;
+
+/**
+ * Analysis of SyntacticAnalyser.analyseCYK: the sentence is analysed bottom-up by a CYKParser, and the analyser is
+ * given the first tree of the chart.
+ *
+ * @author Marcelo Li Koga
+ */
+final class ChartAnalysis {
+
+    private final CYKParser parser;
+
+    ChartAnalysis(CYKParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * @param analyser analyser that is given the tree
+     * @param allTokens possible tokens of each word
+     * @return true if the sentence has at least one analysis
+     */
+    boolean run(SyntacticAnalyser analyser, List<TokenMorph[]> allTokens) {
+        int[][] allSymbols = SyntacticAnalyser.toSymbols(allTokens, this.parser.getGrammar().getSymbolTable());
+        Chart chart = this.parser.parse(allSymbols, allTokens.toArray(new TokenMorph[allTokens.size()][]));
+
+        SyntaxTree first = chart.toTree();
+        if (first != null)
+            analyser.setTree(first);
+        return chart.isAccepted();
+    }
+}
@@ -0,0 +1,168 @@
+package br.usp.language.syntax;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import br.usp.language.automata.PrefixTable;
+import br.usp.language.automata.StackMachineCursor;
+import br.usp.language.automata.SymbolTable;
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.FirstFollowSets;
+import br.usp.language.syntax.tree.SyntaxTreeNode;
+
+/**
+ * Analysis of SyntacticAnalyser.analyseRecovering: one pass over the sentence that gets over the errors (panic mode)
+ * instead of backtracking. The analyser is moved word by word, and each attempt that fails is undone with its
+ * marks.
+ *
+ * @author Marcelo Li Koga
+ */
+final class ErrorRecovery {
+
+    private final FirstFollowSets followSets;
+
+    private final PrefixTable prefixTable;
+
+    /**
+     * @param followSets FOLLOW sets of the grammar, to choose the non-terminals given up
+     * @param prefixTable inputs expected by each configuration, so the ones that fail are not tried
+     */
+    ErrorRecovery(FirstFollowSets followSets, PrefixTable prefixTable) {
+        this.followSets = followSets;
+        this.prefixTable = prefixTable;
+    }
+
+    /**
+     * @param analyser analyser whose tree gets the nodes of the errors
+     * @param allTokens possible tokens of each word
+     * @return the errors found, in order; empty if the sentence was accepted
+     */
+    List<ParseError> run(SyntacticAnalyser analyser, List<TokenMorph[]> allTokens) {
+        int[][] allSymbols = analyser.toSymbols(allTokens);
+        List<ParseError> errors = new ArrayList<ParseError>();
+        analyser.startJournal();
+
+        for (int i = 0; i < allTokens.size(); i++) {
+            TokenMorph[] wordTokens = allTokens.get(i);
+            if (wordTokens.length == 0 || this.inputAny(analyser, wordTokens, allSymbols[i]))
+                continue;
+            if (this.resynchronize(analyser, i, wordTokens, allSymbols[i], errors))
+                continue;
+            String missing = this.insertMissing(analyser, i, allTokens, allSymbols);
+            if (missing != null) {
+                errors.add(new ParseError(ParseError.Kind.INSERTED, i, missing));
+                continue;
+            }
+            SyntaxTreeNode error = new SyntaxTreeNode(SyntacticAnalyser.ERROR_LABEL);
+            error.addChild(new SyntaxTreeNode(wordTokens[0].getType(), wordTokens[0]));
+            analyser.addErrorNode(error);
+            errors.add(new ParseError(ParseError.Kind.SKIPPED, i, wordTokens[0].getType()));
+        }
+        analyser.stopJournal();
+
+        StackMachineCursor cursor = analyser.getCursor();
+        cursor.finish();
+        while (!cursor.isAtAcceptState()) {
+            errors.add(new ParseError(ParseError.Kind.ABANDONED, allTokens.size(), cursor.getCurrentMachineName()));
+            analyser.addErrorNode(new SyntaxTreeNode(SyntacticAnalyser.ERROR_LABEL));
+            if (!cursor.abandonMachine())
+                break;
+            cursor.finish();
+        }
+        return errors;
+    }
+
+    /**
+     * Tries the readings of a word in order, leaving out the ones that are not expected
+     * 
+     * @return true if one was consumed; otherwise the analysis is left as it was
+     */
+    private boolean inputAny(SyntacticAnalyser analyser, TokenMorph[] wordTokens, int[] wordSymbols) {
+        BitSet expected = this.prefixTable.getExpected(analyser.getCursor());
+        SyntacticAnalyser.Mark mark = analyser.mark();
+        for (int j = 0; j < wordTokens.length; j++) {
+            if (wordSymbols[j] < 0 || !expected.get(wordSymbols[j]))
+                continue;
+            if (analyser.read(wordTokens[j], wordSymbols[j]))
+                return true;
+            analyser.backtrack(mark);
+        }
+        return false;
+    }
+
+    /**
+     * Gives up the innermost non-terminals up to one whose FOLLOW set has a category of the word, and reads the word
+     * in the non-terminal that called it
+     * 
+     * @return true if the word was read; otherwise the analysis is left as it was
+     */
+    private boolean resynchronize(SyntacticAnalyser analyser, int word, TokenMorph[] wordTokens, int[] wordSymbols,
+            List<ParseError> errors) {
+        SymbolTable grammarSymbols = this.followSets.getGrammar().getSymbolTable();
+        Set<Integer> categories = new HashSet<Integer>();
+        for (TokenMorph token : wordTokens) {
+            categories.add(grammarSymbols.getId(token.getType()));
+        }
+
+        StackMachineCursor cursor = analyser.getCursor();
+        SyntacticAnalyser.Mark mark = analyser.mark();
+        int depth = cursor.getStackDepth();
+        // Machines that can be given up: the current one and the stacked ones, except the bottom one
+        for (int k = 0; k < depth; k++) {
+            String name = k == 0 ? cursor.getCurrentMachineName() : cursor.getStackedMachineName(depth - k);
+            int nonTerminal = grammarSymbols.getId(name);
+            if (nonTerminal == SymbolTable.UNKNOWN
+                    || Collections.disjoint(this.followSets.getFollowTerminals(nonTerminal), categories))
+                continue;
+
+            List<ParseError> abandoned = new ArrayList<ParseError>();
+            for (int up = 0; up <= k; up++) {
+                abandoned.add(new ParseError(ParseError.Kind.ABANDONED, word, cursor.getCurrentMachineName()));
+                analyser.addErrorNode(new SyntaxTreeNode(SyntacticAnalyser.ERROR_LABEL));
+                cursor.abandonMachine();
+            }
+            if (this.inputAny(analyser, wordTokens, wordSymbols)) {
+                errors.addAll(abandoned);
+                return true;
+            }
+            analyser.backtrack(mark);
+        }
+        return false;
+    }
+
+    /**
+     * Looks for a terminal that, put in before the word, lets the word and the next one be read
+     * 
+     * @return category of the terminal put in; null if there is none, and then the analysis is left as it was
+     */
+    private String insertMissing(SyntacticAnalyser analyser, int word, List<TokenMorph[]> allTokens,
+            int[][] allSymbols) {
+        SymbolTable symbols = analyser.getCursor().getSymbolTable();
+        BitSet expected = this.prefixTable.getExpected(analyser.getCursor());
+        SyntacticAnalyser.Mark mark = analyser.mark();
+        for (int symbol = expected.nextSetBit(0); symbol >= 0; symbol = expected.nextSetBit(symbol + 1)) {
+            String category = symbols.getName(symbol);
+            Map<String, String> attributes = new HashMap<String, String>();
+            attributes.put("cat", category);
+            if (analyser.read(new TokenMorph("", "", attributes, true), symbol)
+                    && this.inputAny(analyser, allTokens.get(word), allSymbols[word])) {
+                if (word + 1 == allTokens.size())
+                    return category;
+                // The next word must fit as well
+                SyntacticAnalyser.Mark inserted = analyser.mark();
+                boolean next = this.inputAny(analyser, allTokens.get(word + 1), allSymbols[word + 1]);
+                analyser.backtrack(inserted);
+                if (next)
+                    return category;
+            }
+            analyser.backtrack(mark);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,107 @@
+package br.usp.language.syntax;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import br.usp.language.automata.StackMachineCursor;
+
+/**
+ * Configurations of the cursor that analyse2 already explored before a word without reaching the end of the
+ * sentence. What happens after a word depends only on the configuration of the cursor (current machine, state and
+ * the stack of calling machines), not on the readings chosen before, so a configuration that failed once fails
+ * again, and the backtracking can skip it with all the machine calls that would follow.
+ *
+ * The memo keeps at most a fixed number of configurations, dropping the least recently used ones.
+ *
+ * @author Marcelo Li Koga
+ */
+final class FailureMemo {
+
+    private final LinkedHashMap<Key, Boolean> failures;
+
+    private final int capacity;
+
+    private long hits;
+
+    private static final class Key {
+
+        final int word;
+        final StackMachineCursor.Snapshot snapshot;
+
+        Key(int word, StackMachineCursor.Snapshot snapshot) {
+            this.word = word;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return this.word == other.word && this.snapshot.equals(other.snapshot);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.word + this.snapshot.hashCode();
+        }
+    }
+
+    /**
+     * @param capacity maximum number of configurations kept; 0 turns the memo off
+     */
+    FailureMemo(final int capacity) {
+        this.capacity = capacity;
+        this.failures = new LinkedHashMap<Key, Boolean>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return whether the configuration is known to fail before the word
+     */
+    boolean isFailure(int word, StackMachineCursor.Snapshot snapshot) {
+        if (this.capacity == 0)
+            return false;
+        boolean found = this.failures.get(new Key(word, snapshot)) != null;
+        if (found)
+            this.hits++;
+        return found;
+    }
+
+    void addFailure(int word, StackMachineCursor.Snapshot snapshot) {
+        if (this.capacity > 0)
+            this.failures.put(new Key(word, snapshot), Boolean.TRUE);
+    }
+
+    /**
+     * Forgets all configurations; they are only valid for one sentence
+     */
+    void clear() {
+        this.failures.clear();
+    }
+
+    int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return number of configurations kept
+     */
+    int size() {
+        return this.failures.size();
+    }
+
+    /**
+     * @return number of times a configuration was skipped
+     */
+    long getHits() {
+        return this.hits;
+    }
+}
@@ -0,0 +1,95 @@
+package br.usp.language.syntax;
+
+import br.usp.language.automata.PrefixTable;
+import br.usp.language.automata.StackMachine;
+import br.usp.language.syntax.chart.CYKParser;
+import br.usp.language.syntax.forest.ForestParser;
+import br.usp.language.syntax.forest.GLLParser;
+import br.usp.language.syntax.grammar.ChomskyNormalForm;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.FirstFollowSets;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.ll.LLParser;
+import br.usp.language.syntax.ll.LLTable;
+
+/**
+ * Parsers and tables of a grammar used by the analyses other than analyse and analyse2, each one built when first
+ * needed. They are read-only once built, so a SyntacticAnalyserFactory shares one instance with all its analysers;
+ * an analyser created from a grammar has its own.
+ *
+ * @author Marcelo Li Koga
+ */
+final class GrammarParsers {
+
+    private final ContextFreeGrammar grammar;
+
+    private final StackMachine stackMachine;
+
+    private IndexedGrammar indexedGrammar;
+
+    /** Parser of analyseAll and analyseViterbi */
+    private ForestParser generalizedParser;
+
+    /** Parser of analyseLL */
+    private LLParser predictiveParser;
+
+    /** Parser of analyseCYK */
+    private CYKParser chartParser;
+
+    /** Table of the sessions and of analyseRecovering */
+    private PrefixTable prefixTable;
+
+    /** FOLLOW sets of analyseRecovering */
+    private FirstFollowSets followSets;
+
+    /**
+     * @param grammar
+     * @param stackMachine compiled machine of the grammar
+     * @param generalizedParser parser on the grammar; null for a GLLParser built when first needed
+     */
+    GrammarParsers(ContextFreeGrammar grammar, StackMachine stackMachine, ForestParser generalizedParser) {
+        this.grammar = grammar;
+        this.stackMachine = stackMachine;
+        this.generalizedParser = generalizedParser;
+    }
+
+    ContextFreeGrammar getGrammar() {
+        return this.grammar;
+    }
+
+    private IndexedGrammar getIndexedGrammar() {
+        if (this.indexedGrammar == null)
+            this.indexedGrammar = new IndexedGrammar(this.grammar);
+        return this.indexedGrammar;
+    }
+
+    synchronized ForestParser getGeneralizedParser() {
+        if (this.generalizedParser == null)
+            this.generalizedParser = new GLLParser(this.getIndexedGrammar());
+        return this.generalizedParser;
+    }
+
+    synchronized LLParser getPredictiveParser() {
+        if (this.predictiveParser == null)
+            this.predictiveParser = new LLParser(new LLTable(this.getIndexedGrammar(), 1));
+        return this.predictiveParser;
+    }
+
+    synchronized CYKParser getChartParser() {
+        if (this.chartParser == null)
+            this.chartParser = new CYKParser(new ChomskyNormalForm(this.grammar));
+        return this.chartParser;
+    }
+
+    synchronized FirstFollowSets getFollowSets() {
+        if (this.followSets == null)
+            this.followSets = new FirstFollowSets(this.getIndexedGrammar(), 1);
+        return this.followSets;
+    }
+
+    synchronized PrefixTable getPrefixTable() {
+        if (this.prefixTable == null)
+            this.prefixTable = new PrefixTable(this.stackMachine);
+        return this.prefixTable;
+    }
+}
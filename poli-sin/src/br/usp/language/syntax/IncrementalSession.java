@@ -0,0 +1,160 @@
+package br.usp.language.syntax;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import br.usp.language.automata.PrefixTable;
+import br.usp.language.automata.StackMachineCursor;
+import br.usp.language.automata.SymbolTable;
+import br.usp.language.morph.TokenMorph;
+
+/**
+ * Reads a sentence one word at a time, telling after each word which categories can come next, as an authoring
+ * assistant needs. The session keeps the configurations of the machine reached by the readings of the words so far
+ * (one per distinct configuration), so each word only moves them forward: the prefix is never analysed again. The
+ * categories that can come next are taken from a PrefixTable, without trying them.
+ *
+ * A session must be used by one thread at a time; the PrefixTable can be shared by many sessions.
+ *
+ * @author Marcelo Li Koga
+ * @see SyntacticAnalyserFactory#newSession()
+ */
+public class IncrementalSession {
+
+    private final PrefixTable table;
+
+    private final StackMachineCursor cursor;
+
+    /** Configurations reached after each word; the first one has the initial configuration */
+    private final List<List<StackMachineCursor.Snapshot>> history = new ArrayList<List<StackMachineCursor.Snapshot>>();
+
+    /** Categories expected after the last word, found when first asked for */
+    private Set<String> expected;
+
+    /**
+     * @param table table of the machine to be run
+     * @param cursor a new cursor of the same machine
+     */
+    public IncrementalSession(PrefixTable table, StackMachineCursor cursor) {
+        this.table = table;
+        this.cursor = cursor;
+        this.cursor.setListener(null);
+        this.reset();
+    }
+
+    /**
+     * Goes back to the beginning of the sentence
+     */
+    public void reset() {
+        this.cursor.restart();
+        this.history.clear();
+        this.history.add(Collections.singletonList(this.cursor.snapshot()));
+        this.expected = null;
+    }
+
+    /**
+     * Reads the next word. If none of its readings can come next, the word is not read, so another one can be tried.
+     *
+     * @param readings possible tokens of the word, as given by the MorphologicAnalyser
+     * @return true if the word was read
+     */
+    public boolean add(TokenMorph[] readings) {
+        String[] categories = new String[readings.length];
+        for (int j = 0; j < readings.length; j++) {
+            categories[j] = readings[j].getType();
+        }
+        return this.add(categories);
+    }
+
+    /**
+     * Reads the next word, given by the categories of its readings (such as "v" or "art").
+     *
+     * @return true if the word was read
+     */
+    public boolean add(String... categories) {
+        SymbolTable symbols = this.table.getSymbolTable();
+        Set<StackMachineCursor.Snapshot> next = new LinkedHashSet<StackMachineCursor.Snapshot>();
+        for (StackMachineCursor.Snapshot current : this.getConfigurations()) {
+            for (String category : categories) {
+                int symbol = symbols.getId(category);
+                if (symbol == SymbolTable.UNKNOWN)
+                    continue;
+                this.cursor.restore(current);
+                if (this.cursor.input(symbol) && !this.cursor.isAtErrorState())
+                    next.add(this.cursor.snapshot());
+            }
+        }
+        if (next.isEmpty())
+            return false;
+        this.history.add(new ArrayList<StackMachineCursor.Snapshot>(next));
+        this.expected = null;
+        return true;
+    }
+
+    /**
+     * Forgets the last word read, as when it is erased
+     *
+     * @return false if no word was read
+     */
+    public boolean removeLast() {
+        if (this.history.size() == 1)
+            return false;
+        this.history.remove(this.history.size() - 1);
+        this.expected = null;
+        return true;
+    }
+
+    /**
+     * @return categories of the terminals that can come after the words read so far
+     */
+    public Set<String> expectedTerminals() {
+        if (this.expected == null) {
+            BitSet ids = new BitSet();
+            for (StackMachineCursor.Snapshot current : this.getConfigurations()) {
+                this.cursor.restore(current);
+                ids.or(this.table.getExpected(this.cursor));
+            }
+            Set<String> names = new LinkedHashSet<String>();
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                names.add(this.table.getSymbolTable().getName(id));
+            }
+            this.expected = Collections.unmodifiableSet(names);
+        }
+        return this.expected;
+    }
+
+    /**
+     * @return whether the words read so far are a whole sentence of the grammar
+     */
+    public boolean isComplete() {
+        for (StackMachineCursor.Snapshot current : this.getConfigurations()) {
+            this.cursor.restore(current);
+            this.cursor.finish();
+            if (this.cursor.isAtAcceptState())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return number of words read
+     */
+    public int getLength() {
+        return this.history.size() - 1;
+    }
+
+    /**
+     * @return number of distinct configurations reached by the readings of the words read
+     */
+    public int getConfigurationCount() {
+        return this.getConfigurations().size();
+    }
+
+    private List<StackMachineCursor.Snapshot> getConfigurations() {
+        return this.history.get(this.history.size() - 1);
+    }
+}
@@ -0,0 +1,184 @@
+package br.usp.language.syntax;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import br.usp.language.automata.StackMachine;
+import br.usp.language.automata.StackMachineCursor;
+import br.usp.language.morph.TokenMorph;
+
+/**
+ * Explores the readings of a sentence in parallel: where a word has more than one reading that the cursor consumes,
+ * the configuration is forked and each reading goes on in its own task. The first possibility that reads the whole
+ * sentence and finishes in an accept state wins, and the other tasks stop at their next word.
+ *
+ * Each thread of the pool moves its own cursor of the shared StackMachine; tasks only keep snapshots, and restore
+ * them before each reading, so a thread can run other tasks while it waits for its forks.
+ *
+ * As in analyse2, the configurations that failed are kept in a FailureMemo shared by the tasks, so a configuration
+ * reached by other readings is not explored again. The tasks also stop when the budget runs out; its steps are the
+ * steps of the cursors of all the tasks.
+ *
+ * @author Marcelo Li Koga
+ */
+final class ParallelSearch {
+
+    private final ForkJoinPool pool;
+
+    private final ParseBudget budget;
+
+    /** Configurations known to fail; the tasks use it while holding its lock */
+    private final FailureMemo failures;
+
+    /** Ids of the categories of the readings of each word of the sentence being analysed */
+    private int[][] symbols;
+
+    private ThreadLocal<StackMachineCursor> cursors;
+
+    private ParseBudget.Tracker tracker;
+
+    /** Steps of the cursors of all the tasks */
+    private final AtomicLong steps = new AtomicLong();
+
+    /** Readings of the winning possibility; null while there is none */
+    private final AtomicReference<int[]> winner = new AtomicReference<int[]>();
+
+    /** Whether the budget ran out */
+    private volatile boolean exhausted;
+
+    /**
+     * @param pool executes the tasks
+     * @param budget limits of steps and time of the search
+     * @param memoCapacity maximum number of failed configurations remembered; 0 turns the memo off
+     */
+    ParallelSearch(ForkJoinPool pool, ParseBudget budget, int memoCapacity) {
+        this.pool = pool;
+        this.budget = budget;
+        this.failures = new FailureMemo(memoCapacity);
+    }
+
+    /**
+     * @param analyser analyser that is given the tree of the winning possibility
+     * @param allTokens possible tokens of each word
+     * @return true if some possibility was accepted before the budget ran out
+     */
+    boolean run(SyntacticAnalyser analyser, List<TokenMorph[]> allTokens) {
+        final StackMachine stackMachine = analyser.getStackMachine();
+        this.symbols = analyser.toSymbols(allTokens);
+        this.cursors = new ThreadLocal<StackMachineCursor>() {
+            @Override
+            protected StackMachineCursor initialValue() {
+                return stackMachine.newCursor();
+            }
+        };
+        this.tracker = this.budget.start(0);
+
+        StackMachineCursor.Snapshot start = analyser.getCursor().snapshot();
+        this.pool.invoke(new Branch(0, start, null));
+        int[] chosen = this.winner.get();
+        if (chosen == null)
+            return false;
+        analyser.replay(start, chosen, allTokens, this.symbols);
+        return true;
+    }
+
+    /**
+     * @return whether the tasks must stop, because a possibility was accepted or the budget ran out
+     */
+    private boolean isOver() {
+        if (this.winner.get() != null || this.exhausted)
+            return true;
+        if (this.tracker.isExhausted(this.steps.get())) {
+            this.exhausted = true;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isFailure(int word, StackMachineCursor.Snapshot snapshot) {
+        synchronized (this.failures) {
+            return this.failures.isFailure(word, snapshot);
+        }
+    }
+
+    /**
+     * Remembers the configurations before consecutive words, from a given one on
+     */
+    private void addFailures(int firstWord, List<StackMachineCursor.Snapshot> snapshots) {
+        synchronized (this.failures) {
+            for (int k = 0; k < snapshots.size(); k++) {
+                this.failures.addFailure(firstWord + k, snapshots.get(k));
+            }
+        }
+    }
+
+    /**
+     * Follows one possibility from a word on, until it forks, fails or is accepted
+     */
+    private final class Branch extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int word;
+        private final StackMachineCursor.Snapshot snapshot;
+        private final ReadingPath path;
+
+        Branch(int word, StackMachineCursor.Snapshot snapshot, ReadingPath path) {
+            this.word = word;
+            this.snapshot = snapshot;
+            this.path = path;
+        }
+
+        @Override
+        protected void compute() {
+            StackMachineCursor cursor = cursors.get();
+            int i = this.word;
+            StackMachineCursor.Snapshot current = this.snapshot;
+            ReadingPath chosen = this.path;
+            // Configurations of this task before each word, from this.word on
+            List<StackMachineCursor.Snapshot> visited = new ArrayList<StackMachineCursor.Snapshot>();
+
+            while (!isOver()) {
+                visited.add(current);
+                long before = cursor.getSteps();
+                if (i == symbols.length) {
+                    cursor.restore(current);
+                    cursor.finish();
+                    steps.addAndGet(cursor.getSteps() - before);
+                    if (cursor.isAtAcceptState())
+                        winner.compareAndSet(null, ReadingPath.toArray(chosen, symbols.length));
+                    break;
+                }
+
+                List<Branch> next = new ArrayList<Branch>();
+                for (int j = 0; j < symbols[i].length; j++) {
+                    cursor.restore(current);
+                    if (cursor.input(symbols[i][j]) && !cursor.isAtErrorState()) {
+                        StackMachineCursor.Snapshot read = cursor.snapshot();
+                        if (!isFailure(i + 1, read))
+                            next.add(new Branch(i + 1, read, new ReadingPath(j, chosen)));
+                    }
+                }
+                steps.addAndGet(cursor.getSteps() - before);
+                if (next.isEmpty())
+                    break;
+                if (next.size() > 1) {
+                    invokeAll(next);
+                    break;
+                }
+                // Only one reading fits: goes on in this task
+                i++;
+                current = next.get(0).snapshot;
+                chosen = next.get(0).path;
+            }
+
+            // Nothing after these configurations was accepted, and the search was not stopped
+            if (!isOver())
+                addFailures(this.word, visited);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package br.usp.language.syntax;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the work of one analysis: a maximum number of steps of the StackMachineCursor (see
+ * StackMachineCursor.getSteps), a wall-clock timeout and cancellation from another thread. The analysis checks the
+ * budget between readings, so it stops soon after the budget runs out, never in the middle of a reading.
+ *
+ * The timeout counts from the beginning of each analysis that uses the budget. Cancelling is permanent: a
+ * cancelled budget stops every analysis that uses it.
+ *
+ * The budget only holds the limits; each analysis keeps its own count in a Tracker, so one budget can be shared by
+ * analysers running in many threads.
+ *
+ * @author Marcelo Li Koga
+ * @see SyntacticAnalyser#analyse2(ParseBudget)
+ */
+public class ParseBudget {
+
+    /** No limit of steps or time */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final long maxSteps;
+
+    private final long timeoutMillis;
+
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a budget without limits, which can only be cancelled
+     */
+    public ParseBudget() {
+        this(UNLIMITED, UNLIMITED);
+    }
+
+    /**
+     * @param maxSteps maximum number of steps of the cursor, or UNLIMITED
+     * @param timeoutMillis maximum time of the analysis, in milliseconds, or UNLIMITED
+     */
+    public ParseBudget(long maxSteps, long timeoutMillis) {
+        if (maxSteps < 0 || timeoutMillis < 0)
+            throw new IllegalArgumentException("Negative budget");
+        this.maxSteps = maxSteps;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getMaxSteps() {
+        return this.maxSteps;
+    }
+
+    public long getTimeoutMillis() {
+        return this.timeoutMillis;
+    }
+
+    /**
+     * Asks the analyses that use this budget to stop; may be called from any thread.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Called when an analysis begins.
+     * 
+     * @param steps steps of the cursor at the beginning
+     * @return the count of the analysis
+     */
+    Tracker start(long steps) {
+        return new Tracker(steps);
+    }
+
+    /**
+     * Spending of one analysis. It does not change once created, so the tasks of one analysis can share it; the
+     * steps are counted by the analysis.
+     */
+    final class Tracker {
+
+        /** Steps of the cursor when the analysis began */
+        private final long firstStep;
+
+        private final boolean timed;
+
+        /** Moment (System.nanoTime) when the analysis began */
+        private final long started;
+
+        /** Timeout in nanoseconds; saturates at Long.MAX_VALUE for very long timeouts */
+        private final long timeoutNanos;
+
+        private Tracker(long firstStep) {
+            this.firstStep = firstStep;
+            this.timed = timeoutMillis != UNLIMITED;
+            this.started = System.nanoTime();
+            this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        }
+
+        /**
+         * @param steps steps of the cursor now
+         * @return whether the analysis must stop
+         */
+        boolean isExhausted(long steps) {
+            if (cancelled)
+                return true;
+            if (maxSteps != UNLIMITED && steps - this.firstStep > maxSteps)
+                return true;
+            // Elapsed time, rather than a deadline, so that long timeouts do not overflow
+            return this.timed && System.nanoTime() - this.started > this.timeoutNanos;
+        }
+    }
+}
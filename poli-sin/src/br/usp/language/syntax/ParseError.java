@@ -0,0 +1,53 @@
+package br.usp.language.syntax;
+
+/**
+ * An error found, and got over, by SyntacticAnalyser.analyseRecovering.
+ *
+ * @author Marcelo Li Koga
+ */
+public class ParseError {
+
+    public enum Kind {
+        /** The word fits nowhere and was left out of the analysis */
+        SKIPPED,
+        /** A terminal was missing before the word, and was put in */
+        INSERTED,
+        /** The rest of a non-terminal was given up, so the word could go on in the non-terminal that called it */
+        ABANDONED
+    }
+
+    private final Kind kind;
+
+    private final int word;
+
+    private final String symbol;
+
+    ParseError(Kind kind, int word, String symbol) {
+        this.kind = kind;
+        this.word = word;
+        this.symbol = symbol;
+    }
+
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * @return position of the word where the error was found; the number of words if it was at the end
+     */
+    public int getWord() {
+        return this.word;
+    }
+
+    /**
+     * @return category of the word skipped, category inserted or name of the non-terminal abandoned
+     */
+    public String getSymbol() {
+        return this.symbol;
+    }
+
+    @Override
+    public String toString() {
+        return this.kind + " " + this.symbol + " at " + this.word;
+    }
+}
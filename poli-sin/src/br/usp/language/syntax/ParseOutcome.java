@@ -0,0 +1,80 @@
+package br.usp.language.syntax;
+
+import br.usp.language.syntax.tree.SyntaxTree;
+
+/**
+ * Result of an analysis with a ParseBudget.
+ *
+ * @author Marcelo Li Koga
+ */
+public class ParseOutcome {
+
+    public enum Status {
+        /** The sentence was analysed */
+        ACCEPTED,
+        /** Every possibility was tried and none is an analysis */
+        REJECTED,
+        /** The budget ran out (or was cancelled) before the analysis was over */
+        BUDGET_EXHAUSTED
+    }
+
+    private final Status status;
+
+    private final SyntaxTree tree;
+
+    private final int wordsRead;
+
+    private final int length;
+
+    private final long steps;
+
+    ParseOutcome(Status status, SyntaxTree tree, int wordsRead, int length, long steps) {
+        this.status = status;
+        this.tree = tree;
+        this.wordsRead = wordsRead;
+        this.length = length;
+        this.steps = steps;
+    }
+
+    public Status getStatus() {
+        return this.status;
+    }
+
+    public boolean isAccepted() {
+        return this.status == Status.ACCEPTED;
+    }
+
+    /**
+     * @return the analysis if the sentence was accepted; otherwise, the partial tree of the possibility that read the
+     *         most words
+     */
+    public SyntaxTree getTree() {
+        return this.tree;
+    }
+
+    /**
+     * @return largest number of words read by a possibility
+     */
+    public int getWordsRead() {
+        return this.wordsRead;
+    }
+
+    /**
+     * @return number of words of the sentence
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * @return steps of the cursor taken by the analysis
+     */
+    public long getSteps() {
+        return this.steps;
+    }
+
+    @Override
+    public String toString() {
+        return this.status + " (" + this.wordsRead + "/" + this.length + " words, " + this.steps + " steps)";
+    }
+}
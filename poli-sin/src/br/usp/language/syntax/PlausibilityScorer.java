@@ -0,0 +1,59 @@
+package br.usp.language.syntax;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import br.usp.language.morph.TokenMorph;
+
+/**
+ * Scores readings by two clues: approximate readings (TokenMorph.isApprox) lose a fixed penalty, and, once the
+ * frequencies of the categories are known (addCategory), each reading gets the logarithm of the relative frequency
+ * of its category, so rare categories are less plausible. Unknown categories count as seen once.
+ *
+ * @author Marcelo Li Koga
+ */
+public class PlausibilityScorer implements ReadingScorer {
+
+    public static final double DEFAULT_APPROX_PENALTY = 2.0;
+
+    private final double approxPenalty;
+
+    /** Number of times each category was seen */
+    private final Map<String, Integer> categoryCounts = new HashMap<String, Integer>();
+
+    private long total;
+
+    public PlausibilityScorer() {
+        this(DEFAULT_APPROX_PENALTY);
+    }
+
+    /**
+     * @param approxPenalty subtracted from the score of approximate readings
+     */
+    public PlausibilityScorer(double approxPenalty) {
+        this.approxPenalty = approxPenalty;
+    }
+
+    /**
+     * Counts the occurrences of a category, for instance in a tagged corpus
+     * 
+     * @param category category of the readings (TokenMorph.getType)
+     * @param count number of occurrences
+     */
+    public synchronized void addCategory(String category, int count) {
+        Integer old = this.categoryCounts.get(category);
+        this.categoryCounts.put(category, (old == null ? 0 : old) + count);
+        this.total += count;
+    }
+
+    public synchronized double score(TokenMorph token) {
+        double score = token.isApprox() ? -this.approxPenalty : 0;
+        if (this.total > 0) {
+            Integer count = this.categoryCounts.get(token.getType());
+            // Add-one smoothing over the known categories and the unknown ones
+            double frequency = (count == null ? 1 : count + 1) / (double) (this.total + this.categoryCounts.size() + 1);
+            score += Math.log(frequency);
+        }
+        return score;
+    }
+}
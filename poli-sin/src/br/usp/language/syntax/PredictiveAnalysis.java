@@ -0,0 +1,40 @@
+package br.usp.language.syntax;
+
+import java.util.List;
+
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.ll.LLParser;
+
+/**
+ * Analysis of SyntacticAnalyser.analyseLL: the sentence is analysed top-down by an LLParser, and only when a
+ * decision needs backtracking it is analysed again by analyse2.
+ *
+ * @author Marcelo Li Koga
+ */
+final class PredictiveAnalysis {
+
+    private final LLParser parser;
+
+    PredictiveAnalysis(LLParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * @param analyser analyser that is given the tree
+     * @param allTokens possible tokens of each word
+     * @return true if the sentence was accepted
+     */
+    boolean run(SyntacticAnalyser analyser, List<TokenMorph[]> allTokens) {
+        int[][] allSymbols = SyntacticAnalyser.toSymbols(allTokens,
+                this.parser.getTable().getGrammar().getSymbolTable());
+        LLParser.Result result = this.parser.parse(allSymbols, allTokens.toArray(new TokenMorph[allTokens.size()][]));
+
+        if (result.getStatus() == LLParser.Status.CONFLICT)
+            return analyser.analyse2(allTokens, new ParseBudget()).isAccepted();
+        if (result.getStatus() == LLParser.Status.ACCEPTED) {
+            analyser.setTree(result.getTree());
+            return true;
+        }
+        return false;
+    }
+}
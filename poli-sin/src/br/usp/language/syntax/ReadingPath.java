@@ -0,0 +1,34 @@
+package br.usp.language.syntax;
+
+/**
+ * Reading chosen for a word, linked to the ones chosen for the previous words. The paths of the possibilities that
+ * went through the same readings share their beginning.
+ *
+ * @author Marcelo Li Koga
+ */
+final class ReadingPath {
+
+    /** Index of the reading among the readings of the word */
+    final int index;
+
+    /** Path of the previous words; null for the first word */
+    final ReadingPath previous;
+
+    ReadingPath(int index, ReadingPath previous) {
+        this.index = index;
+        this.previous = previous;
+    }
+
+    /**
+     * @param path readings of the words, the last one first; may be null
+     * @param length number of words of the path
+     * @return index of the reading of each word
+     */
+    static int[] toArray(ReadingPath path, int length) {
+        int[] chosen = new int[length];
+        for (ReadingPath r = path; r != null; r = r.previous) {
+            chosen[--length] = r.index;
+        }
+        return chosen;
+    }
+}
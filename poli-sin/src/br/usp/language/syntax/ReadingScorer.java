@@ -0,0 +1,19 @@
+package br.usp.language.syntax;
+
+import br.usp.language.morph.TokenMorph;
+
+/**
+ * Tells how plausible a reading of a word is, for the analyses that rank their possibilities (see
+ * SyntacticAnalyser.analyseBeam). Scores are added along the sentence, so they should be on a logarithmic scale:
+ * 0 for a reading without penalty and negative numbers for less plausible ones.
+ *
+ * @author Marcelo Li Koga
+ */
+public interface ReadingScorer {
+
+    /**
+     * @param token one of the readings of a word
+     * @return score of the reading; higher is more plausible
+     */
+    double score(TokenMorph token);
+}
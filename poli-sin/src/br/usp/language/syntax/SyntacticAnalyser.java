@@ -4,26 +4,52 @@ import java.io.Reader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-import br.usp.language.automata.Action;
 import br.usp.language.automata.MachineCall;
 import br.usp.language.automata.StackMachine;
+import br.usp.language.automata.StackMachineCursor;
 import br.usp.language.automata.State;
 import br.usp.language.automata.StateMachine;
+import br.usp.language.automata.StateMachineOptimizer;
+import br.usp.language.automata.SymbolTable;
 import br.usp.language.automata.Transition;
+import br.usp.language.automata.TransitionListener;
 import br.usp.language.morph.MorphologicAnalyser;
 import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.forest.ForestParser;
+import br.usp.language.syntax.forest.ParseForest;
+import br.usp.language.syntax.forest.ViterbiParser;
 import br.usp.language.syntax.grammar.ContextFreeGrammar;
 import br.usp.language.syntax.grammar.NonTerminal;
+import br.usp.language.syntax.ll.LLParser;
+import br.usp.language.syntax.ll.LLTable;
 import br.usp.language.syntax.grammar.ProductionElement;
 import br.usp.language.syntax.grammar.ProductionRule;
 import br.usp.language.syntax.tree.SyntaxTree;
 import br.usp.language.syntax.tree.SyntaxTreeNode;
 
+/**
+ * Builds the syntax tree of the input given by a MorphologicAnalyser.
+ * 
+ * The StackMachine is only read: the analyser runs it through its own cursor and builds the tree from the
+ * transitions taken, so analysers created by a SyntacticAnalyserFactory share one compiled machine. An analyser
+ * itself must be used by one thread at a time.
+ * 
+ * @see SyntacticAnalyserFactory
+ */
 public class SyntacticAnalyser {
 
+    /** Default maximum number of failed configurations remembered by analyse2 */
+    public static final int DEFAULT_MEMO_CAPACITY = 4096;
+
+    /** Label of the nodes that mark the errors in the trees of analyseRecovering */
+    public static final String ERROR_LABEL = "ERROR";
+
     private StackMachine analyser;
 
+    private StackMachineCursor cursor;
+
     private MorphologicAnalyser ma;
 
     private SyntaxTree tree;
@@ -32,36 +58,103 @@ public class SyntacticAnalyser {
 
     private TokenMorph currentToken;
 
+    /** Changes made to the tree, so they can be undone when backtracking; null when they are not recorded */
+    private List<TreeEdit> journal;
+
+    /** Parsers of the grammar, shared with the factory that created the analyser; null if there is no grammar */
+    private GrammarParsers parsers;
+
+    /** Parser used by analyseAll instead of the one of the grammar, if set */
+    private ForestParser generalizedParser;
+
+    /** Parser of analyseViterbi, on top of the generalized parser */
+    private ViterbiParser probabilisticParser;
+
+    private ParseForest forest;
+
+    /** Configurations known to fail during analyse2 */
+    private FailureMemo failures = new FailureMemo(DEFAULT_MEMO_CAPACITY);
+
+    /** Parser used by analyseLL instead of the one of the grammar, if set */
+    private LLParser predictiveParser;
+
+    /** Ranks the readings for analyseBeam */
+    private ReadingScorer scorer = new PlausibilityScorer();
+
+    /** Counters of analyseTiered */
+    private TierStatistics tierStatistics = new TierStatistics();
+
     /**
-     * This constructor receives a ContextFreeGrammar that will be used to generate a StackMachine
+     * This constructor receives a ContextFreeGrammar that will be used to generate a StackMachine, whose machines
+     * are given by createSyntaxStateMachines
      * @param ma
      * @param grammar
      */
     public SyntacticAnalyser(MorphologicAnalyser ma, ContextFreeGrammar grammar) {
         this.ma = ma;
-        this.analyser = new StackMachine(this.createSyntaxStateMachines(grammar));
-
-        SyntaxTreeNode root = new SyntaxTreeNode(grammar.getStartSymbol().getName());
-        this.tree = new SyntaxTree(root);
-        this.currentTreeNode = root;
+        this.init(createStackMachine(this.createSyntaxStateMachines(grammar), grammar, false));
+        this.parsers = new GrammarParsers(grammar, this.analyser, null);
     }
 
     /**
-     * This constructor receives a StackMachine; proper actions will be set
+     * This constructor receives a StackMachine, which is compiled if needed; its actions are not used
      * @param ma
      * @param stackMachine
      */
     public SyntacticAnalyser(MorphologicAnalyser ma, StackMachine stackMachine) {
         this.ma = ma;
-        stackMachine.restart();
-        this.setActions(stackMachine); // prepare semantic actions to build the tree
+        this.init(stackMachine);
+    }
+
+    /**
+     * Creates an analyser that shares its machine and parsers with the other analysers of a factory
+     */
+    SyntacticAnalyser(MorphologicAnalyser ma, SyntacticAnalyserFactory factory) {
+        this(ma, factory.getStackMachine());
+        this.parsers = factory.getParsers();
+    }
+
+    private void init(StackMachine stackMachine) {
         this.analyser = stackMachine;
+        this.cursor = stackMachine.newCursor();
+        this.cursor.setListener(new TreeBuilder());
 
-        SyntaxTreeNode root = new SyntaxTreeNode(stackMachine.getCurrentStateMachine().getName());
+        SyntaxTreeNode root = new SyntaxTreeNode(this.cursor.getCurrentMachineName());
         this.tree = new SyntaxTree(root);
         this.currentTreeNode = root;
     }
 
+    /**
+     * Creates the StackMachine of a grammar, compiled with the SymbolTable of the grammar
+     * 
+     * @param grammar
+     * @return the compiled machine
+     */
+    static StackMachine createStackMachine(ContextFreeGrammar grammar) {
+        return createStackMachine(grammar, false);
+    }
+
+    /**
+     * Creates the StackMachine of a grammar, compiled with the SymbolTable of the grammar
+     * 
+     * @param grammar
+     * @param optimize whether the machines should be made deterministic and minimal
+     * @return the compiled machine
+     * @see StateMachineOptimizer
+     */
+    static StackMachine createStackMachine(ContextFreeGrammar grammar, boolean optimize) {
+        return createStackMachine(buildSyntaxStateMachines(grammar), grammar, optimize);
+    }
+
+    private static StackMachine createStackMachine(List<StateMachine> machines, ContextFreeGrammar grammar,
+            boolean optimize) {
+        if (optimize)
+            machines = StateMachineOptimizer.optimize(machines);
+        StackMachine stackMachine = new StackMachine(machines);
+        stackMachine.compile(grammar.getSymbolTable());
+        return stackMachine;
+    }
+
     public void setReader(Reader reader) {
     	this.ma.setInput(reader);
     }
@@ -70,10 +163,55 @@ public class SyntacticAnalyser {
         return this.tree;
     }
 
+    /**
+     * Replaces the tree by one built by another parser
+     */
+    void setTree(SyntaxTree tree) {
+        this.tree = tree;
+        this.currentTreeNode = tree.getRoot();
+    }
+
+    /**
+     * @return the machine of the analyser, which may be shared with other analysers
+     */
     public StackMachine getStackMachine() {
         return this.analyser;
     }
 
+    /**
+     * @return the cursor that runs the machine for this analyser
+     */
+    public StackMachineCursor getCursor() {
+        return this.cursor;
+    }
+
+    void setMorphologicAnalyser(MorphologicAnalyser ma) {
+        this.ma = ma;
+    }
+
+    /**
+     * Reads all the words of the sentence from the morphological analyser
+     * 
+     * @return the possible tokens of each word
+     */
+    private List<TokenMorph[]> readSentence() {
+        List<TokenMorph[]> allTokens = new ArrayList<TokenMorph[]>();
+        while (ma.hasMoreTokens()) {
+            allTokens.add(ma.getNextTokens());
+        }
+        return allTokens;
+    }
+
+    /**
+     * @return the parsers of the grammar of the analyser
+     * @throws IllegalStateException if the analyser was not created from a grammar
+     */
+    private GrammarParsers getParsers() {
+        if (this.parsers == null)
+            throw new IllegalStateException("The analyser was not created from a grammar");
+        return this.parsers;
+    }
+
     /**
      * Analyses the input, but only considers the first gramatical category given by the morphological analyser.
      * 
@@ -81,99 +219,521 @@ public class SyntacticAnalyser {
      */
     public boolean analyse() {
 
+        SymbolTable symbols = this.cursor.getSymbolTable();
         while (ma.hasMoreTokens()) {
             this.currentToken = ma.getNextToken();
-            this.analyser.input(currentToken.getType());
+            this.cursor.input(symbols.getId(currentToken.getType()));
         }
 
-        this.analyser.finish();
+        this.cursor.finish();
 
-        return analyser.getCurrentStateMachine().isAtAcceptState();
+        return this.cursor.isAtAcceptState();
     }
 
     /**
      * Considers all possibilities
      * 
+     * Before each word, the configuration of the cursor and the size of the journal of the tree are saved, so a
+     * reading that fails is undone right there and the search goes on from the last decision, without reading the
+     * sentence again.
+     * 
      * @return true if it is in an acceptState
      */
     public boolean analyse2() {
+        return this.analyse2(new ParseBudget()).isAccepted();
+    }
 
-        List<TokenMorph[]> allTokens = new ArrayList<TokenMorph[]>();
+    /**
+     * Considers all possibilities, as analyse2(), while the budget lasts. If it runs out, the analysis stops and the
+     * tree of the analyser is left as the partial tree of the possibility that read the most words.
+     * 
+     * @param budget limits of steps and time of this analysis
+     * @return whether the sentence was accepted, rejected or the budget ran out, with the tree
+     */
+    public ParseOutcome analyse2(ParseBudget budget) {
+        return this.analyse2(this.readSentence(), budget);
+    }
 
-        // Retrieves all tokens
-        while (ma.hasMoreTokens()) {
-            allTokens.add(ma.getNextTokens());
-        }
+    ParseOutcome analyse2(List<TokenMorph[]> allTokens, ParseBudget budget) {
+        this.failures.clear();
 
         int numWords = allTokens.size();
+        // Each token is translated to the id of its category only once
+        int[][] allSymbols = this.toSymbols(allTokens);
         // This array saves the previous decisions
         int possibIndex[] = new int[numWords];
-        int backtrackPoint = -1;
+        // Decision points: where the analysis was before each word
+        StackMachineCursor.Snapshot[] snapshots = new StackMachineCursor.Snapshot[numWords];
+        SyntaxTreeNode[] treeNodes = new SyntaxTreeNode[numWords];
+        int[] journalSizes = new int[numWords];
+        this.journal = new ArrayList<TreeEdit>();
+
+        ParseBudget.Tracker tracker = budget.start(this.cursor.getSteps());
+        long firstStep = this.cursor.getSteps();
+        StackMachineCursor.Snapshot start = this.cursor.snapshot();
+        // Deepest possibility so far: words read and their readings, whose tree is built again only if needed
+        int deepest = 0;
+        int[] deepestIndex = new int[numWords];
+        // Readings before this word are the same in both arrays
+        int unchanged = 0;
+        boolean exhausted = false;
 
         // Loop words
         int i = 0;
+        int first = 0; // first possibility to try
         while (i < numWords) {
+            if (tracker.isExhausted(this.cursor.getSteps())) {
+                exhausted = true;
+                break;
+            }
 
             TokenMorph[] wordTokens = allTokens.get(i);
+            int[] wordSymbols = allSymbols[i];
 
-            boolean restart = false;
-            int aux = possibIndex[i];
-            if (i == backtrackPoint) { // Backtrack point - change decision
-                aux = possibIndex[i] + 1; // Next option
-                if (aux >= wordTokens.length) { // If there arent options
-                    backtrackPoint = i - 1;
-                    if (backtrackPoint < 0) {
-                        break; // No more possiblities
-                    }
-                    this.reset();
-                    i = 0;
-                    restart = true;
-                }
+            if (first == 0) { // New word: saves the decision point
+                snapshots[i] = this.cursor.snapshot();
+                treeNodes[i] = this.currentTreeNode;
+                journalSizes[i] = this.journal.size();
             }
 
-            if (!restart) {
-                // Loop each word possibilities
-                boolean consumed = false;
-                for (int j = aux; !consumed && j < wordTokens.length; j++) {
-                    this.currentToken = wordTokens[j];
-                    consumed = this.analyser.input(currentToken.getType());
-                    if (consumed) {
-                        // Decision made ==> save
-                        possibIndex[i] = j;
-                    }
+            // A configuration that already failed at this word is not explored again
+            boolean failed = first == 0 && this.failures.isFailure(i, snapshots[i]);
+
+            // Loop each word possibilities
+            boolean consumed = false;
+            for (int j = first; !failed && !consumed && j < wordTokens.length; j++) {
+                this.backtrack(snapshots[i], treeNodes[i], journalSizes[i]);
+                this.currentToken = wordTokens[j];
+                // Not consumed or led to an error state: next possibility
+                consumed = this.cursor.input(wordSymbols[j]) && !this.cursor.isAtErrorState();
+                if (consumed) {
+                    // Decision made ==> save
+                    possibIndex[i] = j;
+                    unchanged = Math.min(unchanged, i);
                 }
-                if (!consumed) { // Backtracking time! Not consumed            
-                    backtrackPoint = i - 1;
-                    if (backtrackPoint < 0)
-                        break; // No more possiblities
-                    this.reset();
-                    i = 0;
-                } else if (this.analyser.getCurrentStateMachine().isAtErrorState()) {
-                    // Backtracking time! Consumed, but led to an error state
-                    backtrackPoint = i;
-                    this.reset();
-                    i = 0;
-                } else {
-                    i++;
+            }
+
+            if (consumed) {
+                i++;
+                first = 0;
+                if (i > deepest) {
+                    deepest = i;
+                    System.arraycopy(possibIndex, unchanged, deepestIndex, unchanged, i - unchanged);
+                    unchanged = i;
                 }
+            } else { // Backtracking time! Changes the decision of the previous word
+                if (!failed)
+                    this.failures.addFailure(i, snapshots[i]);
+                this.backtrack(snapshots[i], treeNodes[i], journalSizes[i]);
+                i--;
+                if (i < 0)
+                    break; // No more possiblities
+                first = possibIndex[i] + 1;
             }
         }
-        
-        this.analyser.finish();
+        this.journal = null;
+
+        if (exhausted) {
+            long steps = this.cursor.getSteps() - firstStep;
+            this.replay(start, deepestIndex, deepest, allTokens, allSymbols);
+            return new ParseOutcome(ParseOutcome.Status.BUDGET_EXHAUSTED, this.tree, deepest, numWords, steps);
+        }
 
-        return this.analyser.getCurrentStateMachine().isAtAcceptState();
+        this.cursor.finish();
+
+        long steps = this.cursor.getSteps() - firstStep;
+        if (this.cursor.isAtAcceptState())
+            return new ParseOutcome(ParseOutcome.Status.ACCEPTED, this.tree, numWords, numWords, steps);
+
+        // The analyser keeps its tree and configuration; only the outcome has the partial tree
+        StackMachineCursor.Snapshot end = this.cursor.snapshot();
+        SyntaxTree tree = this.tree;
+        SyntaxTreeNode treeNode = this.currentTreeNode;
+        SyntaxTree partial = this.replay(start, deepestIndex, deepest, allTokens, allSymbols);
+        this.cursor.restore(end);
+        this.tree = tree;
+        this.currentTreeNode = treeNode;
+        return new ParseOutcome(ParseOutcome.Status.REJECTED, partial, deepest, numWords, steps);
+    }
+
+    /**
+     * Beam search: the readings of each word are tried on every configuration kept, and only the beamWidth best
+     * configurations go on to the next word. A configuration is scored by the sum of the scores of its readings (see
+     * setReadingScorer); among configurations with the same score, the ones that analyse2 would try first come first,
+     * so with a large enough beam the best tree is usually the one analyse2 finds. Readings that lead to the same
+     * configuration are kept once, with the best score. Memory and time are bounded by the beam, whatever the number
+     * of readings.
+     * 
+     * The tree of the analyser is left as the best one.
+     * 
+     * @param beamWidth maximum number of configurations kept after each word
+     * @param k maximum number of trees returned
+     * @return the trees of the best configurations that reach an accept state, best first; empty if there is none
+     */
+    public List<SyntaxTree> analyseBeam(int beamWidth, int k) {
+        return new BeamSearch(this.scorer, beamWidth, k).run(this, this.readSentence());
+    }
+
+    /**
+     * Explores the readings of the words in parallel (see ParallelSearch): where more than one reading of a word is
+     * consumed, each one goes on in its own task of the pool, and the first possibility that reads the whole sentence
+     * and finishes in an accept state wins; the others are cancelled. Which analysis wins depends on the timing of
+     * the threads, so it may not be the one analyse2 finds. As in analyse2, configurations known to fail are not
+     * explored again (see setMemoCapacity).
+     * 
+     * @param pool executes the tasks; ForkJoinPool.commonPool() is a good choice
+     * @return true if some possibility was accepted; the tree is its tree
+     */
+    public boolean analyseParallel(ForkJoinPool pool) {
+        return this.analyseParallel(pool, new ParseBudget());
+    }
+
+    /**
+     * Explores the readings of the words in parallel, as analyseParallel(pool), while the budget lasts. The steps of
+     * the budget are the steps of the cursors of all the tasks; when it runs out, or is cancelled, every task stops
+     * at its next word.
+     * 
+     * @param pool executes the tasks
+     * @param budget limits of steps and time of this analysis
+     * @return true if some possibility was accepted before the budget ran out; the tree is its tree
+     */
+    public boolean analyseParallel(ForkJoinPool pool, ParseBudget budget) {
+        return new ParallelSearch(pool, budget, this.failures.getCapacity()).run(this, this.readSentence());
+    }
+
+    /**
+     * Analyses the sentence in one pass, taking the first reading of each word that fits, and gets over the errors
+     * instead of backtracking (panic mode). When no reading of a word fits:
+     * <ol>
+     * <li>the non-terminals being analysed are given up, from the innermost one, up to one whose FOLLOW set has a
+     * category of the word, and the word goes on in the non-terminal that called it;</li>
+     * <li>otherwise, a missing terminal is put in before the word, if then both the word and the next one fit;</li>
+     * <li>otherwise, the word is skipped.</li>
+     * </ol>
+     * At the end, non-terminals that are not complete are given up. Only the inputs expected at each configuration
+     * (see PrefixTable) are tried, so the work is linear in the number of words. The tree has a node labelled ERROR
+     * for each error: holding the skipped word, or as the last child of a non-terminal given up. Inserted terminals
+     * are leaves with an approximate token without lexeme.
+     * 
+     * @return the errors found, in order; empty if the sentence was accepted
+     * @throws IllegalStateException if the analyser was not created from a grammar
+     */
+    public List<ParseError> analyseRecovering() {
+        GrammarParsers parsers = this.getParsers();
+        return new ErrorRecovery(parsers.getFollowSets(), parsers.getPrefixTable()).run(this, this.readSentence());
+    }
+
+    /**
+     * Reads one token, building the tree
+     * 
+     * @return false if the cursor cannot consume it
+     */
+    boolean read(TokenMorph token, int symbol) {
+        this.currentToken = token;
+        return this.cursor.input(symbol) && !this.cursor.isAtErrorState();
+    }
+
+    /**
+     * Starts recording the changes made to the tree, so they can be undone by backtrack
+     */
+    void startJournal() {
+        this.journal = new ArrayList<TreeEdit>();
+    }
+
+    void stopJournal() {
+        this.journal = null;
+    }
+
+    /**
+     * Adds a node that is not built by the cursor, such as an ERROR node, under the current node
+     */
+    void addErrorNode(SyntaxTreeNode node) {
+        this.currentTreeNode.addChild(node);
+        if (this.journal != null)
+            this.journal.add(new TreeEdit(this.currentTreeNode, node, true));
+    }
+
+    /**
+     * @return the current configuration of the cursor and of the tree, to go back to
+     */
+    Mark mark() {
+        return new Mark(this.cursor.snapshot(), this.currentTreeNode, this.journal.size());
+    }
+
+    void backtrack(Mark mark) {
+        this.backtrack(mark.snapshot, mark.treeNode, mark.journalSize);
+    }
+
+    /**
+     * Reads the chosen readings again from a configuration, building a new tree
+     */
+    SyntaxTree replay(StackMachineCursor.Snapshot start, int[] chosen, List<TokenMorph[]> allTokens,
+            int[][] allSymbols) {
+        this.replay(start, chosen, chosen.length, allTokens, allSymbols);
+        this.cursor.finish();
+        return this.tree;
+    }
+
+    /**
+     * Reads the chosen readings of the first words again from a configuration, building a new tree, without
+     * finishing
+     */
+    private SyntaxTree replay(StackMachineCursor.Snapshot start, int[] chosen, int words, List<TokenMorph[]> allTokens,
+            int[][] allSymbols) {
+        this.cursor.restore(start);
+        SyntaxTreeNode root = new SyntaxTreeNode(this.cursor.getCurrentMachineName());
+        this.tree = new SyntaxTree(root);
+        this.currentTreeNode = root;
+        for (int i = 0; i < words; i++) {
+            this.currentToken = allTokens.get(i)[chosen[i]];
+            this.cursor.input(allSymbols[i][chosen[i]]);
+        }
+        return this.tree;
+    }
+
+    /**
+     * Sets how many failed configurations analyse2 remembers, so it does not explore them again when it backtracks.
+     * The least recently used ones are dropped first, which bounds the memory on long sentences.
+     * 
+     * @param capacity maximum number of configurations; 0 turns the memo off
+     */
+    public void setMemoCapacity(int capacity) {
+        this.failures = new FailureMemo(capacity);
+    }
+
+    /**
+     * @return number of configurations skipped by analyse2 because they were known to fail
+     */
+    public long getMemoHits() {
+        return this.failures.getHits();
+    }
+
+    /**
+     * Chooses how analyseBeam and analyseViterbi rank the readings; by default, a PlausibilityScorer without category
+     * frequencies. A WeightScorer takes the weights kept in the tokens.
+     * 
+     * @param scorer
+     */
+    public void setReadingScorer(ReadingScorer scorer) {
+        this.scorer = scorer;
+    }
+
+    /**
+     * Goes back to a decision point: restores the cursor and undoes the changes made to the tree since then
+     */
+    private void backtrack(StackMachineCursor.Snapshot snapshot, SyntaxTreeNode treeNode, int journalSize) {
+        this.cursor.restore(snapshot);
+        while (this.journal.size() > journalSize) {
+            this.journal.remove(this.journal.size() - 1).undo();
+        }
+        this.currentTreeNode = treeNode;
+    }
+
+    /**
+     * Considers all possibilities at the same time, with a generalized parser on the grammar (GLL unless another one
+     * was set): every analysis of the sentence is kept in the forest, and the tree is the first one. Unlike analyse
+     * and analyse2, it finds an analysis whenever the grammar has one, and its time is polynomial in the number of
+     * words.
+     * 
+     * @return true if the sentence has at least one analysis
+     * @throws IllegalStateException if the analyser was not created from a grammar
+     * @see #getForest()
+     * @see #setForestParser(ForestParser)
+     */
+    public boolean analyseAll() {
+        return this.analyseAll(this.getGeneralizedParser(), this.readSentence());
+    }
+
+    boolean analyseAll(ForestParser parser, List<TokenMorph[]> allTokens) {
+        int[][] allSymbols = toSymbols(allTokens, parser.getGrammar().getSymbolTable());
+        this.forest = parser.parse(allSymbols, allTokens.toArray(new TokenMorph[allTokens.size()][]));
+
+        SyntaxTree first = this.forest.toTree();
+        if (first != null) {
+            this.tree = first;
+            this.currentTreeNode = first.getRoot();
+        }
+        return this.forest.isAccepted();
+    }
+
+    /**
+     * Analyses the sentence with more and more expensive tiers, each one tried only when the one before rejects the
+     * sentence (see TierStatistics.Tier): one pass with the first reading of each word, as in analyse, but stopping
+     * at the first word that does not fit; then backtracking over the readings, as in analyse2; then, if the
+     * analyser was created from a grammar, the generalized parser of analyseAll. The words are read once, so when the
+     * first reading of every word is right, as is usually the case, the analysis costs one pass.
+     * 
+     * @return the tier that accepted the sentence, whose tree is left in the analyser; null if none did
+     * @see #getTierStatistics()
+     */
+    public TierStatistics.Tier analyseTiered() {
+        return this.analyseTiered(new ParseBudget());
+    }
+
+    /**
+     * Analyses the sentence as analyseTiered(), but the backtracking tier only goes on while the budget lasts; if it
+     * runs out, the sentence goes on to the generalized parser, whose time is polynomial in the number of words.
+     * 
+     * @param budget limits of steps and time of the backtracking tier
+     * @return the tier that accepted the sentence; null if none did
+     */
+    public TierStatistics.Tier analyseTiered(ParseBudget budget) {
+        boolean generalized = this.generalizedParser != null || this.parsers != null;
+        return new TieredAnalysis(this.tierStatistics, budget, generalized).run(this, this.readSentence());
+    }
+
+    /**
+     * @return the counters of the tiers of analyseTiered
+     */
+    public TierStatistics getTierStatistics() {
+        return this.tierStatistics;
+    }
+
+    /**
+     * Chooses where analyseTiered counts the sentences of each tier, so that analysers can share the counters.
+     * 
+     * @param statistics
+     */
+    public void setTierStatistics(TierStatistics statistics) {
+        this.tierStatistics = statistics;
+    }
+
+    /**
+     * Finds the most probable analysis of the sentence (see ViterbiParser), from the probabilities of the rules of
+     * the grammar and the scores of the readings (see setReadingScorer). The forest of all analyses is kept, as in
+     * analyseAll.
+     * 
+     * @return true if the sentence has at least one analysis; the tree is the most probable one
+     * @throws IllegalStateException if the analyser was not created from a grammar
+     * @see ProductionRule#getProbability()
+     */
+    public boolean analyseViterbi() {
+        ForestParser parser = this.getGeneralizedParser();
+        if (this.probabilisticParser == null || this.probabilisticParser.getParser() != parser)
+            this.probabilisticParser = new ViterbiParser(parser);
+
+        return new ViterbiAnalysis(this.probabilisticParser, this.scorer).run(this, this.readSentence());
+    }
+
+    /**
+     * Analyses the sentence top-down without backtracking, with an LL(1) table of the grammar (see
+     * setPredictiveParser for other k). Only when a decision needs backtracking, because the non-terminal has a
+     * conflict in the table or the readings of the next words fit more than one rule, the sentence is analysed
+     * again by analyse2.
+     * 
+     * @return true if the sentence was accepted
+     * @throws IllegalStateException if the analyser was not created from a grammar
+     * @see LLTable#getConflicts()
+     */
+    public boolean analyseLL() {
+        return new PredictiveAnalysis(this.getPredictiveParser()).run(this, this.readSentence());
+    }
+
+    /**
+     * Chooses the parser used by analyseLL, for instance with a table of larger k.
+     * 
+     * @param parser a parser on the grammar of this analyser
+     */
+    public void setPredictiveParser(LLParser parser) {
+        this.predictiveParser = parser;
+    }
+
+    private LLParser getPredictiveParser() {
+        return this.predictiveParser != null ? this.predictiveParser : this.getParsers().getPredictiveParser();
+    }
+
+    /**
+     * Analyses the sentence bottom-up, with a CYK parser on the grammar converted to Chomsky normal form. The cells
+     * of each span length are filled in parallel, which pays off for long sentences. The tree is one analysis in the
+     * original grammar.
+     * 
+     * @return true if the sentence has at least one analysis
+     * @throws IllegalStateException if the analyser was not created from a grammar
+     */
+    public boolean analyseCYK() {
+        return new ChartAnalysis(this.getParsers().getChartParser()).run(this, this.readSentence());
+    }
+
+    /**
+     * @return all analyses found by the last call of analyseAll; null if it was not called
+     */
+    public ParseForest getForest() {
+        return this.forest;
+    }
+
+    /**
+     * Replaces the forest by one found by another parser
+     */
+    void setForest(ParseForest forest) {
+        this.forest = forest;
+    }
+
+    /**
+     * Chooses the parser used by analyseAll, such as an EarleyParser or a GLLParser.
+     * 
+     * @param parser a parser on the grammar of this analyser
+     */
+    public void setForestParser(ForestParser parser) {
+        this.generalizedParser = parser;
+    }
+
+    ForestParser getGeneralizedParser() {
+        return this.generalizedParser != null ? this.generalizedParser : this.getParsers().getGeneralizedParser();
+    }
+
+    /**
+     * Translates the categories of the tokens into their ids in the SymbolTable of the machine
+     * 
+     * @param allTokens possible tokens of each word
+     * @return ids of the categories, in the same positions as the tokens
+     */
+    int[][] toSymbols(List<TokenMorph[]> allTokens) {
+        return toSymbols(allTokens, this.cursor.getSymbolTable());
+    }
+
+    static int[][] toSymbols(List<TokenMorph[]> allTokens, SymbolTable symbols) {
+        int[][] allSymbols = new int[allTokens.size()][];
+        for (int i = 0; i < allSymbols.length; i++) {
+            TokenMorph[] wordTokens = allTokens.get(i);
+            allSymbols[i] = new int[wordTokens.length];
+            for (int j = 0; j < wordTokens.length; j++) {
+                allSymbols[i][j] = symbols.getId(wordTokens[j].getType());
+            }
+        }
+        return allSymbols;
     }
 
     /**
      * Restarts machine and deletes tree
      */
     public void reset() {
-        this.analyser.restart();
+        this.journal = null;
+        this.forest = null;
+        this.cursor.restart();
         this.tree.getRoot().pruneAllChildren();
         this.currentTreeNode = this.tree.getRoot();
     }
 
+    /**
+     * Creates the machines of the grammar, when the analyser is created from one. Subclasses may change them; the
+     * first one must be the machine of the start symbol. It is called by the constructor, so it must not use the
+     * fields of the subclass.
+     * 
+     * @param grammar
+     * @return the machines; the first one is the machine of the start symbol
+     */
     protected List<StateMachine> createSyntaxStateMachines(ContextFreeGrammar grammar) {
+        return buildSyntaxStateMachines(grammar);
+    }
+
+    /**
+     * Creates one machine for each non-terminal of the grammar. The machines have no actions; the tree is built by
+     * the listener of the cursor.
+     * 
+     * @param grammar
+     * @return the machines; the first one is the machine of the start symbol
+     */
+    static List<StateMachine> buildSyntaxStateMachines(ContextFreeGrammar grammar) {
         HashMap<String, StateMachine> stateMachines = new HashMap<String, StateMachine>();
 
         // First, create one machine for each non-terminal
@@ -201,12 +761,6 @@ public class SyntacticAnalyser {
 
             int numStates = 1;
 
-            // Instanciates the actions
-            // As they are always the same, we'll use the same instance always.
-            Action actionTerminal = new AddLeaf();
-            Action actionCallSubMachine = new AddNonTerminalChild();
-            Action actionReturnSubMachine = new ReturnParent();
-
             for (ProductionRule prod : productions) {
                 lastState = initialState;
 
@@ -223,7 +777,7 @@ public class SyntacticAnalyser {
                         if (nextState == null) {
                             State newState = stateMachine.createState("State" + numStates + "_" + prodToken);
                             numStates++;
-                            lastState.createTransitionTo(newState, prodToken, actionTerminal);
+                            lastState.createTransitionTo(newState, prodToken, null);
                             lastState.setAlternateTransition(errorState, null);
                             lastState = newState;
                         } else { // This transition already exists
@@ -243,8 +797,7 @@ public class SyntacticAnalyser {
                             State newState = stateMachine.createState("State" + numStates + "_" + prodToken);
                             numStates++;
                             // Condição especial que indica transicao dado um nao-terminal
-                            lastState.createMachineCallTo(newState, prodToken, actionCallSubMachine,
-                                    actionReturnSubMachine);
+                            lastState.createMachineCallTo(newState, prodToken, null, null);
                             lastState = newState;
                         } else {
                             lastState = nextState;
@@ -267,65 +820,85 @@ public class SyntacticAnalyser {
     }
     
     /**
-     * Set properly the stack machine transitions actions, 
-     * so the semantic actions will build the syntactic tree
-     * @param stackMachine
+     * A decision point: configuration of the cursor, current node and size of the journal
      */
-    protected void setActions(StackMachine stackMachine) {
-    	
-        // Instanciates the actions
-        // As they are always the same, we'll use the same instance always.
-        Action actionTerminal = new AddLeaf();
-        Action actionCallSubMachine = new AddNonTerminalChild();
-        Action actionReturnSubMachine = new ReturnParent();
-
-        for (StateMachine sm: stackMachine.getSubMachines()) {
-        	
-        	for (State s: sm.getAllStates()) {
-
-        		for (Transition t: s.getTransitions()) {
-        			t.setAction(actionTerminal);
-        		}
-        		for (MachineCall mc: s.getMachineCalls()) {
-        			
-        				mc.setAction(actionReturnSubMachine);
-        				mc.setActionBefore(actionCallSubMachine);
-        		}
-        	}
+    static final class Mark {
+
+        private final StackMachineCursor.Snapshot snapshot;
+        private final SyntaxTreeNode treeNode;
+        private final int journalSize;
+
+        private Mark(StackMachineCursor.Snapshot snapshot, SyntaxTreeNode treeNode, int journalSize) {
+            this.snapshot = snapshot;
+            this.treeNode = treeNode;
+            this.journalSize = journalSize;
         }
-        
     }
 
-    private class AddNonTerminalChild implements Action {
+    /**
+     * Builds the syntactic tree from the transitions taken by the cursor
+     */
+    private class TreeBuilder implements TransitionListener {
+
+        public void transitionTaken(Transition transition) {
+            // Only the transitions that consume a terminal create leaves; epsilon and alternate ones do not
+            if (!transition.isEpsilon() && !transition.getConditions().isEmpty()) {
+                SyntaxTreeNode newNode = new SyntaxTreeNode(currentToken.getType(), currentToken);
+                addChild(newNode);
+                // Current node stays the same
+            }
+        }
 
-        public void doAction() {
-            SyntaxTreeNode newNode = new SyntaxTreeNode(analyser.getCurrentStateMachine().getName());
-            currentTreeNode.addChild(newNode);
+        public void machineCalled(MachineCall call) {
+            SyntaxTreeNode newNode = new SyntaxTreeNode(cursor.getCurrentMachineName());
+            addChild(newNode);
             currentTreeNode = newNode;
         }
-    }
 
-    private class ReturnParent implements Action {
-
-        public void doAction() {
+        public void machineReturned(MachineCall call) {
             // Guarda o pai
             SyntaxTreeNode parent = currentTreeNode.getParent();
 
             // Se nao gerou filhos, corta.
             if (currentTreeNode.getNumberOfChildren() == 0) {
                 currentTreeNode.pruneItselfFromParent();
+                if (journal != null)
+                    journal.add(new TreeEdit(parent, currentTreeNode, false));
             }
             // Atual é o pai
             currentTreeNode = parent;
         }
+
+        private void addChild(SyntaxTreeNode newNode) {
+            currentTreeNode.addChild(newNode);
+            if (journal != null)
+                journal.add(new TreeEdit(currentTreeNode, newNode, true));
+        }
     }
 
-    private class AddLeaf implements Action {
+    /**
+     * A child added to or pruned from the tree. Children are always added and pruned at the end of the list of
+     * children of their parent, so the edits are undone in the reverse order.
+     */
+    private static class TreeEdit {
 
-        public void doAction() {
-            SyntaxTreeNode newNode = new SyntaxTreeNode(currentToken.getType(), currentToken);
-            currentTreeNode.addChild(newNode);
-            // Current node stays the same
+        private final SyntaxTreeNode parent;
+
+        private final SyntaxTreeNode child;
+
+        private final boolean added;
+
+        TreeEdit(SyntaxTreeNode parent, SyntaxTreeNode child, boolean added) {
+            this.parent = parent;
+            this.child = child;
+            this.added = added;
+        }
+
+        void undo() {
+            if (this.added)
+                this.parent.pruneChild(this.child);
+            else
+                this.parent.addChild(this.child);
         }
     }
 }
@@ -0,0 +1,127 @@
+package br.usp.language.syntax;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import br.usp.language.automata.StackMachine;
+import br.usp.language.morph.MorphologicAnalyser;
+import br.usp.language.syntax.forest.ForestParser;
+import br.usp.language.syntax.forest.GLLParser;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+
+/**
+ * Compiles a grammar once and hands out SyntacticAnalysers that share the compiled machine. Each analyser has its
+ * own cursor and tree, so it is cheap to create and must be used by one thread at a time; the factory itself can be
+ * used by many threads. The machines of the grammar are optimized (see StateMachineOptimizer) before compiled. The
+ * parsers of the other analyses, such as analyseLL, are built when first needed and shared by the analysers too.
+ *
+ * Released analysers are kept in a bounded pool and handed out again by acquire.
+ *
+ * @author Marcelo Li Koga
+ */
+public class SyntacticAnalyserFactory {
+
+    public static final int DEFAULT_POOL_SIZE = 16;
+
+    private final StackMachine stackMachine;
+
+    /** Parsers shared by the analysers */
+    private final GrammarParsers parsers;
+
+    /** Idle analysers */
+    private final BlockingQueue<SyntacticAnalyser> pool;
+
+    /**
+     * @param grammar the grammar should not change after the factory is created
+     */
+    public SyntacticAnalyserFactory(ContextFreeGrammar grammar) {
+        this(grammar, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param grammar the grammar should not change after the factory is created
+     * @param poolSize maximum number of idle analysers kept by the factory
+     */
+    public SyntacticAnalyserFactory(ContextFreeGrammar grammar, int poolSize) {
+        this(grammar, poolSize, new GLLParser(new IndexedGrammar(grammar)));
+    }
+
+    /**
+     * @param grammar the grammar should not change after the factory is created
+     * @param poolSize maximum number of idle analysers kept by the factory
+     * @param generalizedParser parser on the grammar used by analyseAll, shared by the analysers
+     */
+    public SyntacticAnalyserFactory(ContextFreeGrammar grammar, int poolSize, ForestParser generalizedParser) {
+        this.stackMachine = SyntacticAnalyser.createStackMachine(grammar, true);
+        this.parsers = new GrammarParsers(grammar, this.stackMachine, generalizedParser);
+        this.pool = new ArrayBlockingQueue<SyntacticAnalyser>(Math.max(1, poolSize));
+    }
+
+    /**
+     * @return the compiled machine shared by the analysers; it must not be changed nor run directly
+     */
+    public StackMachine getStackMachine() {
+        return this.stackMachine;
+    }
+
+    /**
+     * Creates a new analyser, which is not taken from the pool.
+     *
+     * @param ma
+     * @return a new analyser of the grammar
+     */
+    public SyntacticAnalyser newAnalyser(MorphologicAnalyser ma) {
+        return new SyntacticAnalyser(ma, this);
+    }
+
+    GrammarParsers getParsers() {
+        return this.parsers;
+    }
+
+    /**
+     * Creates a session that reads a sentence one word at a time. The sessions share one PrefixTable of the machine.
+     *
+     * @return a new session at the beginning of a sentence
+     */
+    public IncrementalSession newSession() {
+        return new IncrementalSession(this.parsers.getPrefixTable(), this.stackMachine.newCursor());
+    }
+
+    /**
+     * Takes an idle analyser from the pool, or creates one if the pool is empty.
+     *
+     * @param ma morphological analyser that gives the input of the analyser
+     * @return an analyser at its initial state, with an empty tree
+     */
+    public SyntacticAnalyser acquire(MorphologicAnalyser ma) {
+        SyntacticAnalyser analyser = this.pool.poll();
+        if (analyser == null) {
+            return this.newAnalyser(ma);
+        }
+        analyser.setMorphologicAnalyser(ma);
+        return analyser;
+    }
+
+    /**
+     * Gives an analyser back to the pool. It is reset, so its tree must have been read before. If the pool is full,
+     * the analyser is discarded.
+     *
+     * @param analyser an analyser created by this factory, no longer used by the caller
+     */
+    public void release(SyntacticAnalyser analyser) {
+        if (analyser.getStackMachine() != this.stackMachine) {
+            throw new IllegalArgumentException("Analyser was not created by this factory");
+        }
+        analyser.reset();
+        analyser.setMorphologicAnalyser(null);
+        this.pool.offer(analyser);
+    }
+
+    /**
+     * @return number of idle analysers in the pool
+     */
+    public int getPoolSize() {
+        return this.pool.size();
+    }
+}
@@ -0,0 +1,95 @@
+package br.usp.language.syntax;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts, for each tier of SyntacticAnalyser.analyseTiered, how many sentences got to it and how many it accepted,
+ * so it can be seen how often the cheap tiers are enough. The counters can be updated from many threads, so one
+ * object can be shared by the analysers of a SyntacticAnalyserFactory.
+ *
+ * @author Marcelo Li Koga
+ * @see SyntacticAnalyser#setTierStatistics(TierStatistics)
+ */
+public class TierStatistics {
+
+    public enum Tier {
+        /** One pass with the first reading of each word, as in analyse */
+        FIRST_READING,
+        /** Backtracking over the readings, as in analyse2 */
+        BACKTRACKING,
+        /** Generalized parser on the grammar, as in analyseAll */
+        GENERALIZED
+    }
+
+    private final AtomicLongArray attempts = new AtomicLongArray(Tier.values().length);
+
+    private final AtomicLongArray hits = new AtomicLongArray(Tier.values().length);
+
+    void attempted(Tier tier) {
+        this.attempts.incrementAndGet(tier.ordinal());
+    }
+
+    void accepted(Tier tier) {
+        this.hits.incrementAndGet(tier.ordinal());
+    }
+
+    /**
+     * @return number of sentences analysed; every one is tried at the first tier
+     */
+    public long getSentences() {
+        return this.getAttempts(Tier.FIRST_READING);
+    }
+
+    /**
+     * @return number of sentences that got to the tier
+     */
+    public long getAttempts(Tier tier) {
+        return this.attempts.get(tier.ordinal());
+    }
+
+    /**
+     * @return number of sentences accepted by the tier
+     */
+    public long getHits(Tier tier) {
+        return this.hits.get(tier.ordinal());
+    }
+
+    /**
+     * @return fraction of the sentences that got to the tier and were accepted by it; 0 if none got to it
+     */
+    public double getHitRate(Tier tier) {
+        long tried = this.getAttempts(tier);
+        return tried == 0 ? 0 : (double) this.getHits(tier) / tried;
+    }
+
+    /**
+     * @return number of sentences that no tier accepted
+     */
+    public long getRejected() {
+        long rejected = this.getSentences();
+        for (Tier tier : Tier.values()) {
+            rejected -= this.getHits(tier);
+        }
+        return rejected;
+    }
+
+    /**
+     * Sets all the counters to zero
+     */
+    public void clear() {
+        for (int t = 0; t < Tier.values().length; t++) {
+            this.attempts.set(t, 0);
+            this.hits.set(t, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (Tier tier : Tier.values()) {
+            result.append(tier).append(": ").append(this.getHits(tier)).append('/').append(this.getAttempts(tier))
+                    .append(", ");
+        }
+        return result.append("rejected: ").append(this.getRejected()).toString();
+    }
+}
@@ -0,0 +1,92 @@
+package br.usp.language.syntax;
+
+import java.util.List;
+
+import br.usp.language.automata.SymbolTable;
+import br.usp.language.morph.TokenMorph;
+
+/**
+ * Analysis of SyntacticAnalyser.analyseTiered: the sentence goes through the tiers of TierStatistics.Tier, from the
+ * cheapest one, until one of them accepts it. Each tier is counted in the statistics when it is tried and when it
+ * accepts.
+ *
+ * @author Marcelo Li Koga
+ */
+final class TieredAnalysis {
+
+    private final TierStatistics statistics;
+
+    private final ParseBudget budget;
+
+    /** Whether the last tier is tried */
+    private final boolean generalized;
+
+    /**
+     * @param statistics counters of the tiers
+     * @param budget limits of the backtracking tier
+     * @param generalized whether the last tier is tried, with the generalized parser of the analyser
+     */
+    TieredAnalysis(TierStatistics statistics, ParseBudget budget, boolean generalized) {
+        this.statistics = statistics;
+        this.budget = budget;
+        this.generalized = generalized;
+    }
+
+    /**
+     * @param analyser analyser that is left with the tree of the tier that accepted the sentence
+     * @param allTokens possible tokens of each word
+     * @return the tier that accepted the sentence; null if none did
+     */
+    TierStatistics.Tier run(SyntacticAnalyser analyser, List<TokenMorph[]> allTokens) {
+        this.statistics.attempted(TierStatistics.Tier.FIRST_READING);
+        if (this.analyseFirstReadings(analyser, allTokens)) {
+            this.statistics.accepted(TierStatistics.Tier.FIRST_READING);
+            return TierStatistics.Tier.FIRST_READING;
+        }
+
+        this.statistics.attempted(TierStatistics.Tier.BACKTRACKING);
+        if (analyser.analyse2(allTokens, this.budget).isAccepted()) {
+            this.statistics.accepted(TierStatistics.Tier.BACKTRACKING);
+            return TierStatistics.Tier.BACKTRACKING;
+        }
+
+        if (!this.generalized)
+            return null;
+        this.statistics.attempted(TierStatistics.Tier.GENERALIZED);
+        if (analyser.analyseAll(analyser.getGeneralizedParser(), allTokens)) {
+            this.statistics.accepted(TierStatistics.Tier.GENERALIZED);
+            return TierStatistics.Tier.GENERALIZED;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the first reading of each word, as analyse does, but stops as soon as one is not consumed
+     * 
+     * @return true if the sentence was accepted; otherwise the analysis is left as it was before
+     */
+    private boolean analyseFirstReadings(SyntacticAnalyser analyser, List<TokenMorph[]> allTokens) {
+        SymbolTable symbols = analyser.getCursor().getSymbolTable();
+        analyser.startJournal();
+        SyntacticAnalyser.Mark start = analyser.mark();
+
+        boolean consumed = true;
+        for (int i = 0; consumed && i < allTokens.size(); i++) {
+            TokenMorph[] wordTokens = allTokens.get(i);
+            if (wordTokens.length == 0) {
+                consumed = false;
+            } else {
+                int symbol = symbols.getId(wordTokens[0].getType());
+                consumed = symbol != SymbolTable.UNKNOWN && analyser.read(wordTokens[0], symbol);
+            }
+        }
+        if (consumed) {
+            analyser.getCursor().finish();
+            consumed = analyser.getCursor().isAtAcceptState();
+        }
+        if (!consumed)
+            analyser.backtrack(start);
+        analyser.stopJournal();
+        return consumed;
+    }
+}
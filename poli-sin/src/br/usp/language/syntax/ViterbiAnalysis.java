@@ -0,0 +1,53 @@
+package br.usp.language.syntax;
+
+import java.util.List;
+
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.forest.ViterbiParser;
+
+/**
+ * Analysis of SyntacticAnalyser.analyseViterbi: the readings are weighted by a ReadingScorer, and the analyser is
+ * given the forest of all analyses and the most probable tree found by a ViterbiParser.
+ *
+ * @author Marcelo Li Koga
+ */
+final class ViterbiAnalysis {
+
+    private final ViterbiParser parser;
+
+    private final ReadingScorer scorer;
+
+    /**
+     * @param parser finds the most probable tree
+     * @param scorer weights the readings
+     */
+    ViterbiAnalysis(ViterbiParser parser, ReadingScorer scorer) {
+        this.parser = parser;
+        this.scorer = scorer;
+    }
+
+    /**
+     * @param analyser analyser that is given the forest and the tree
+     * @param allTokens possible tokens of each word
+     * @return true if the sentence has at least one analysis
+     */
+    boolean run(SyntacticAnalyser analyser, List<TokenMorph[]> allTokens) {
+        int[][] allSymbols = SyntacticAnalyser.toSymbols(allTokens,
+                this.parser.getParser().getGrammar().getSymbolTable());
+        double[][] weights = new double[allTokens.size()][];
+        for (int i = 0; i < weights.length; i++) {
+            TokenMorph[] wordTokens = allTokens.get(i);
+            weights[i] = new double[wordTokens.length];
+            for (int j = 0; j < wordTokens.length; j++) {
+                weights[i][j] = this.scorer.score(wordTokens[j]);
+            }
+        }
+        ViterbiParser.Result result = this.parser.parse(allSymbols,
+                allTokens.toArray(new TokenMorph[allTokens.size()][]), weights);
+
+        analyser.setForest(result.getForest());
+        if (result.isAccepted())
+            analyser.setTree(result.getTree());
+        return result.isAccepted();
+    }
+}
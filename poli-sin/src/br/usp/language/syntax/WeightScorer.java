@@ -0,0 +1,49 @@
+package br.usp.language.syntax;
+
+import br.usp.language.morph.TokenMorph;
+
+/**
+ * Scores readings by a weight kept in a property of the token, such as the probability given by a tagger: the score
+ * is the logarithm of the weight. Readings without the property, or with a weight that is not a number, score 0,
+ * as if their weight were 1. Weights must be positive and finite.
+ *
+ * @author Marcelo Li Koga
+ */
+public class WeightScorer implements ReadingScorer {
+
+    public static final String DEFAULT_PROPERTY = "weight";
+
+    private final String property;
+
+    public WeightScorer() {
+        this(DEFAULT_PROPERTY);
+    }
+
+    /**
+     * @param property name of the property of the tokens with the weight
+     */
+    public WeightScorer(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return this.property;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the weight is not positive and finite
+     */
+    public double score(TokenMorph token) {
+        if (!token.hasProperty(this.property))
+            return 0;
+        double weight;
+        try {
+            weight = Double.parseDouble(token.getProperty(this.property));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        if (!(weight > 0) || Double.isInfinite(weight))
+            throw new IllegalArgumentException("Weight must be positive and finite: " + weight);
+        return Math.log(weight);
+    }
+}
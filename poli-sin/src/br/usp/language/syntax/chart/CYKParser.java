@@ -0,0 +1,170 @@
+package br.usp.language.syntax.chart;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.ChomskyNormalForm;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+
+/**
+ * Bottom-up (CYK) parser on a grammar in Chomsky normal form. The cells of the chart are bitsets of the
+ * non-terminals that derive each span of words; the spans of the same length only depend on shorter ones, so each
+ * diagonal of the chart is filled in parallel by a ForkJoinPool.
+ *
+ * The parser only reads the grammar and can be used by many threads.
+ *
+ * @author Marcelo Li Koga
+ */
+public class CYKParser {
+
+    /** Diagonals with fewer cells than this are filled by the calling thread */
+    static final int THRESHOLD = 16;
+
+    private final ChomskyNormalForm normalForm;
+
+    private final IndexedGrammar grammar;
+
+    private final ForkJoinPool pool;
+
+    /** Rules A -> a of each terminal a */
+    private final int[][] lexicalOf;
+
+    /** Rules A -> B + C of each non-terminal B */
+    private final int[][] binaryOf;
+
+    public CYKParser(ChomskyNormalForm normalForm) {
+        this(normalForm, ForkJoinPool.commonPool());
+    }
+
+    public CYKParser(ChomskyNormalForm normalForm, ForkJoinPool pool) {
+        this.normalForm = normalForm;
+        this.grammar = new IndexedGrammar(normalForm.getGrammar());
+        this.pool = pool;
+
+        int size = this.grammar.getSymbolCount();
+        List<List<Integer>> lexical = new ArrayList<List<Integer>>();
+        List<List<Integer>> binary = new ArrayList<List<Integer>>();
+        for (int s = 0; s < size; s++) {
+            lexical.add(new ArrayList<Integer>());
+            binary.add(new ArrayList<Integer>());
+        }
+        for (int r = 0; r < this.grammar.getRuleCount(); r++) {
+            int[] right = this.grammar.getRight(r);
+            if (right.length == 1)
+                lexical.get(right[0]).add(r);
+            else
+                binary.get(right[0]).add(r);
+        }
+        this.lexicalOf = toArrays(lexical);
+        this.binaryOf = toArrays(binary);
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        int[][] result = new int[lists.size()][];
+        for (int i = 0; i < result.length; i++) {
+            List<Integer> list = lists.get(i);
+            result[i] = new int[list.size()];
+            for (int j = 0; j < result[i].length; j++) {
+                result[i][j] = list.get(j);
+            }
+        }
+        return result;
+    }
+
+    public ChomskyNormalForm getNormalForm() {
+        return this.normalForm;
+    }
+
+    /**
+     * @return the grammar in normal form, whose SymbolTable gives the ids of the readings
+     */
+    public IndexedGrammar getGrammar() {
+        return this.grammar;
+    }
+
+    /**
+     * Parses a sentence.
+     *
+     * @param readings ids of the categories of the readings of each word, in the SymbolTable of getGrammar
+     * @param tokens tokens of the readings, in the same positions; may be null
+     * @return the filled chart
+     */
+    public Chart parse(int[][] readings, TokenMorph[][] tokens) {
+        Chart chart = new Chart(this, readings, tokens);
+        int n = readings.length;
+        for (int i = 0; i < n; i++) {
+            BitSet cell = chart.cell(i, 1);
+            for (int terminal : readings[i]) {
+                if (terminal < 0 || terminal >= this.lexicalOf.length)
+                    continue;
+                for (int rule : this.lexicalOf[terminal]) {
+                    cell.set(this.grammar.getLeft(rule));
+                }
+            }
+        }
+        for (int length = 2; length <= n; length++) {
+            Diagonal diagonal = new Diagonal(chart, length, 0, n - length + 1);
+            if (n - length + 1 < THRESHOLD)
+                diagonal.compute();
+            else
+                this.pool.invoke(diagonal);
+        }
+        return chart;
+    }
+
+    /**
+     * Fills the cell of a span from the cells of its shorter parts
+     */
+    private void fill(Chart chart, int start, int length) {
+        BitSet cell = chart.cell(start, length);
+        for (int split = 1; split < length; split++) {
+            BitSet left = chart.cell(start, split);
+            BitSet right = chart.cell(start + split, length - split);
+            if (left.isEmpty() || right.isEmpty())
+                continue;
+            for (int b = left.nextSetBit(0); b >= 0; b = left.nextSetBit(b + 1)) {
+                for (int rule : this.binaryOf[b]) {
+                    if (right.get(this.grammar.getRight(rule)[1]))
+                        cell.set(this.grammar.getLeft(rule));
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the cells of one length from the starts [from, to), splitting the range while it is large
+     */
+    private final class Diagonal extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Chart chart;
+        private final int length;
+        private final int from;
+        private final int to;
+
+        Diagonal(Chart chart, int length, int from, int to) {
+            this.chart = chart;
+            this.length = length;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= THRESHOLD) {
+                for (int start = this.from; start < this.to; start++) {
+                    fill(this.chart, start, this.length);
+                }
+            } else {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new Diagonal(this.chart, this.length, this.from, middle),
+                        new Diagonal(this.chart, this.length, middle, this.to));
+            }
+        }
+    }
+}
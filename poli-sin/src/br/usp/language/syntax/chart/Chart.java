@@ -0,0 +1,163 @@
+package br.usp.language.syntax.chart;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.grammar.NonTerminal;
+import br.usp.language.syntax.tree.SyntaxTree;
+import br.usp.language.syntax.tree.SyntaxTreeNode;
+
+/**
+ * Chart filled by the CYKParser: for each span of words, the non-terminals of the normal form that derive it.
+ *
+ * @author Marcelo Li Koga
+ */
+public class Chart {
+
+    private final CYKParser parser;
+
+    private final IndexedGrammar grammar;
+
+    private final int[][] readings;
+
+    private final TokenMorph[][] tokens;
+
+    /** cells[start][length - 1] */
+    private final BitSet[][] cells;
+
+    Chart(CYKParser parser, int[][] readings, TokenMorph[][] tokens) {
+        this.parser = parser;
+        this.grammar = parser.getGrammar();
+        this.readings = readings;
+        this.tokens = tokens;
+        int n = readings.length;
+        this.cells = new BitSet[n][];
+        for (int i = 0; i < n; i++) {
+            this.cells[i] = new BitSet[n - i];
+            for (int j = 0; j < n - i; j++) {
+                this.cells[i][j] = new BitSet();
+            }
+        }
+    }
+
+    BitSet cell(int start, int length) {
+        return this.cells[start][length - 1];
+    }
+
+    /**
+     * @return number of words of the sentence
+     */
+    public int getLength() {
+        return this.readings.length;
+    }
+
+    /**
+     * @return whether the non-terminal (id in the SymbolTable of the normal form) derives the span
+     */
+    public boolean derives(int nonTerminal, int start, int length) {
+        return nonTerminal >= 0 && this.cell(start, length).get(nonTerminal);
+    }
+
+    /**
+     * @return whether the sentence has at least one analysis
+     */
+    public boolean isAccepted() {
+        if (this.readings.length == 0)
+            return this.parser.getNormalForm().acceptsEmpty();
+        return this.derives(this.grammar.getStart(), 0, this.readings.length);
+    }
+
+    /**
+     * Builds the tree of one analysis in the original grammar: the auxiliary non-terminals of the normal form are
+     * replaced by their children and the chains of the unit rules are put back.
+     *
+     * @return the tree; null if there is no analysis or the sentence is empty
+     */
+    public SyntaxTree toTree() {
+        if (this.readings.length == 0 || !this.isAccepted())
+            return null;
+        int start = this.grammar.getStart();
+        SyntaxTreeNode root = new SyntaxTreeNode(this.grammar.getName(start));
+        for (SyntaxTreeNode child : this.expand(start, 0, this.readings.length)) {
+            root.addChild(child);
+        }
+        return new SyntaxTree(root);
+    }
+
+    /**
+     * @return children of the node of a non-terminal over a span
+     */
+    private List<SyntaxTreeNode> expand(int nonTerminal, int start, int length) {
+        for (int rule : this.grammar.getRulesOf(nonTerminal)) {
+            int[] right = this.grammar.getRight(rule);
+            if (right.length == 1 && length == 1) {
+                int j = this.reading(right[0], start);
+                if (j >= 0) {
+                    TokenMorph token = this.tokens == null ? null : this.tokens[start][j];
+                    SyntaxTreeNode leaf = new SyntaxTreeNode(this.grammar.getName(right[0]), token);
+                    return this.wrap(rule, Collections.singletonList(leaf));
+                }
+            } else if (right.length == 2) {
+                for (int split = 1; split < length; split++) {
+                    if (this.derives(right[0], start, split) && this.derives(right[1], start + split, length - split)) {
+                        List<SyntaxTreeNode> children = new ArrayList<SyntaxTreeNode>();
+                        this.addNode(children, right[0], start, split);
+                        this.addNode(children, right[1], start + split, length - split);
+                        return this.wrap(rule, children);
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("No rule of " + this.grammar.getName(nonTerminal) + " derives the span");
+    }
+
+    /**
+     * Adds the node of a product, or its children if it is auxiliary
+     */
+    private void addNode(List<SyntaxTreeNode> nodes, int nonTerminal, int start, int length) {
+        List<SyntaxTreeNode> children = this.expand(nonTerminal, start, length);
+        if (this.isAuxiliary(nonTerminal)) {
+            nodes.addAll(children);
+        } else {
+            SyntaxTreeNode node = new SyntaxTreeNode(this.grammar.getName(nonTerminal));
+            for (SyntaxTreeNode child : children) {
+                node.addChild(child);
+            }
+            nodes.add(node);
+        }
+    }
+
+    /**
+     * Puts back the chain of a rule above its children
+     */
+    private List<SyntaxTreeNode> wrap(int rule, List<SyntaxTreeNode> children) {
+        List<NonTerminal> chain = this.parser.getNormalForm().getChain(this.grammar.getRule(rule));
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            if (chain.get(i).isAuxiliary())
+                continue;
+            SyntaxTreeNode node = new SyntaxTreeNode(chain.get(i).getName());
+            for (SyntaxTreeNode child : children) {
+                node.addChild(child);
+            }
+            children = Collections.singletonList(node);
+        }
+        return children;
+    }
+
+    private boolean isAuxiliary(int nonTerminal) {
+        NonTerminal nt = this.grammar.getGrammar().getNonTerminal(this.grammar.getName(nonTerminal));
+        return nt != null && nt.isAuxiliary();
+    }
+
+    private int reading(int terminal, int word) {
+        for (int j = 0; j < this.readings[word].length; j++) {
+            if (this.readings[word][j] == terminal)
+                return j;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,65 @@
+package br.usp.language.syntax.chunk;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A span of words recognized by a Chunker as one of its non-terminals, with the chunks of the lower levels inside
+ * it.
+ *
+ * @author Marcelo Li Koga
+ */
+public class Chunk {
+
+    private final String label;
+
+    private final int start;
+
+    private final int end;
+
+    private final List<Chunk> children;
+
+    Chunk(String label, int start, int end, List<Chunk> children) {
+        this.label = label;
+        this.start = start;
+        this.end = end;
+        this.children = Collections.unmodifiableList(children);
+    }
+
+    /**
+     * @return name of the non-terminal
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * @return position of the first word
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * @return position after the last word
+     */
+    public int getEnd() {
+        return this.end;
+    }
+
+    public int getLength() {
+        return this.end - this.start;
+    }
+
+    /**
+     * @return chunks inside this one, in order
+     */
+    public List<Chunk> getChildren() {
+        return this.children;
+    }
+
+    @Override
+    public String toString() {
+        return this.label + "[" + this.start + "," + this.end + ")";
+    }
+}
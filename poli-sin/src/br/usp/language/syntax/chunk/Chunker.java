@@ -0,0 +1,352 @@
+package br.usp.language.syntax.chunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import br.usp.language.automata.State;
+import br.usp.language.automata.StateMachine;
+import br.usp.language.automata.StateMachineOptimizer;
+import br.usp.language.automata.Transition;
+import br.usp.language.morph.MorphologicAnalyser;
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.grammar.ProductionElement;
+import br.usp.language.syntax.grammar.ProductionRule;
+
+/**
+ * Shallow parser: finds the spans of some non-terminals of a grammar (chunks, such as SS, SV and SP) without
+ * analysing the whole sentence. Each non-terminal is compiled into one flat StateMachine, without machine calls: the
+ * other non-terminals in its rules are put in place (up to a maximum depth, so recursive rules are cut), except for
+ * the chunks given before it, which are read as single symbols (and may be missing, if they can be empty). The
+ * machines are made deterministic and minimal by the StateMachineOptimizer.
+ *
+ * The machines form a cascade, run in the order the chunks were given: each level reads the sequence left by the
+ * level before, where the chunks found are single symbols, from left to right, and takes at each position the longest
+ * chunk that begins there. There is no backtracking: a chunk found is never undone. The machines have no loops, so a
+ * chunk has a bounded length and each level reads each word a bounded number of times; the time is linear in the
+ * number of words. All the readings of a word are followed at the same time.
+ *
+ * A Chunker is only read after it is created, so it can be shared by many threads.
+ *
+ * @author Marcelo Li Koga
+ */
+public class Chunker {
+
+    /** Default maximum number of non-terminals put in place one inside the other */
+    public static final int DEFAULT_MAX_DEPTH = 3;
+
+    private final String[] labels;
+
+    private final StateMachine[] machines;
+
+    /** States of each machine where a chunk can end */
+    private final List<Set<State>> finishing;
+
+    /**
+     * @param grammar
+     * @param labels names of the non-terminals, lower levels first, such as "SS", "SP", "SV"
+     */
+    public Chunker(ContextFreeGrammar grammar, String... labels) {
+        this(grammar, DEFAULT_MAX_DEPTH, labels);
+    }
+
+    /**
+     * @param grammar
+     * @param maxDepth maximum number of non-terminals put in place one inside the other; deeper ones are left out
+     * @param labels names of the non-terminals, lower levels first
+     * @throws IllegalArgumentException if a label is not a non-terminal of the grammar
+     */
+    public Chunker(ContextFreeGrammar grammar, int maxDepth, String... labels) {
+        IndexedGrammar indexed = new IndexedGrammar(grammar);
+        Map<String, List<ProductionRule>> rules = new HashMap<String, List<ProductionRule>>();
+        for (ProductionRule rule : grammar.getRules()) {
+            String generator = rule.getGenerator().getName();
+            if (!rules.containsKey(generator))
+                rules.put(generator, new ArrayList<ProductionRule>());
+            rules.get(generator).add(rule);
+        }
+
+        this.labels = labels.clone();
+        this.machines = new StateMachine[labels.length];
+        this.finishing = new ArrayList<Set<State>>(labels.length);
+        for (int level = 0; level < labels.length; level++) {
+            if (!grammar.hasNonTerminal(labels[level]))
+                throw new IllegalArgumentException("Not a non-terminal of the grammar: " + labels[level]);
+            Set<String> below = new HashSet<String>(Arrays.asList(labels).subList(0, level));
+            StateMachine flat = new Builder(labels[level], indexed, rules, below, maxDepth).build();
+            StateMachine machine = StateMachineOptimizer.optimize(flat);
+            machine.compile();
+            this.machines[level] = machine;
+
+            Set<State> ends = new HashSet<State>();
+            for (State state : machine.getAllStates()) {
+                boolean canEnd = state.isAcceptState();
+                for (State next : state.getNextEpsilonStates()) {
+                    canEnd |= next.isAcceptState();
+                }
+                if (canEnd)
+                    ends.add(state);
+            }
+            this.finishing.add(ends);
+        }
+    }
+
+    /**
+     * @return names of the non-terminals, lower levels first
+     */
+    public String[] getLabels() {
+        return this.labels.clone();
+    }
+
+    /**
+     * @return flat machine of a level, which must not be changed
+     */
+    public StateMachine getMachine(int level) {
+        return this.machines[level];
+    }
+
+    /**
+     * Reads the words of a sentence from a morphological analyser and finds its chunks
+     */
+    public List<Chunk> chunk(MorphologicAnalyser ma) {
+        List<TokenMorph[]> words = new ArrayList<TokenMorph[]>();
+        while (ma.hasMoreTokens()) {
+            words.add(ma.getNextTokens());
+        }
+        return this.chunk(words);
+    }
+
+    /**
+     * @param words readings of each word of a sentence
+     * @return the outermost chunks, in order; the chunks of lower levels inside them are their children
+     */
+    public List<Chunk> chunk(List<TokenMorph[]> words) {
+        List<Item> items = new ArrayList<Item>(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            TokenMorph[] readings = words.get(i);
+            String[] symbols = new String[readings.length];
+            for (int j = 0; j < readings.length; j++) {
+                symbols[j] = readings[j].getType();
+            }
+            items.add(new Item(symbols, i, i + 1, null));
+        }
+        for (int level = 0; level < this.machines.length; level++) {
+            items = this.scan(level, items);
+        }
+
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        for (Item item : items) {
+            if (item.chunk != null)
+                chunks.add(item.chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Runs the machine of a level over the items, replacing the longest chunk found at each position by one item
+     */
+    private List<Item> scan(int level, List<Item> items) {
+        State initial = this.machines[level].getInitialState();
+        Set<State> ends = this.finishing.get(level);
+        List<Item> result = new ArrayList<Item>(items.size());
+        int i = 0;
+        while (i < items.size()) {
+            // End of the longest chunk from i; the states of all the readings are followed together
+            int end = -1;
+            List<State> current = Collections.singletonList(initial);
+            for (int j = i; j < items.size() && !current.isEmpty(); j++) {
+                List<State> next = new ArrayList<State>(current.size());
+                for (State state : current) {
+                    for (String symbol : items.get(j).symbols) {
+                        State to = state.getNextState(symbol);
+                        if (to != null && !next.contains(to))
+                            next.add(to);
+                    }
+                }
+                current = next;
+                for (State state : current) {
+                    if (ends.contains(state))
+                        end = j + 1;
+                }
+            }
+
+            if (end == -1) {
+                result.add(items.get(i));
+                i++;
+                continue;
+            }
+            List<Chunk> children = new ArrayList<Chunk>();
+            for (Item inside : items.subList(i, end)) {
+                if (inside.chunk != null)
+                    children.add(inside.chunk);
+            }
+            Chunk chunk = new Chunk(this.labels[level], items.get(i).start, items.get(end - 1).end, children);
+            result.add(new Item(new String[] { this.labels[level] }, chunk.getStart(), chunk.getEnd(), chunk));
+            i = end;
+        }
+        return result;
+    }
+
+    /**
+     * A word, or a chunk found by a lower level, as read by the machines
+     */
+    private static final class Item {
+
+        final String[] symbols;
+
+        final int start;
+
+        final int end;
+
+        final Chunk chunk;
+
+        Item(String[] symbols, int start, int end, Chunk chunk) {
+            this.symbols = symbols;
+            this.start = start;
+            this.end = end;
+            this.chunk = chunk;
+        }
+    }
+
+    /**
+     * Builds the flat machine of a non-terminal, putting the other non-terminals in place. Each non-terminal is built
+     * once for each depth, into a machine of its own that is made minimal, and that machine is copied into every
+     * place where the non-terminal is put at that depth; so the machines grow with the minimal size of the parts, not
+     * with the number of ways of reaching them. A flat machine has no stack to return to, so the parts are copied
+     * rather than shared.
+     */
+    private static final class Builder {
+
+        private final String label;
+
+        private final IndexedGrammar grammar;
+
+        private final Map<String, List<ProductionRule>> rules;
+
+        private final Set<String> below;
+
+        private final int maxDepth;
+
+        /** Minimal machine of each non-terminal at each depth; null if no rule fits within the maximum depth */
+        private final Map<String, StateMachine> parts = new HashMap<String, StateMachine>();
+
+        private int numStates = 1;
+
+        Builder(String label, IndexedGrammar grammar, Map<String, List<ProductionRule>> rules, Set<String> below,
+                int maxDepth) {
+            this.label = label;
+            this.grammar = grammar;
+            this.rules = rules;
+            this.below = below;
+            this.maxDepth = maxDepth;
+        }
+
+        StateMachine build() {
+            StateMachine machine = this.part(this.label, 0);
+            if (machine == null) {
+                // No rule fits: nothing is accepted
+                machine = new StateMachine(this.label);
+                machine.createState("Final").setAcceptState();
+            }
+            return machine;
+        }
+
+        /**
+         * @return the minimal machine of the rules of a non-terminal put in place at a depth; null if no rule fits
+         *         within the maximum depth
+         */
+        private StateMachine part(String nonTerminal, int depth) {
+            String key = depth + ":" + nonTerminal;
+            if (this.parts.containsKey(key))
+                return this.parts.get(key);
+
+            StateMachine part = null;
+            if (depth <= this.maxDepth && this.rules.containsKey(nonTerminal)) {
+                StateMachine machine = new StateMachine(nonTerminal);
+                State finalState = machine.createState("Final");
+                finalState.setAcceptState();
+                boolean expanded = false;
+                for (ProductionRule rule : this.rules.get(nonTerminal)) {
+                    // The parts are found first, so a rule that does not fit leaves no states behind
+                    List<StateMachine> inside = new ArrayList<StateMachine>();
+                    boolean fits = true;
+                    for (ProductionElement product : rule.getProducts()) {
+                        StateMachine productPart = null;
+                        if (product.getType() == ProductionElement.NONTERMINAL
+                                && !this.below.contains(product.getName())) {
+                            productPart = this.part(product.getName(), depth + 1);
+                            fits &= productPart != null;
+                        }
+                        inside.add(productPart);
+                    }
+                    if (!fits)
+                        continue;
+
+                    State last = machine.getInitialState();
+                    for (int p = 0; p < rule.getProducts().size(); p++) {
+                        ProductionElement product = rule.getProducts().get(p);
+                        if (product.getType() == ProductionElement.EPSILON)
+                            continue;
+                        State next = machine.createState("State" + this.numStates + "_" + product.getName());
+                        this.numStates++;
+                        if (inside.get(p) != null) {
+                            this.copy(inside.get(p), machine, last, next);
+                        } else {
+                            last.createTransitionTo(next, product.getName(), null);
+                            // A chunk that can be empty is never found empty, so it may be missing
+                            if (product.getType() == ProductionElement.NONTERMINAL
+                                    && this.grammar.isNullable(this.grammar.getSymbolTable().getId(product.getName())))
+                                last.createEpsilonTransitionTo(next, null);
+                        }
+                        last = next;
+                    }
+                    last.createEpsilonTransitionTo(finalState, null);
+                    expanded = true;
+                }
+                if (expanded)
+                    part = StateMachineOptimizer.optimize(machine);
+            }
+            this.parts.put(key, part);
+            return part;
+        }
+
+        /**
+         * Copies the states and transitions of a part into a machine, between two of its states
+         */
+        private void copy(StateMachine part, StateMachine machine, State from, State to) {
+            Map<State, State> copies = new IdentityHashMap<State, State>();
+            List<State> pending = new ArrayList<State>();
+            pending.add(part.getInitialState());
+            copies.put(part.getInitialState(), machine.createState("State" + this.numStates + "_" + part.getName()));
+            this.numStates++;
+            from.createEpsilonTransitionTo(copies.get(part.getInitialState()), null);
+            for (int i = 0; i < pending.size(); i++) {
+                State state = pending.get(i);
+                State copy = copies.get(state);
+                for (Transition transition : state.getAllTransitions()) {
+                    State target = transition.getStateTo();
+                    if (!copies.containsKey(target)) {
+                        copies.put(target, machine.createState("State" + this.numStates + "_" + target.getName()));
+                        this.numStates++;
+                        pending.add(target);
+                    }
+                    if (transition.isEpsilon())
+                        copy.createEpsilonTransitionTo(copies.get(target), null);
+                    else
+                        copy.createTransitionTo(copies.get(target), new ArrayList<String>(transition.getConditions()),
+                                null);
+                }
+                if (state.isAcceptState())
+                    copy.createEpsilonTransitionTo(to, null);
+            }
+        }
+    }
+}
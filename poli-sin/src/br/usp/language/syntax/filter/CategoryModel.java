@@ -0,0 +1,399 @@
+package br.usp.language.syntax.filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import br.usp.language.syntax.tree.SyntaxTree;
+import br.usp.language.syntax.tree.SyntaxTreeNode;
+
+/**
+ * Hidden Markov model of the sequences of categories of the words, for CategoryTagger. It is learnt by counting the
+ * categories of the leaves of trees, such as the ones accepted by the SyntacticAnalyser.
+ *
+ * The probability of a category given the previous ones interpolates the frequencies of the trigram (when the order is
+ * 3), the bigram and the category alone; the weights are found by deleted interpolation, and as they change slowly they
+ * are only found again when the counts have grown by a sixteenth. The probability of a word given a category is its
+ * relative frequency, but the pairs not seen share a part of the count that grows with the number of words seen once
+ * with the category, so open categories (nouns, verbs) take unknown words more easily than closed ones (articles,
+ * prepositions).
+ *
+ * The model can be learnt and used from many threads. It is read through a Snapshot of its counts, taken again only
+ * after it learns something, so the readers need no lock; a CategoryTagger takes one snapshot for each sentence. A
+ * snapshot shares with the model the rows of counts that did not change since the one before (see Counts), so
+ * taking one after a sentence is learnt costs the rows that sentence changed, not the whole model.
+ *
+ * @author Marcelo Li Koga
+ */
+public class CategoryModel {
+
+    /** Category before the first word and after the last one */
+    static final String BOUNDARY = "<s>";
+
+    private static final char SEPARATOR = '\t';
+
+    private final int order;
+
+    /** Occurrences of each category, bigram and trigram */
+    private final Counts unigrams = new Counts();
+
+    private final Counts bigrams = new Counts();
+
+    private final Counts trigrams = new Counts();
+
+    /** Occurrences of each category and bigram before another category */
+    private final Counts histories1 = new Counts();
+
+    private final Counts histories2 = new Counts();
+
+    /** Occurrences of each word with each category */
+    private final Counts emissions = new Counts();
+
+    /** Words of each category, seen once and more than once */
+    private final Map<String, Set<String>> seenOnce = new HashMap<String, Set<String>>();
+
+    private final Map<String, Set<String>> seenMore = new HashMap<String, Set<String>>();
+
+    /** Number of categories counted, with the end of each sentence */
+    private long total;
+
+    /** Weights of the frequencies, and the total they were found with */
+    private double[] lambdas;
+
+    private long lambdasTotal;
+
+    /** Counts as last read; null when the model learnt something after it was taken */
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param order 2 for bigrams or 3 for trigrams
+     */
+    public CategoryModel(int order) {
+        if (order != 2 && order != 3)
+            throw new IllegalArgumentException("Order must be 2 or 3: " + order);
+        this.order = order;
+    }
+
+    public int getOrder() {
+        return this.order;
+    }
+
+    /**
+     * Counts the categories and words of the leaves of a tree; leaves without token or without word, such as the
+     * ERROR nodes of SyntacticAnalyser.analyseRecovering and the terminals it inserts, are left out.
+     */
+    public void add(SyntaxTree tree) {
+        if (tree == null || tree.getRoot() == null)
+            return;
+        List<String> words = new ArrayList<String>();
+        List<String> categories = new ArrayList<String>();
+        for (SyntaxTreeNode leaf : tree.getRoot().getAllLeafs()) {
+            if (leaf.getToken() == null || leaf.getToken().getLexeme() == null
+                    || leaf.getToken().getLexeme().length() == 0)
+                continue;
+            words.add(leaf.getToken().getLexeme());
+            categories.add(leaf.getLabel());
+        }
+        this.add(words.toArray(new String[words.size()]), categories.toArray(new String[categories.size()]));
+    }
+
+    /**
+     * Counts a sentence
+     *
+     * @param words the words, in order
+     * @param categories the category of each word
+     */
+    public synchronized void add(String[] words, String[] categories) {
+        if (words.length != categories.length)
+            throw new IllegalArgumentException("One category is needed for each word");
+        String before2 = BOUNDARY;
+        String before1 = BOUNDARY;
+        for (int i = 0; i <= categories.length; i++) {
+            String category = i < categories.length ? categories[i] : BOUNDARY;
+            this.unigrams.increment(category);
+            this.bigrams.increment(key(before1, category));
+            this.trigrams.increment(key(before2, before1, category));
+            this.histories1.increment(before1);
+            this.histories2.increment(key(before2, before1));
+            this.total++;
+            if (i < categories.length)
+                this.addEmission(normalize(words[i]), category);
+            before2 = before1;
+            before1 = category;
+        }
+        this.snapshot = null;
+    }
+
+    private void addEmission(String word, String category) {
+        int count = this.emissions.increment(key(word, category));
+        if (count == 1) {
+            words(this.seenOnce, category).add(word);
+        } else if (count == 2) {
+            words(this.seenOnce, category).remove(word);
+            words(this.seenMore, category).add(word);
+        }
+    }
+
+    /**
+     * @return the counts learnt so far, with the weights of the frequencies; the same object until the model learns
+     *         something else
+     */
+    public Snapshot snapshot() {
+        Snapshot current = this.snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (this.snapshot == null)
+                    this.snapshot = new Snapshot(this);
+                current = this.snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @see Snapshot#transition(String, String, String)
+     */
+    public double transition(String before2, String before1, String category) {
+        return this.snapshot().transition(before2, before1, category);
+    }
+
+    /**
+     * @see Snapshot#emission(String, String)
+     */
+    public double emission(String word, String category) {
+        return this.snapshot().emission(word, category);
+    }
+
+    /**
+     * Copy of the counts of a model at one moment, which does not change, so it can be read without locks
+     */
+    public static final class Snapshot {
+
+        private final int order;
+
+        private final Counts unigrams;
+
+        private final Counts bigrams;
+
+        private final Counts trigrams;
+
+        private final Counts histories1;
+
+        private final Counts histories2;
+
+        private final Counts emissions;
+
+        /** Number of words of each category seen once and more than once */
+        private final Map<String, Integer> seenOnce = new HashMap<String, Integer>();
+
+        private final Map<String, Integer> seenMore = new HashMap<String, Integer>();
+
+        private final long total;
+
+        /** Weights of the trigram, bigram and unigram frequencies */
+        private final double[] lambdas;
+
+        /**
+         * Must be called holding the lock of the model
+         */
+        private Snapshot(CategoryModel model) {
+            this.order = model.order;
+            this.unigrams = model.unigrams.share();
+            this.bigrams = model.bigrams.share();
+            this.trigrams = model.trigrams.share();
+            this.histories1 = model.histories1.share();
+            this.histories2 = model.histories2.share();
+            this.emissions = model.emissions.share();
+            for (Map.Entry<String, Set<String>> words : model.seenOnce.entrySet()) {
+                this.seenOnce.put(words.getKey(), words.getValue().size());
+            }
+            for (Map.Entry<String, Set<String>> words : model.seenMore.entrySet()) {
+                this.seenMore.put(words.getKey(), words.getValue().size());
+            }
+            this.total = model.total;
+            if (model.lambdas == null || model.total - model.lambdasTotal > model.lambdasTotal / 16) {
+                model.lambdas = this.computeLambdas();
+                model.lambdasTotal = model.total;
+            }
+            this.lambdas = model.lambdas;
+        }
+
+        /**
+         * @return logarithm of the probability of the category after the two previous ones; BOUNDARY stands for the
+         *         beginning and the end of the sentence
+         */
+        public double transition(String before2, String before1, String category) {
+            double unigram = (this.unigrams.count(category) + 1) / (double) (this.total + this.unigrams.size() + 1);
+            double probability = this.lambdas[2] * unigram;
+            int history1 = this.histories1.count(before1);
+            if (history1 > 0)
+                probability += this.lambdas[1] * this.bigrams.count(key(before1, category)) / history1;
+            int history2 = this.histories2.count(key(before2, before1));
+            if (this.order == 3 && history2 > 0)
+                probability += this.lambdas[0] * this.trigrams.count(key(before2, before1, category)) / history2;
+            return Math.log(probability);
+        }
+
+        /**
+         * @return logarithm of the probability of the word given the category
+         */
+        public double emission(String word, String category) {
+            int count = this.emissions.count(key(normalize(word), category));
+            double unseen = (count(this.seenOnce, category) + 1)
+                    / (double) (count(this.seenOnce, category) + count(this.seenMore, category) + 1);
+            return Math.log((count + unseen) / (this.unigrams.count(category) + 1));
+        }
+
+        /**
+         * Deleted interpolation: each n-gram votes, with its count, for the frequency that predicts it best once it
+         * is taken out of the counts. Each frequency begins with one vote, so none is left out and sequences not
+         * seen keep some chance. The n-grams are sequences of categories, so their number stops growing soon, unlike
+         * the number of words.
+         */
+        private double[] computeLambdas() {
+            double[] votes = { this.order == 3 ? 1 : 0, 1, 1 };
+            Counts ngrams = this.order == 3 ? this.trigrams : this.bigrams;
+            for (Map<String, Integer> row : ngrams.getRows()) {
+                if (row == null)
+                    continue;
+                for (Map.Entry<String, Integer> ngram : row.entrySet()) {
+                    String[] parts = ngram.getKey().split(String.valueOf(SEPARATOR), -1);
+                    String category = parts[parts.length - 1];
+                    String before1 = parts[parts.length - 2];
+                    int n = ngram.getValue();
+                    double[] predictions = new double[3];
+                    if (this.order == 3)
+                        predictions[0] = ratio(n - 1, this.histories2.count(key(parts[0], before1)) - 1);
+                    predictions[1] = ratio(this.bigrams.count(key(before1, category)) - 1,
+                            this.histories1.count(before1) - 1);
+                    predictions[2] = ratio(this.unigrams.count(category) - 1, this.total - 1);
+                    int best = 2;
+                    for (int l = 1; l >= 0; l--) {
+                        if (predictions[l] > predictions[best])
+                            best = l;
+                    }
+                    votes[best] += n;
+                }
+            }
+            double sum = votes[0] + votes[1] + votes[2];
+            for (int l = 0; l < 3; l++) {
+                votes[l] /= sum;
+            }
+            return votes;
+        }
+    }
+
+    /**
+     * Counts split into a fixed number of rows by the hash of the key. The model changes its rows in place until a
+     * snapshot shares them; then a row is copied the first time it changes again, so the snapshot keeps reading the
+     * old one. Taking a snapshot copies the list of rows, not their counts.
+     */
+    private static final class Counts {
+
+        private static final int ROW_BITS = 10;
+
+        private static final int ROWS = 1 << ROW_BITS;
+
+        /** Null for the rows without keys yet */
+        private final List<Map<String, Integer>> rows;
+
+        /** Rows that a snapshot reads, which must be copied before they change */
+        private final BitSet shared = new BitSet(ROWS);
+
+        private int size;
+
+        Counts() {
+            this.rows = new ArrayList<Map<String, Integer>>(Collections.<Map<String, Integer>> nCopies(ROWS, null));
+        }
+
+        /**
+         * @return counts with the rows of these ones, as they are now; they are only read afterwards
+         */
+        Counts share() {
+            Counts copy = new Counts();
+            Collections.copy(copy.rows, this.rows);
+            copy.size = this.size;
+            this.shared.set(0, ROWS);
+            return copy;
+        }
+
+        /**
+         * @return the count of the key, after it is incremented
+         */
+        int increment(String key) {
+            int r = row(key);
+            Map<String, Integer> row = this.rows.get(r);
+            if (row == null || this.shared.get(r)) {
+                row = row == null ? new HashMap<String, Integer>() : new HashMap<String, Integer>(row);
+                this.rows.set(r, row);
+                this.shared.clear(r);
+            }
+            Integer count = row.get(key);
+            if (count == null)
+                this.size++;
+            int incremented = count == null ? 1 : count + 1;
+            row.put(key, incremented);
+            return incremented;
+        }
+
+        int count(String key) {
+            Map<String, Integer> row = this.rows.get(row(key));
+            Integer count = row == null ? null : row.get(key);
+            return count == null ? 0 : count;
+        }
+
+        /**
+         * @return number of keys
+         */
+        int size() {
+            return this.size;
+        }
+
+        List<Map<String, Integer>> getRows() {
+            return this.rows;
+        }
+
+        /**
+         * Takes the high bits of a mixed hash: the HashMap of the row uses the low ones, which would then be the same
+         * for all its keys
+         */
+        private static int row(String key) {
+            return (key.hashCode() * 0x9E3779B9) >>> (32 - ROW_BITS);
+        }
+    }
+
+    private static double ratio(double a, double b) {
+        return b <= 0 ? 0 : a / b;
+    }
+
+    private static String normalize(String word) {
+        return word == null ? "" : word.toLowerCase();
+    }
+
+    private static String key(String... parts) {
+        StringBuilder key = new StringBuilder(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            key.append(SEPARATOR).append(parts[i]);
+        }
+        return key.toString();
+    }
+
+    private static int count(Map<String, Integer> counts, String key) {
+        Integer count = counts.get(key);
+        return count == null ? 0 : count;
+    }
+
+    private static Set<String> words(Map<String, Set<String>> words, String category) {
+        Set<String> set = words.get(category);
+        if (set == null) {
+            set = new HashSet<String>();
+            words.put(category, set);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,181 @@
+package br.usp.language.syntax.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import br.usp.language.morph.MorphologicAnalyser;
+import br.usp.language.morph.TokenMorph;
+
+/**
+ * Keeps, of the readings of each word, only the ones of its k most probable categories in the sentence, as told by a
+ * CategoryModel (see SentenceFilter).
+ *
+ * The categories of a word are ranked by the probability of the best sequence of categories of the sentence that
+ * goes through them (Viterbi, forwards and backwards), so the first one is the category of the word in the best
+ * sequence. The readings kept are given in that order, best first.
+ *
+ * If the model learnt nothing, every category has the same chance and the first k categories given by the other
+ * analyser are kept.
+ *
+ * @author Marcelo Li Koga
+ */
+public class CategoryTagger extends SentenceFilter {
+
+    private final CategoryModel model;
+
+    private final int k;
+
+    /**
+     * @param analyser gives the readings of the words
+     * @param model may be shared by many taggers
+     * @param k maximum number of categories kept for each word
+     */
+    public CategoryTagger(MorphologicAnalyser analyser, CategoryModel model, int k) {
+        super(analyser);
+        if (k < 1)
+            throw new IllegalArgumentException("At least one category must be kept: " + k);
+        this.model = model;
+        this.k = k;
+    }
+
+    public CategoryModel getModel() {
+        return this.model;
+    }
+
+    /**
+     * Keeps the readings of the k best categories of each word, best first
+     */
+    @Override
+    protected List<TokenMorph[]> select(List<TokenMorph[]> words) {
+        int n = words.size();
+        String[][] categories = new String[n][];
+        String[] lexemes = new String[n];
+        for (int i = 0; i < n; i++) {
+            categories[i] = categoriesOf(words.get(i));
+            lexemes[i] = words.get(i).length == 0 ? "" : words.get(i)[0].getLexeme();
+        }
+        // One snapshot for the whole sentence, read without locks
+        double[][] scores = score(this.model.snapshot(), categories, lexemes);
+
+        List<TokenMorph[]> result = new ArrayList<TokenMorph[]>(n);
+        for (int i = 0; i < n; i++) {
+            int keep = Math.min(this.k, categories[i].length);
+            result.add(this.sort(words.get(i), categories[i], scores[i], keep));
+        }
+        return result;
+    }
+
+    /**
+     * @return the readings of the best categories, best first, in the order given among readings of one category
+     */
+    private TokenMorph[] sort(TokenMorph[] readings, final String[] categories, final double[] scores, int keep) {
+        Integer[] ranking = new Integer[categories.length];
+        for (int c = 0; c < ranking.length; c++) {
+            ranking[c] = c;
+        }
+        // Stable, so ties keep the order of the other analyser
+        Arrays.sort(ranking, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Double.compare(scores[b], scores[a]);
+            }
+        });
+        List<TokenMorph> kept = new ArrayList<TokenMorph>(readings.length);
+        for (int r = 0; r < keep; r++) {
+            for (TokenMorph reading : readings) {
+                if (category(reading).equals(categories[ranking[r]]))
+                    kept.add(reading);
+            }
+        }
+        return kept.toArray(new TokenMorph[kept.size()]);
+    }
+
+    /**
+     * Scores each category of each word by the logarithm of the probability of the best sequence that goes through
+     * it. The states of the lattice are the pairs of categories of a word and the one before it, so trigrams can be
+     * used.
+     */
+    private static double[][] score(CategoryModel.Snapshot model, String[][] categories, String[] lexemes) {
+        int n = categories.length;
+        // emissions[i][q]: the word i given its category q, read by both passes
+        double[][] emissions = new double[n][];
+        for (int i = 0; i < n; i++) {
+            emissions[i] = new double[categories[i].length];
+            for (int q = 0; q < categories[i].length; q++) {
+                emissions[i][q] = model.emission(lexemes[i], categories[i][q]);
+            }
+        }
+
+        // forward[i][p][q]: best sequence of words 0..i with category p at i-1 and q at i
+        double[][][] forward = new double[n][][];
+        for (int i = 0; i < n; i++) {
+            String[] before2 = i >= 2 ? categories[i - 2] : new String[] { CategoryModel.BOUNDARY };
+            String[] before1 = i >= 1 ? categories[i - 1] : new String[] { CategoryModel.BOUNDARY };
+            forward[i] = new double[before1.length][categories[i].length];
+            for (int q = 0; q < categories[i].length; q++) {
+                for (int p = 0; p < before1.length; p++) {
+                    double best = Double.NEGATIVE_INFINITY;
+                    for (int o = 0; o < before2.length; o++) {
+                        double previous = i >= 1 ? forward[i - 1][o][p] : 0;
+                        best = Math.max(best, previous
+                                + model.transition(before2[o], before1[p], categories[i][q]));
+                    }
+                    forward[i][p][q] = best + emissions[i][q];
+                }
+            }
+        }
+
+        // backward[i][p][q]: best continuation after word i, with category p at i-1 and q at i
+        double[][][] backward = new double[n][][];
+        for (int i = n - 1; i >= 0; i--) {
+            String[] before1 = i >= 1 ? categories[i - 1] : new String[] { CategoryModel.BOUNDARY };
+            backward[i] = new double[before1.length][categories[i].length];
+            for (int p = 0; p < before1.length; p++) {
+                for (int q = 0; q < categories[i].length; q++) {
+                    if (i == n - 1) {
+                        backward[i][p][q] = model.transition(before1[p], categories[i][q],
+                                CategoryModel.BOUNDARY);
+                        continue;
+                    }
+                    double best = Double.NEGATIVE_INFINITY;
+                    for (int r = 0; r < categories[i + 1].length; r++) {
+                        best = Math.max(best, model.transition(before1[p], categories[i][q], categories[i + 1][r])
+                                + emissions[i + 1][r] + backward[i + 1][q][r]);
+                    }
+                    backward[i][p][q] = best;
+                }
+            }
+        }
+
+        double[][] scores = new double[n][];
+        for (int i = 0; i < n; i++) {
+            scores[i] = new double[categories[i].length];
+            Arrays.fill(scores[i], Double.NEGATIVE_INFINITY);
+            for (int p = 0; p < forward[i].length; p++) {
+                for (int q = 0; q < categories[i].length; q++) {
+                    scores[i][q] = Math.max(scores[i][q], forward[i][p][q] + backward[i][p][q]);
+                }
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * @return the distinct categories of the readings, in order; a word without readings has one empty category
+     */
+    private static String[] categoriesOf(TokenMorph[] readings) {
+        List<String> categories = new ArrayList<String>();
+        for (TokenMorph reading : readings) {
+            if (!categories.contains(category(reading)))
+                categories.add(category(reading));
+        }
+        if (categories.isEmpty())
+            categories.add("");
+        return categories.toArray(new String[categories.size()]);
+    }
+
+    private static String category(TokenMorph reading) {
+        return reading.getType() == null ? "" : reading.getType();
+    }
+}
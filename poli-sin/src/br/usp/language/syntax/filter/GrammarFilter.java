@@ -0,0 +1,186 @@
+package br.usp.language.syntax.filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import br.usp.language.automata.SymbolTable;
+import br.usp.language.morph.MorphologicAnalyser;
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.FirstFollowSets;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.grammar.Terminal;
+
+/**
+ * Leaves out the readings that no sentence of a grammar can have (see SentenceFilter): the ones whose category is
+ * not a terminal of the grammar and, when positional filtering is on, the ones whose category cannot come where the
+ * word is. A category can begin the sentence if it is in the FIRST set of the start symbol, end it if the sentence
+ * can end right after it, and come after another one if it is in the FOLLOW set of that terminal, found from the
+ * FIRST and FOLLOW sets of the grammar. A reading is kept only if some reading of the word before can come before it
+ * and some reading of the word after can come after it, which is checked forwards and then backwards.
+ *
+ * No analysis of the sentence is lost, since the readings left out cannot be in one. If no reading of a word is
+ * possible, the sentence has no analysis anyway, and nothing is left out that would leave the word without readings:
+ * a word none of whose categories are terminals keeps all its readings and, if the positional filtering would leave
+ * some word without readings, it is not done. So an analysis that gets over errors
+ * (SyntacticAnalyser.analyseRecovering) still sees every word.
+ *
+ * @author Marcelo Li Koga
+ */
+public class GrammarFilter extends SentenceFilter {
+
+    private final Set<String> terminals = new HashSet<String>();
+
+    private final boolean positional;
+
+    private SymbolTable symbols;
+
+    /** Terminals that can begin and end the sentence */
+    private BitSet first;
+
+    private BitSet last;
+
+    /** Terminals that can come right after each terminal */
+    private BitSet[] follow;
+
+    /**
+     * Filters by the terminals of the grammar only
+     */
+    public GrammarFilter(MorphologicAnalyser analyser, ContextFreeGrammar grammar) {
+        this(analyser, grammar, false);
+    }
+
+    /**
+     * @param analyser gives the readings of the words
+     * @param grammar the grammar should not change after the filter is created
+     * @param positional whether the categories must also fit where the words are
+     */
+    public GrammarFilter(MorphologicAnalyser analyser, ContextFreeGrammar grammar, boolean positional) {
+        super(analyser);
+        for (Terminal terminal : grammar.getTerminals()) {
+            this.terminals.add(terminal.getName());
+        }
+        this.positional = positional;
+        if (positional)
+            this.computeNeighbours(new FirstFollowSets(new IndexedGrammar(grammar), 1));
+    }
+
+    public boolean isPositional() {
+        return this.positional;
+    }
+
+    /**
+     * FOLLOW set of each terminal: the FIRST set of what comes after it in a rule and, if that can derive nothing,
+     * the FOLLOW set of the generator of the rule
+     */
+    private void computeNeighbours(FirstFollowSets sets) {
+        IndexedGrammar grammar = sets.getGrammar();
+        this.symbols = grammar.getSymbolTable();
+        int size = grammar.getSymbolCount();
+        this.follow = new BitSet[size];
+        for (int s = 0; s < size; s++) {
+            this.follow[s] = new BitSet();
+        }
+        this.last = new BitSet();
+        for (int r = 0; r < grammar.getRuleCount(); r++) {
+            int[] products = grammar.getRight(r);
+            for (int i = 0; i < products.length; i++) {
+                if (grammar.isNonTerminal(products[i]))
+                    continue;
+                boolean canEnd = false;
+                for (List<Integer> next : sets.getFirst(products, i + 1)) {
+                    if (!next.isEmpty()) {
+                        this.follow[products[i]].set(next.get(0));
+                        continue;
+                    }
+                    for (List<Integer> after : sets.getFollow(grammar.getLeft(r))) {
+                        if (after.isEmpty())
+                            canEnd = true;
+                        else
+                            this.follow[products[i]].set(after.get(0));
+                    }
+                }
+                if (canEnd)
+                    this.last.set(products[i]);
+            }
+        }
+        this.first = new BitSet();
+        for (List<Integer> begin : sets.getFirst(grammar.getStart())) {
+            if (!begin.isEmpty())
+                this.first.set(begin.get(0));
+        }
+    }
+
+    @Override
+    protected List<TokenMorph[]> select(List<TokenMorph[]> words) {
+        List<TokenMorph[]> kept = new ArrayList<TokenMorph[]>(words.size());
+        for (TokenMorph[] readings : words) {
+            List<TokenMorph> possible = new ArrayList<TokenMorph>(readings.length);
+            for (TokenMorph reading : readings) {
+                if (this.terminals.contains(reading.getType()))
+                    possible.add(reading);
+            }
+            // A word without possible readings keeps them all, as the sentence has no analysis anyway
+            kept.add(possible.isEmpty() ? readings : possible.toArray(new TokenMorph[possible.size()]));
+        }
+        if (!this.positional || kept.isEmpty())
+            return kept;
+
+        int n = kept.size();
+        BitSet[] categories = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            categories[i] = new BitSet();
+            for (TokenMorph reading : kept.get(i)) {
+                int id = this.idOf(reading);
+                if (id != SymbolTable.UNKNOWN)
+                    categories[i].set(id);
+            }
+        }
+        // Forwards: what can come after the words before; backwards: what can come before the words after
+        categories[0].and(this.first);
+        for (int i = 1; i < n; i++) {
+            categories[i].and(this.after(categories[i - 1]));
+        }
+        categories[n - 1].and(this.last);
+        for (int i = n - 2; i >= 0; i--) {
+            BitSet before = new BitSet();
+            for (int c = categories[i].nextSetBit(0); c >= 0; c = categories[i].nextSetBit(c + 1)) {
+                if (this.follow[c].intersects(categories[i + 1]))
+                    before.set(c);
+            }
+            categories[i] = before;
+        }
+
+        List<TokenMorph[]> result = new ArrayList<TokenMorph[]>(n);
+        for (int i = 0; i < n; i++) {
+            if (categories[i].isEmpty())
+                return kept;
+            List<TokenMorph> possible = new ArrayList<TokenMorph>();
+            for (TokenMorph reading : kept.get(i)) {
+                int id = this.idOf(reading);
+                if (id != SymbolTable.UNKNOWN && categories[i].get(id))
+                    possible.add(reading);
+            }
+            result.add(possible.toArray(new TokenMorph[possible.size()]));
+        }
+        return result;
+    }
+
+    private int idOf(TokenMorph reading) {
+        return reading.getType() == null ? SymbolTable.UNKNOWN : this.symbols.getId(reading.getType());
+    }
+
+    /**
+     * @return terminals that can come right after any of the given ones
+     */
+    private BitSet after(BitSet categories) {
+        BitSet result = new BitSet();
+        for (int c = categories.nextSetBit(0); c >= 0; c = categories.nextSetBit(c + 1)) {
+            result.or(this.follow[c]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+package br.usp.language.syntax.filter;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import br.usp.language.morph.MorphologicAnalyser;
+import br.usp.language.morph.TokenMorph;
+
+/**
+ * Morphological analyser that gives the readings of another one, but only the ones chosen by the subclass for the
+ * whole sentence. Put between the MorphologicAnalyser and the SyntacticAnalyser, it cuts the possibilities that
+ * analyse2 has to try, whose number is the product of the numbers of readings of the words.
+ *
+ * Since the whole sentence is needed, it is read from the other analyser when the first word is asked for; the
+ * sentence ends where the other analyser has no more tokens. The next sentence is read after hasMoreTokens has
+ * answered false.
+ *
+ * @author Marcelo Li Koga
+ */
+public abstract class SentenceFilter implements MorphologicAnalyser {
+
+    private final MorphologicAnalyser analyser;
+
+    /** Readings kept of the words of the sentence; null before the sentence is read */
+    private List<TokenMorph[]> sentence;
+
+    private int next;
+
+    private long pruned;
+
+    /**
+     * @param analyser gives the readings of the words
+     */
+    protected SentenceFilter(MorphologicAnalyser analyser) {
+        this.analyser = analyser;
+    }
+
+    public void setInput(Reader reader) {
+        this.analyser.setInput(reader);
+        this.sentence = null;
+    }
+
+    public boolean hasMoreTokens() {
+        this.readSentence();
+        if (this.next < this.sentence.size())
+            return true;
+        // The next call reads the next sentence
+        this.sentence = null;
+        return false;
+    }
+
+    public TokenMorph lookNextToken() {
+        this.readSentence();
+        if (this.next >= this.sentence.size())
+            return this.analyser.lookNextToken();
+        return this.sentence.get(this.next)[0];
+    }
+
+    public TokenMorph getNextToken() {
+        return this.getNextTokens()[0];
+    }
+
+    public TokenMorph[] getNextTokens() {
+        this.readSentence();
+        if (this.next >= this.sentence.size())
+            return this.analyser.getNextTokens();
+        return this.sentence.get(this.next++);
+    }
+
+    /**
+     * @return number of readings left out so far
+     */
+    public long getPrunedCount() {
+        return this.pruned;
+    }
+
+    private void readSentence() {
+        if (this.sentence != null)
+            return;
+        List<TokenMorph[]> words = new ArrayList<TokenMorph[]>();
+        while (this.analyser.hasMoreTokens()) {
+            words.add(this.analyser.getNextTokens());
+        }
+        this.sentence = this.filter(words);
+        this.next = 0;
+    }
+
+    /**
+     * Chooses the readings of a sentence, counting the ones left out
+     *
+     * @param words readings of each word of a sentence
+     * @return the readings kept of each word
+     */
+    public List<TokenMorph[]> filter(List<TokenMorph[]> words) {
+        List<TokenMorph[]> kept = this.select(words);
+        for (int i = 0; i < words.size(); i++) {
+            this.pruned += words.get(i).length - kept.get(i).length;
+        }
+        return kept;
+    }
+
+    /**
+     * @param words readings of each word of a sentence, which must not be changed
+     * @return the readings kept of each word, a subset of its readings
+     */
+    protected abstract List<TokenMorph[]> select(List<TokenMorph[]> words);
+}
@@ -0,0 +1,193 @@
+package br.usp.language.syntax.forest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+
+/**
+ * Earley parser, building the forest while it recognises the sentence (Scott's algorithm). Left recursion and
+ * epsilon rules need no special treatment: the non-terminals completed without words at a position are kept, so the
+ * items that expect them later at the same position go on at once. The worst case is cubic in the number of words,
+ * and close to linear for unambiguous sentences.
+ *
+ * The readings of a word are the terminals it can be; an item that expects a terminal goes on with every word that
+ * has a reading with that category.
+ *
+ * @author Marcelo Li Koga
+ */
+public class EarleyParser implements ForestParser {
+
+    private final IndexedGrammar grammar;
+
+    public EarleyParser(IndexedGrammar grammar) {
+        this.grammar = grammar;
+    }
+
+    public IndexedGrammar getGrammar() {
+        return this.grammar;
+    }
+
+    public ParseForest parse(int[][] readings, TokenMorph[][] tokens) {
+        ForestBuilder builder = new ForestBuilder(this.grammar, readings, tokens);
+        new Run(builder).run();
+        int n = readings.length;
+        SymbolNode root = builder.findSymbol(this.grammar.getStart(), 0, n);
+        return new ParseForest(this.grammar, root, n, builder.size());
+    }
+
+    /**
+     * Earley item: a position of a rule, the word where the rule began and the forest of the rule so far
+     */
+    private static final class Item {
+
+        final int rule;
+        final int position;
+        final int origin;
+        final ForestNode node;
+
+        Item(int rule, int position, int origin, ForestNode node) {
+            this.rule = rule;
+            this.position = position;
+            this.origin = origin;
+            this.node = node;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((31 * this.rule + this.position) * 31 + this.origin) * 31 + System.identityHashCode(this.node);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Item))
+                return false;
+            Item other = (Item) obj;
+            return this.rule == other.rule && this.position == other.position && this.origin == other.origin
+                    && this.node == other.node;
+        }
+    }
+
+    /**
+     * State of one parse
+     */
+    private final class Run {
+
+        private final ForestBuilder builder;
+
+        /** Earley sets; only the items that expect a non-terminal or are complete */
+        private final List<Set<Item>> sets;
+
+        /** Items of each set that expect each non-terminal */
+        private final List<Map<Integer, List<Item>>> waiting;
+
+        Run(ForestBuilder builder) {
+            this.builder = builder;
+            int n = builder.length();
+            this.sets = new ArrayList<Set<Item>>(n + 1);
+            this.waiting = new ArrayList<Map<Integer, List<Item>>>(n + 1);
+            for (int i = 0; i <= n; i++) {
+                this.sets.add(new HashSet<Item>());
+                this.waiting.add(new HashMap<Integer, List<Item>>());
+            }
+        }
+
+        void run() {
+            int n = this.builder.length();
+            LinkedList<Item> scan = new LinkedList<Item>();
+            LinkedList<Item> nextScan = new LinkedList<Item>();
+            LinkedList<Item> pending = new LinkedList<Item>();
+            for (int rule : grammar.getRulesOf(grammar.getStart())) {
+                this.add(new Item(rule, 0, 0, null), 0, pending, nextScan);
+            }
+
+            for (int i = 0; i <= n; i++) {
+                LinkedList<Item> aux = scan;
+                scan = nextScan;
+                nextScan = aux;
+                nextScan.clear();
+                // Non-terminals completed without words at i
+                Map<Integer, ForestNode> empty = new HashMap<Integer, ForestNode>();
+
+                while (!pending.isEmpty()) {
+                    Item item = pending.removeFirst();
+                    int[] right = grammar.getRight(item.rule);
+                    if (item.position < right.length) {
+                        // Predictor
+                        int called = right[item.position];
+                        for (int rule : grammar.getRulesOf(called)) {
+                            this.add(new Item(rule, 0, i, null), i, pending, scan);
+                        }
+                        ForestNode done = empty.get(called);
+                        if (done != null) {
+                            this.advance(item, done, i, pending, scan);
+                        }
+                    } else {
+                        // Completer
+                        ForestNode node = item.node;
+                        if (node == null)
+                            node = this.builder.extend(item.rule, 0, null, this.builder.epsilon(i));
+                        int generator = grammar.getLeft(item.rule);
+                        if (item.origin == i)
+                            empty.put(generator, node);
+                        List<Item> callers = this.waiting.get(item.origin).get(generator);
+                        if (callers != null) {
+                            for (int k = 0; k < callers.size(); k++) {
+                                this.advance(callers.get(k), node, i, pending, scan);
+                            }
+                        }
+                    }
+                }
+
+                // Scanner
+                if (i < n) {
+                    LinkedList<Item> nextPending = new LinkedList<Item>();
+                    while (!scan.isEmpty()) {
+                        Item item = scan.removeFirst();
+                        int terminal = grammar.getRight(item.rule)[item.position];
+                        this.advance(item, this.builder.terminal(terminal, i), i + 1, nextPending, nextScan);
+                    }
+                    pending = nextPending;
+                }
+            }
+        }
+
+        /**
+         * Moves an item over the product just recognised
+         */
+        private void advance(Item item, ForestNode recognised, int word, List<Item> pending, List<Item> scan) {
+            ForestNode node = this.builder.extend(item.rule, item.position + 1, item.node, recognised);
+            this.add(new Item(item.rule, item.position + 1, item.origin, node), word, pending, scan);
+        }
+
+        /**
+         * Adds an item to the set of a word, or to the items to be scanned if it expects a terminal that the word
+         * can be.
+         */
+        private void add(Item item, int word, List<Item> pending, List<Item> scan) {
+            int[] right = grammar.getRight(item.rule);
+            if (item.position < right.length && !grammar.isNonTerminal(right[item.position])) {
+                if (this.builder.reading(right[item.position], word) >= 0)
+                    scan.add(item);
+                return;
+            }
+            if (this.sets.get(word).add(item)) {
+                pending.add(item);
+                if (item.position < right.length) {
+                    List<Item> callers = this.waiting.get(word).get(right[item.position]);
+                    if (callers == null) {
+                        callers = new ArrayList<Item>();
+                        this.waiting.get(word).put(right[item.position], callers);
+                    }
+                    callers.add(item);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package br.usp.language.syntax.forest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import br.usp.language.automata.SymbolTable;
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+
+/**
+ * Creates the nodes of a forest for one input, making sure that there is only one node for each label and extent.
+ *
+ * @author Marcelo Li Koga
+ */
+class ForestBuilder {
+
+    private final IndexedGrammar grammar;
+
+    /** Categories of the readings of each word */
+    private final int[][] readings;
+
+    private final TokenMorph[][] tokens;
+
+    /** Symbol and intermediate nodes, by label and extent (see key) */
+    private final Map<Long, ForestNode> nodes = new HashMap<Long, ForestNode>();
+
+    private final SymbolNode[] epsilons;
+
+    /** Offset of the labels of the intermediate nodes, after the symbols */
+    private final int slotBase;
+
+    /** Each rule r has the positions 0..|r| starting at ruleBase[r] */
+    private final int[] ruleBase;
+
+    ForestBuilder(IndexedGrammar grammar, int[][] readings, TokenMorph[][] tokens) {
+        this.grammar = grammar;
+        this.readings = readings;
+        this.tokens = tokens;
+        this.epsilons = new SymbolNode[readings.length + 1];
+        this.slotBase = grammar.getSymbolCount() + 1;
+        this.ruleBase = new int[grammar.getRuleCount()];
+        int base = 0;
+        for (int r = 0; r < this.ruleBase.length; r++) {
+            this.ruleBase[r] = base;
+            base += grammar.getRight(r).length + 1;
+        }
+    }
+
+    /**
+     * @return id of a position (slot) of a rule, unique among all rules
+     */
+    int slot(int rule, int position) {
+        return this.ruleBase[rule] + position;
+    }
+
+    IndexedGrammar getGrammar() {
+        return this.grammar;
+    }
+
+    /**
+     * @return number of words of the input
+     */
+    int length() {
+        return this.readings.length;
+    }
+
+    /**
+     * @return index of the reading of the word that has the terminal as category; -1 if there is none
+     */
+    int reading(int terminal, int word) {
+        if (word >= this.readings.length)
+            return -1;
+        int[] symbols = this.readings[word];
+        for (int j = 0; j < symbols.length; j++) {
+            if (symbols[j] == terminal)
+                return j;
+        }
+        return -1;
+    }
+
+    int[] readings(int word) {
+        return this.readings[word];
+    }
+
+    private long key(int label, int left, int right) {
+        return ((long) label << 42) | ((long) left << 21) | right;
+    }
+
+    /**
+     * @return leaf of a terminal that matches the word
+     */
+    SymbolNode terminal(int terminal, int word) {
+        long key = this.key(terminal, word, word + 1);
+        SymbolNode node = (SymbolNode) this.nodes.get(key);
+        if (node == null) {
+            TokenMorph token = null;
+            int j = this.reading(terminal, word);
+            if (this.tokens != null && j >= 0)
+                token = this.tokens[word][j];
+            node = new SymbolNode(terminal, this.grammar.getName(terminal), true, token, word, word + 1);
+            this.nodes.put(key, node);
+        }
+        return node;
+    }
+
+    /**
+     * @return epsilon leaf at a position
+     */
+    SymbolNode epsilon(int position) {
+        if (this.epsilons[position] == null) {
+            this.epsilons[position] = new SymbolNode(SymbolTable.UNKNOWN, ContextFreeGrammar.EPSILON, false, null,
+                    position, position);
+        }
+        return this.epsilons[position];
+    }
+
+    /**
+     * @return node of a non-terminal
+     */
+    SymbolNode symbol(int nonTerminal, int left, int right) {
+        long key = this.key(nonTerminal, left, right);
+        SymbolNode node = (SymbolNode) this.nodes.get(key);
+        if (node == null) {
+            node = new SymbolNode(nonTerminal, this.grammar.getName(nonTerminal), false, null, left, right);
+            this.nodes.put(key, node);
+        }
+        return node;
+    }
+
+    /**
+     * @return existing node of a non-terminal; null if there is none
+     */
+    SymbolNode findSymbol(int nonTerminal, int left, int right) {
+        return (SymbolNode) this.nodes.get(this.key(nonTerminal, left, right));
+    }
+
+    /**
+     * @return node of the first position products of a rule
+     */
+    IntermediateNode intermediate(int rule, int position, int left, int right) {
+        long key = this.key(this.slotBase + this.slot(rule, position), left, right);
+        IntermediateNode node = (IntermediateNode) this.nodes.get(key);
+        if (node == null) {
+            node = new IntermediateNode(rule, position, this.grammar.getRule(rule).toString(), left, right);
+            this.nodes.put(key, node);
+        }
+        return node;
+    }
+
+    /**
+     * Node of a rule after recognising one more product (getNodeP of GLL). The prefix already recognised is
+     * leftNode, null if it is empty; rightNode is the product just recognised.
+     *
+     * @param rule
+     * @param position number of products recognised, rightNode included
+     * @return the node of the prefix, or of the generator if the rule is complete
+     */
+    ForestNode extend(int rule, int position, ForestNode leftNode, ForestNode rightNode) {
+        int[] right = this.grammar.getRight(rule);
+        boolean complete = position >= right.length;
+        // A prefix of only one symbol that cannot be empty needs no node of its own
+        if (!complete && position == 1 && leftNode == null && !this.grammar.isNullable(right[0]))
+            return rightNode;
+
+        int left = leftNode != null ? leftNode.getLeft() : rightNode.getLeft();
+        ForestNode node;
+        if (complete)
+            node = this.symbol(this.grammar.getLeft(rule), left, rightNode.getRight());
+        else
+            node = this.intermediate(rule, position, left, rightNode.getRight());
+        node.addPacked(rule, position, rightNode.getLeft(), leftNode, rightNode);
+        return node;
+    }
+
+    /**
+     * Number of nodes created, leaves included
+     */
+    int size() {
+        int epsilonCount = 0;
+        for (SymbolNode e : this.epsilons) {
+            if (e != null)
+                epsilonCount++;
+        }
+        return this.nodes.size() + epsilonCount;
+    }
+}
@@ -0,0 +1,88 @@
+package br.usp.language.syntax.forest;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strongly connected components of the nodes of a forest reachable from a root, where each node points to the
+ * children of its packed nodes. A component with more than one node, or a node that is its own child, is a cycle of
+ * derivations (rules such as A -> B, B -> A over the same words). The components are listed children first, so every
+ * component comes after the ones it reaches.
+ *
+ * @author Marcelo Li Koga
+ */
+final class ForestComponents {
+
+    private final Map<ForestNode, Integer> component = new IdentityHashMap<ForestNode, Integer>();
+
+    private final List<List<ForestNode>> components = new ArrayList<List<ForestNode>>();
+
+    private final List<Boolean> cyclic = new ArrayList<Boolean>();
+
+    /** Tarjan: order of discovery and lowest order reached of the nodes being visited */
+    private final Map<ForestNode, int[]> visiting = new IdentityHashMap<ForestNode, int[]>();
+
+    private final List<ForestNode> stack = new ArrayList<ForestNode>();
+
+    ForestComponents(ForestNode root) {
+        if (root != null)
+            this.visit(root);
+        this.visiting.clear();
+    }
+
+    private int visit(ForestNode node) {
+        int order = this.visiting.size();
+        int[] low = { order };
+        this.visiting.put(node, low);
+        this.stack.add(node);
+        boolean self = false;
+        for (PackedNode packed : node.getPackedNodes()) {
+            for (ForestNode child : new ForestNode[] { packed.getLeftChild(), packed.getRightChild() }) {
+                if (child == null || this.component.containsKey(child))
+                    continue;
+                self |= child == node;
+                int[] known = this.visiting.get(child);
+                low[0] = Math.min(low[0], known != null ? known[0] : this.visit(child));
+            }
+        }
+        if (low[0] == order) {
+            List<ForestNode> members = new ArrayList<ForestNode>();
+            ForestNode member;
+            do {
+                member = this.stack.remove(this.stack.size() - 1);
+                this.component.put(member, this.components.size());
+                members.add(member);
+            } while (member != node);
+            this.components.add(members);
+            this.cyclic.add(self || members.size() > 1);
+        }
+        return low[0];
+    }
+
+    /**
+     * @return component of a node reachable from the root
+     */
+    int getComponent(ForestNode node) {
+        return this.component.get(node);
+    }
+
+    /**
+     * @return number of components; ids go from 0, children first
+     */
+    int size() {
+        return this.components.size();
+    }
+
+    List<ForestNode> getMembers(int component) {
+        return this.components.get(component);
+    }
+
+    /**
+     * @return whether the nodes of the component can be derived from themselves
+     */
+    boolean isCyclic(int component) {
+        return this.cyclic.get(component);
+    }
+}
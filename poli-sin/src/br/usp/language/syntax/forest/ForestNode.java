@@ -0,0 +1,79 @@
+package br.usp.language.syntax.forest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Node of a shared packed parse forest (SPPF). A node covers the words from getLeft() (inclusive) to getRight()
+ * (exclusive) and has one packed node for each way it was derived; a node with more than one packed node is
+ * ambiguous.
+ *
+ * @author Marcelo Li Koga
+ * @see ParseForest
+ */
+public abstract class ForestNode {
+
+    private final int left;
+
+    private final int right;
+
+    private List<PackedNode> packedNodes;
+
+    ForestNode(int left, int right) {
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * @return position of the first word covered by the node
+     */
+    public int getLeft() {
+        return this.left;
+    }
+
+    /**
+     * @return position after the last word covered by the node
+     */
+    public int getRight() {
+        return this.right;
+    }
+
+    /**
+     * @return the derivations of the node; empty for leaves
+     */
+    public List<PackedNode> getPackedNodes() {
+        if (this.packedNodes == null)
+            return Collections.emptyList();
+        return Collections.unmodifiableList(this.packedNodes);
+    }
+
+    public boolean isAmbiguous() {
+        return this.packedNodes != null && this.packedNodes.size() > 1;
+    }
+
+    public abstract String getLabel();
+
+    /**
+     * Adds a derivation, unless there is one with the same rule, position and pivot.
+     *
+     * @return the packed node of the derivation
+     */
+    PackedNode addPacked(int rule, int position, int pivot, ForestNode leftChild, ForestNode rightChild) {
+        if (this.packedNodes == null) {
+            this.packedNodes = new ArrayList<PackedNode>(1);
+        }
+        for (PackedNode p : this.packedNodes) {
+            if (p.getRule() == rule && p.getPosition() == position && p.getPivot() == pivot)
+                return p;
+        }
+        PackedNode packed = new PackedNode(rule, position, pivot, leftChild, rightChild);
+        this.packedNodes.add(packed);
+        return packed;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + this.getLabel() + ", " + this.left + ", " + this.right + ")";
+    }
+}
@@ -0,0 +1,24 @@
+package br.usp.language.syntax.forest;
+
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+
+/**
+ * Parser that finds all analyses of a sentence at once and keeps them in a ParseForest. Implementations only read
+ * the grammar, so one parser can be used by many threads.
+ *
+ * @author Marcelo Li Koga
+ */
+public interface ForestParser {
+
+    IndexedGrammar getGrammar();
+
+    /**
+     * Parses a sentence.
+     *
+     * @param readings ids of the categories of the readings of each word
+     * @param tokens tokens of the readings, in the same positions; may be null
+     * @return all analyses of the sentence
+     */
+    ParseForest parse(int[][] readings, TokenMorph[][] tokens);
+}
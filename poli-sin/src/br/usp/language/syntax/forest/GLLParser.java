@@ -0,0 +1,235 @@
+package br.usp.language.syntax.forest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+
+/**
+ * Generalized LL (GLL) parser. All alternatives are followed at the same time: the calls of non-terminals are kept
+ * in a graph-structured stack (GSS), shared by the alternatives that called the same non-terminal at the same word,
+ * and the analyses are kept in a shared packed parse forest. Every word is read once for each position of a rule
+ * that expects it, whatever the number of its readings, so the worst case is polynomial (cubic) in the number of
+ * words, and any context free grammar can be used, including left recursive and ambiguous ones.
+ *
+ * The parser only reads the grammar, so one parser can be used by many threads.
+ *
+ * @author Marcelo Li Koga
+ */
+public class GLLParser implements ForestParser {
+
+    private final IndexedGrammar grammar;
+
+    public GLLParser(IndexedGrammar grammar) {
+        this.grammar = grammar;
+    }
+
+    public IndexedGrammar getGrammar() {
+        return this.grammar;
+    }
+
+    public ParseForest parse(int[][] readings, TokenMorph[][] tokens) {
+        ForestBuilder builder = new ForestBuilder(this.grammar, readings, tokens);
+        new Run(builder).run();
+        int n = readings.length;
+        SymbolNode root = builder.findSymbol(this.grammar.getStart(), 0, n);
+        return new ParseForest(this.grammar, root, n, builder.size());
+    }
+
+    /**
+     * Node of the GSS: a non-terminal called from a position of a rule at a word. Returns go back to the position
+     * after the call.
+     */
+    private static final class GssNode {
+
+        /** Rule and position where the parsing goes on when the called non-terminal returns */
+        final int rule;
+        final int position;
+
+        /** Word where the non-terminal was called */
+        final int word;
+
+        /** Callers, and the forest of the caller's rule before the call */
+        final List<GssNode> callers = new ArrayList<GssNode>(2);
+        final List<ForestNode> before = new ArrayList<ForestNode>(2);
+
+        /** Forests of the returns already made */
+        final List<ForestNode> returns = new ArrayList<ForestNode>(2);
+
+        GssNode(int rule, int position, int word) {
+            this.rule = rule;
+            this.position = position;
+            this.word = word;
+        }
+
+        boolean hasEdge(GssNode caller, ForestNode node) {
+            for (int i = 0; i < this.callers.size(); i++) {
+                if (this.callers.get(i) == caller && this.before.get(i) == node)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A process to be run: parse from a position of a rule at a word, with the forest of the rule so far
+     */
+    private static final class Descriptor {
+
+        final int rule;
+        final int position;
+        final GssNode caller;
+        final int word;
+        final ForestNode node;
+
+        Descriptor(int rule, int position, GssNode caller, int word, ForestNode node) {
+            this.rule = rule;
+            this.position = position;
+            this.caller = caller;
+            this.word = word;
+            this.node = node;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * (31 * this.rule + this.position) + System.identityHashCode(this.caller)) * 31
+                    + System.identityHashCode(this.node);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Descriptor))
+                return false;
+            Descriptor other = (Descriptor) obj;
+            return this.rule == other.rule && this.position == other.position && this.caller == other.caller
+                    && this.node == other.node && this.word == other.word;
+        }
+    }
+
+    /**
+     * State of one parse
+     */
+    private final class Run {
+
+        private final ForestBuilder builder;
+
+        private final Deque<Descriptor> pending = new ArrayDeque<Descriptor>();
+
+        /** Descriptors already added, by word */
+        private final List<Set<Descriptor>> added;
+
+        private final Map<Long, GssNode> gss = new HashMap<Long, GssNode>();
+
+        private final GssNode root;
+
+        Run(ForestBuilder builder) {
+            this.builder = builder;
+            this.added = new ArrayList<Set<Descriptor>>(builder.length() + 1);
+            for (int i = 0; i <= builder.length(); i++) {
+                this.added.add(new HashSet<Descriptor>());
+            }
+            this.root = new GssNode(-1, 0, 0);
+        }
+
+        void run() {
+            for (int rule : grammar.getRulesOf(grammar.getStart())) {
+                if (this.test(rule, 0))
+                    this.add(rule, 0, this.root, 0, null);
+            }
+            while (!this.pending.isEmpty()) {
+                this.process(this.pending.pop());
+            }
+        }
+
+        private void process(Descriptor d) {
+            int rule = d.rule;
+            int position = d.position;
+            GssNode caller = d.caller;
+            int word = d.word;
+            ForestNode node = d.node;
+            int[] right = grammar.getRight(rule);
+
+            if (right.length == 0) {
+                node = this.builder.extend(rule, 0, null, this.builder.epsilon(word));
+            }
+            while (position < right.length) {
+                int symbol = right[position];
+                if (grammar.isNonTerminal(symbol)) {
+                    GssNode called = this.create(rule, position + 1, caller, word, node);
+                    for (int r : grammar.getRulesOf(symbol)) {
+                        if (this.test(r, word))
+                            this.add(r, 0, called, word, null);
+                    }
+                    return;
+                }
+                if (this.builder.reading(symbol, word) < 0)
+                    return;
+                ForestNode leaf = this.builder.terminal(symbol, word);
+                position++;
+                word++;
+                node = this.builder.extend(rule, position, node, leaf);
+            }
+            this.pop(caller, word, node);
+        }
+
+        /**
+         * Whether a rule can begin at the word: the word has a reading in its FIRST set, or the rule may be empty
+         */
+        private boolean test(int rule, int word) {
+            if (grammar.isRuleNullable(rule))
+                return true;
+            if (word >= this.builder.length())
+                return false;
+            BitSet first = grammar.getRuleFirst(rule);
+            for (int symbol : this.builder.readings(word)) {
+                if (symbol >= 0 && first.get(symbol))
+                    return true;
+            }
+            return false;
+        }
+
+        private void add(int rule, int position, GssNode caller, int word, ForestNode node) {
+            Descriptor d = new Descriptor(rule, position, caller, word, node);
+            if (this.added.get(word).add(d))
+                this.pending.push(d);
+        }
+
+        private GssNode create(int rule, int position, GssNode caller, int word, ForestNode node) {
+            long key = ((long) this.builder.slot(rule, position) << 21) | word;
+            GssNode called = this.gss.get(key);
+            if (called == null) {
+                called = new GssNode(rule, position, word);
+                this.gss.put(key, called);
+            }
+            if (!called.hasEdge(caller, node)) {
+                called.callers.add(caller);
+                called.before.add(node);
+                // The non-terminal may have returned already
+                for (int i = 0; i < called.returns.size(); i++) {
+                    ForestNode returned = called.returns.get(i);
+                    ForestNode extended = this.builder.extend(rule, position, node, returned);
+                    this.add(rule, position, caller, returned.getRight(), extended);
+                }
+            }
+            return called;
+        }
+
+        private void pop(GssNode called, int word, ForestNode node) {
+            if (called == this.root || called.returns.contains(node))
+                return;
+            called.returns.add(node);
+            for (int i = 0; i < called.callers.size(); i++) {
+                ForestNode extended = this.builder.extend(called.rule, called.position, called.before.get(i), node);
+                this.add(called.rule, called.position, called.callers.get(i), word, extended);
+            }
+        }
+    }
+}
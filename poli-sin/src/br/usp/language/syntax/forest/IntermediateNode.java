@@ -0,0 +1,36 @@
+package br.usp.language.syntax.forest;
+
+/**
+ * Forest node of a prefix of a rule, which keeps the forest binarised: it stands for the first getPosition()
+ * products of the rule.
+ *
+ * @author Marcelo Li Koga
+ */
+public final class IntermediateNode extends ForestNode {
+
+    private final int rule;
+
+    private final int position;
+
+    private final String label;
+
+    IntermediateNode(int rule, int position, String label, int left, int right) {
+        super(left, right);
+        this.rule = rule;
+        this.position = position;
+        this.label = label;
+    }
+
+    public int getRule() {
+        return this.rule;
+    }
+
+    public int getPosition() {
+        return this.position;
+    }
+
+    @Override
+    public String getLabel() {
+        return this.label;
+    }
+}
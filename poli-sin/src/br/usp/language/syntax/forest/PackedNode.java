@@ -0,0 +1,64 @@
+package br.usp.language.syntax.forest;
+
+/**
+ * One derivation of a ForestNode. The forest is binarised: a derivation has at most two children, the left one
+ * being the prefix of the rule already recognised (an IntermediateNode, or null when empty) and the right one the
+ * last symbol recognised.
+ *
+ * @author Marcelo Li Koga
+ */
+public final class PackedNode {
+
+    private final int rule;
+
+    private final int position;
+
+    private final int pivot;
+
+    private final ForestNode leftChild;
+
+    private final ForestNode rightChild;
+
+    PackedNode(int rule, int position, int pivot, ForestNode leftChild, ForestNode rightChild) {
+        this.rule = rule;
+        this.position = position;
+        this.pivot = pivot;
+        this.leftChild = leftChild;
+        this.rightChild = rightChild;
+    }
+
+    /**
+     * @return index of the rule in the IndexedGrammar
+     */
+    public int getRule() {
+        return this.rule;
+    }
+
+    /**
+     * @return number of products of the rule recognised by this derivation
+     */
+    public int getPosition() {
+        return this.position;
+    }
+
+    /**
+     * @return position of the word where the right child begins
+     */
+    public int getPivot() {
+        return this.pivot;
+    }
+
+    /**
+     * @return the prefix of the rule before the right child; null if it is empty
+     */
+    public ForestNode getLeftChild() {
+        return this.leftChild;
+    }
+
+    /**
+     * @return the last symbol recognised; null for epsilon rules
+     */
+    public ForestNode getRightChild() {
+        return this.rightChild;
+    }
+}
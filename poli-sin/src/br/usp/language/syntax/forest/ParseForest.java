@@ -0,0 +1,262 @@
+package br.usp.language.syntax.forest;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.tree.SyntaxTree;
+import br.usp.language.syntax.tree.SyntaxTreeNode;
+
+/**
+ * Result of a generalized parser: all analyses of a sentence, sharing their common subtrees in a shared packed
+ * parse forest. The root is the node of the start symbol over the whole sentence; it is null if the sentence has no
+ * analysis. The forest grows with the size of the grammar and the sentence, not with the number of analyses: the
+ * trees can be counted, and built one at a time, without being enumerated.
+ *
+ * @author Marcelo Li Koga
+ */
+public class ParseForest implements Iterable<SyntaxTree> {
+
+    private final IndexedGrammar grammar;
+
+    private final SymbolNode root;
+
+    private final int length;
+
+    private final int size;
+
+    /** Number of trees of each node, when no other node of its cycle is being derived; computed when first needed */
+    private Map<ForestNode, BigInteger> counts;
+
+    private ForestComponents components;
+
+    private BigInteger total;
+
+    ParseForest(IndexedGrammar grammar, SymbolNode root, int length, int size) {
+        this.grammar = grammar;
+        this.root = root;
+        this.length = length;
+        this.size = size;
+    }
+
+    public IndexedGrammar getGrammar() {
+        return this.grammar;
+    }
+
+    /**
+     * @return node of the start symbol over the whole sentence; null if there is no analysis
+     */
+    public SymbolNode getRoot() {
+        return this.root;
+    }
+
+    /**
+     * @return whether the sentence has at least one analysis
+     */
+    public boolean isAccepted() {
+        return this.root != null;
+    }
+
+    /**
+     * @return number of words of the sentence
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * @return number of nodes created by the parser, including the ones that are not part of an analysis
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Builds the tree of the first analysis (the first derivation of each node), in the same form as the trees of
+     * the SyntacticAnalyser: non-terminals without words are left out.
+     *
+     * @return the tree; null if there is no analysis
+     */
+    public SyntaxTree toTree() {
+        if (this.countTrees().signum() == 0)
+            return null;
+        return this.getTree(BigInteger.ZERO);
+    }
+
+    /**
+     * Counts the analyses of the sentence without building them, in time proportional to the size of the forest
+     * (more for the nodes of cycles). Derivations that go back to a node being derived (cycles of rules such as
+     * A -> B, B -> A) are not counted, so the count is always finite.
+     *
+     * @return number of trees; 0 if there is no analysis
+     */
+    public synchronized BigInteger countTrees() {
+        if (this.root == null)
+            return BigInteger.ZERO;
+        if (this.total == null) {
+            this.counts = new IdentityHashMap<ForestNode, BigInteger>();
+            this.components = new ForestComponents(this.root);
+            this.total = this.count(this.root, new Path());
+        }
+        return this.total;
+    }
+
+    /**
+     * Builds one tree of the forest. Trees are numbered in the order of the derivations of the nodes, from 0 (the
+     * same as toTree) to countTrees() - 1.
+     *
+     * @param index number of the tree
+     * @return the tree
+     * @throws IndexOutOfBoundsException if there is no tree with that number
+     */
+    public synchronized SyntaxTree getTree(BigInteger index) {
+        if (index.signum() < 0 || index.compareTo(this.countTrees()) >= 0)
+            throw new IndexOutOfBoundsException("Tree " + index + " of " + this.countTrees());
+        return new SyntaxTree(this.build(this.root, index, new Path()));
+    }
+
+    /**
+     * Iterates over all trees, building each one only when it is asked for. Only the forest is kept in memory.
+     */
+    public Iterator<SyntaxTree> iterator() {
+        final BigInteger total = this.countTrees();
+        return new Iterator<SyntaxTree>() {
+
+            private BigInteger next = BigInteger.ZERO;
+
+            public boolean hasNext() {
+                return this.next.compareTo(total) < 0;
+            }
+
+            public SyntaxTree next() {
+                if (!this.hasNext())
+                    throw new NoSuchElementException();
+                SyntaxTree tree = getTree(this.next);
+                this.next = this.next.add(BigInteger.ONE);
+                return tree;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Nodes being derived, with how many of them are in each component of the forest
+     */
+    private final class Path {
+
+        private final Set<ForestNode> nodes = new HashSet<ForestNode>();
+
+        private final int[] inComponent = new int[components.size()];
+
+        boolean contains(ForestNode node) {
+            return this.nodes.contains(node);
+        }
+
+        /**
+         * @return whether no node of the cycle of the node is being derived, so its count does not depend on the path
+         */
+        boolean isEntry(ForestNode node) {
+            return this.inComponent[components.getComponent(node)] == 0;
+        }
+
+        void add(ForestNode node) {
+            this.nodes.add(node);
+            this.inComponent[components.getComponent(node)]++;
+        }
+
+        void remove(ForestNode node) {
+            this.nodes.remove(node);
+            this.inComponent[components.getComponent(node)]--;
+        }
+    }
+
+    /**
+     * Counts the trees of a node. A derivation that reaches a node of the path counts as 0, so the numbering of the
+     * trees never follows a cycle. Only the nodes of the cycle of a node can be in the path below it, so its count
+     * is kept when no other node of its cycle is in the path; inside a cycle the nodes are counted again for each
+     * path, which only costs more for the few nodes of the cycle.
+     */
+    private BigInteger count(ForestNode node, Path path) {
+        if (node == null || node.getPackedNodes().isEmpty())
+            return BigInteger.ONE;
+        if (path.contains(node))
+            return BigInteger.ZERO;
+        boolean entry = path.isEntry(node);
+        BigInteger total = entry ? this.counts.get(node) : null;
+        if (total != null)
+            return total;
+        path.add(node);
+        total = BigInteger.ZERO;
+        for (PackedNode packed : node.getPackedNodes()) {
+            total = total.add(this.count(packed, path));
+        }
+        path.remove(node);
+        if (entry)
+            this.counts.put(node, total);
+        return total;
+    }
+
+    /**
+     * Counts the trees of a derivation, whose node is in the path
+     */
+    private BigInteger count(PackedNode packed, Path path) {
+        return this.count(packed.getLeftChild(), path).multiply(this.count(packed.getRightChild(), path));
+    }
+
+    /**
+     * Builds the tree with the given number of a symbol node
+     *
+     * @param path nodes being built, as they were when the trees were counted
+     */
+    private SyntaxTreeNode build(SymbolNode node, BigInteger index, Path path) {
+        if (node.isTerminal())
+            return new SyntaxTreeNode(node.getLabel(), node.getToken());
+        SyntaxTreeNode result = new SyntaxTreeNode(node.getLabel());
+        this.expand(node, index, result, path);
+        return result;
+    }
+
+    /**
+     * Adds the trees of the symbols of the derivation with the given number of a node, expanding its intermediate
+     * nodes
+     */
+    private void expand(ForestNode node, BigInteger index, SyntaxTreeNode result, Path path) {
+        path.add(node);
+        for (PackedNode packed : node.getPackedNodes()) {
+            BigInteger count = this.count(packed, path);
+            if (index.compareTo(count) >= 0) {
+                index = index.subtract(count);
+                continue;
+            }
+            BigInteger[] split = index.divideAndRemainder(this.count(packed.getRightChild(), path));
+            ForestNode left = packed.getLeftChild();
+            if (left instanceof IntermediateNode) {
+                this.expand(left, split[0], result, path);
+            } else if (left != null) {
+                this.addChild(result, (SymbolNode) left, split[0], path);
+            }
+            if (packed.getRightChild() != null)
+                this.addChild(result, (SymbolNode) packed.getRightChild(), split[1], path);
+            path.remove(node);
+            return;
+        }
+        throw new IllegalStateException("No derivation " + index + " of " + node);
+    }
+
+    private void addChild(SyntaxTreeNode result, SymbolNode child, BigInteger index, Path path) {
+        if (child.isEpsilon())
+            return;
+        SyntaxTreeNode childNode = this.build(child, index, path);
+        // Non-terminals without words are left out
+        if (child.isTerminal() || childNode.getNumberOfChildren() > 0)
+            result.addChild(childNode);
+    }
+}
@@ -0,0 +1,56 @@
+package br.usp.language.syntax.forest;
+
+import br.usp.language.automata.SymbolTable;
+import br.usp.language.morph.TokenMorph;
+
+/**
+ * Forest node of a grammar symbol: a non-terminal with its derivations, or a terminal leaf with the token of the
+ * word it covers. Epsilon leaves have no symbol.
+ *
+ * @author Marcelo Li Koga
+ */
+public final class SymbolNode extends ForestNode {
+
+    private final int symbol;
+
+    private final String name;
+
+    private final boolean terminal;
+
+    private final TokenMorph token;
+
+    SymbolNode(int symbol, String name, boolean terminal, TokenMorph token, int left, int right) {
+        super(left, right);
+        this.symbol = symbol;
+        this.name = name;
+        this.terminal = terminal;
+        this.token = token;
+    }
+
+    /**
+     * @return id of the symbol in the SymbolTable of the grammar
+     */
+    public int getSymbol() {
+        return this.symbol;
+    }
+
+    @Override
+    public String getLabel() {
+        return this.name;
+    }
+
+    public boolean isTerminal() {
+        return this.terminal;
+    }
+
+    public boolean isEpsilon() {
+        return this.symbol == SymbolTable.UNKNOWN;
+    }
+
+    /**
+     * @return token of the word covered by a terminal; null for the other nodes
+     */
+    public TokenMorph getToken() {
+        return this.token;
+    }
+}
@@ -0,0 +1,250 @@
+package br.usp.language.syntax.forest;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.tree.SyntaxTree;
+import br.usp.language.syntax.tree.SyntaxTreeNode;
+
+/**
+ * Finds the most probable analysis of a sentence. The sentence is parsed into a ParseForest by a ForestParser, and
+ * the best derivation of each node is found once, bottom-up (Viterbi), so no analysis is enumerated. The probability
+ * of a tree is the product of the probabilities of its rules (IndexedGrammar.getProbability) and of the weights of
+ * the readings of its words.
+ *
+ * Probabilities are kept as logarithms. The nodes are scored by strongly connected components, children first; the
+ * nodes of a cycle (rules such as A -> B, B -> A) are scored again until none of them improves. A derivation that
+ * goes back to a node being derived never raises the probability of a tree, so the best trees have no cycles.
+ *
+ * @author Marcelo Li Koga
+ */
+public class ViterbiParser {
+
+    private final ForestParser parser;
+
+    /** Logarithm of the probability of each rule */
+    private final double[] ruleScores;
+
+    /** Most probable analysis and its probability */
+    public static final class Result {
+
+        private final SyntaxTree tree;
+
+        private final double logProbability;
+
+        private final ParseForest forest;
+
+        Result(SyntaxTree tree, double logProbability, ParseForest forest) {
+            this.tree = tree;
+            this.logProbability = logProbability;
+            this.forest = forest;
+        }
+
+        public boolean isAccepted() {
+            return this.tree != null;
+        }
+
+        /**
+         * @return most probable tree; null if the sentence has no analysis
+         */
+        public SyntaxTree getTree() {
+            return this.tree;
+        }
+
+        /**
+         * @return natural logarithm of the probability of the tree; negative infinity if there is no tree
+         */
+        public double getLogProbability() {
+            return this.logProbability;
+        }
+
+        /**
+         * @return all analyses of the sentence
+         */
+        public ParseForest getForest() {
+            return this.forest;
+        }
+    }
+
+    public ViterbiParser(ForestParser parser) {
+        this.parser = parser;
+        IndexedGrammar grammar = parser.getGrammar();
+        this.ruleScores = new double[grammar.getRuleCount()];
+        for (int r = 0; r < this.ruleScores.length; r++) {
+            this.ruleScores[r] = Math.log(grammar.getProbability(r));
+        }
+    }
+
+    public ForestParser getParser() {
+        return this.parser;
+    }
+
+    public IndexedGrammar getGrammar() {
+        return this.parser.getGrammar();
+    }
+
+    /**
+     * @param readings ids of the categories of the readings of each word
+     * @param tokens tokens of the readings, in the same positions; may be null
+     * @param weights logarithm of the weight of each reading, in the same positions (see ReadingScorer); null gives
+     *            the same weight to all readings
+     * @return the most probable analysis
+     */
+    public Result parse(int[][] readings, TokenMorph[][] tokens, double[][] weights) {
+        ParseForest forest = this.parser.parse(readings, tokens);
+        if (!forest.isAccepted())
+            return new Result(null, Double.NEGATIVE_INFINITY, forest);
+        Search search = new Search(readings, tokens, weights);
+        double score = search.best(forest.getRoot());
+        if (score == Double.NEGATIVE_INFINITY)
+            return new Result(null, score, forest);
+        return new Result(new SyntaxTree(search.build(forest.getRoot())), score, forest);
+    }
+
+    /**
+     * Best derivations of the nodes of one forest
+     */
+    private final class Search {
+
+        private final int[][] readings;
+
+        private final TokenMorph[][] tokens;
+
+        private final double[][] weights;
+
+        /** Score of the best derivation of each node found so far */
+        private final Map<ForestNode, Double> scores = new IdentityHashMap<ForestNode, Double>();
+
+        /** Best derivation of each node; reading chosen for each terminal */
+        private final Map<ForestNode, Object> choices = new IdentityHashMap<ForestNode, Object>();
+
+        Search(int[][] readings, TokenMorph[][] tokens, double[][] weights) {
+            this.readings = readings;
+            this.tokens = tokens;
+            this.weights = weights;
+        }
+
+        /**
+         * Scores the nodes reachable from the root, each component after the ones it reaches
+         *
+         * @return score of the best derivation of the root
+         */
+        double best(ForestNode root) {
+            ForestComponents components = new ForestComponents(root);
+            for (int c = 0; c < components.size(); c++) {
+                List<ForestNode> members = components.getMembers(c);
+                for (ForestNode node : members) {
+                    this.scores.put(node, Double.NEGATIVE_INFINITY);
+                }
+                boolean improved;
+                do {
+                    improved = false;
+                    for (ForestNode node : members) {
+                        improved |= this.improve(node);
+                    }
+                } while (improved && components.isCyclic(c));
+            }
+            return this.scores.get(root);
+        }
+
+        /**
+         * Chooses the best derivation of a node with the current scores of its children; a derivation only replaces
+         * a worse one, so the chosen derivations never form a cycle
+         *
+         * @return whether the score of the node went up
+         */
+        private boolean improve(ForestNode node) {
+            if (node instanceof SymbolNode && ((SymbolNode) node).isTerminal()) {
+                this.bestReading((SymbolNode) node);
+                return false;
+            }
+            if (node.getPackedNodes().isEmpty()) {
+                this.scores.put(node, 0.0);
+                return false;
+            }
+            double best = this.scores.get(node);
+            PackedNode choice = null;
+            for (PackedNode packed : node.getPackedNodes()) {
+                double score = node instanceof SymbolNode ? ruleScores[packed.getRule()] : 0;
+                if (packed.getLeftChild() != null)
+                    score += this.scores.get(packed.getLeftChild());
+                if (packed.getRightChild() != null)
+                    score += this.scores.get(packed.getRightChild());
+                if (score > best) {
+                    best = score;
+                    choice = packed;
+                }
+            }
+            if (choice == null)
+                return false;
+            this.scores.put(node, best);
+            this.choices.put(node, choice);
+            return true;
+        }
+
+        /**
+         * Chooses the reading with the highest weight among the ones of the word with the category of the leaf
+         */
+        private void bestReading(SymbolNode leaf) {
+            int word = leaf.getLeft();
+            int choice = -1;
+            double best = Double.NEGATIVE_INFINITY;
+            for (int j = 0; j < this.readings[word].length; j++) {
+                if (this.readings[word][j] != leaf.getSymbol())
+                    continue;
+                double weight = this.weights == null ? 0 : this.weights[word][j];
+                if (choice < 0 || weight > best) {
+                    best = weight;
+                    choice = j;
+                }
+            }
+            this.scores.put(leaf, best);
+            this.choices.put(leaf, choice);
+        }
+
+        /**
+         * Builds the tree of the best derivation of a symbol node, in the same form as ParseForest.toTree
+         */
+        SyntaxTreeNode build(SymbolNode node) {
+            if (node.isTerminal()) {
+                Integer j = (Integer) this.choices.get(node);
+                TokenMorph token = node.getToken();
+                if (this.tokens != null && j != null && j >= 0)
+                    token = this.tokens[node.getLeft()][j];
+                return new SyntaxTreeNode(node.getLabel(), token);
+            }
+            List<SymbolNode> children = new ArrayList<SymbolNode>();
+            this.collect(node, children);
+            SyntaxTreeNode result = new SyntaxTreeNode(node.getLabel());
+            for (SymbolNode child : children) {
+                if (child.isEpsilon())
+                    continue;
+                SyntaxTreeNode childNode = this.build(child);
+                // Non-terminals without words are left out
+                if (child.isTerminal() || childNode.getNumberOfChildren() > 0)
+                    result.addChild(childNode);
+            }
+            return result;
+        }
+
+        /**
+         * Lists the symbols of the best derivation of a node, expanding its intermediate nodes
+         */
+        private void collect(ForestNode node, List<SymbolNode> children) {
+            PackedNode packed = (PackedNode) this.choices.get(node);
+            if (packed == null)
+                return;
+            ForestNode left = packed.getLeftChild();
+            if (left instanceof IntermediateNode)
+                this.collect(left, children);
+            else if (left != null)
+                children.add((SymbolNode) left);
+            if (packed.getRightChild() != null)
+                children.add((SymbolNode) packed.getRightChild());
+        }
+    }
+}
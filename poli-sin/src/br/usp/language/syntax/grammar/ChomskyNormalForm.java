@@ -0,0 +1,269 @@
+package br.usp.language.syntax.grammar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A ContextFreeGrammar rewritten in Chomsky normal form: every rule is A -> B + C, with two non-terminals, or
+ * A -> a, with one terminal. The conversion is the usual one:
+ * <ol>
+ * <li>terminals in rules with more than one product are replaced by auxiliary non-terminals with a single rule;</li>
+ * <li>rules with more than two products are broken into chains of auxiliary non-terminals;</li>
+ * <li>products that derive the empty sequence get rules with and without them, and the epsilon rules are removed;</li>
+ * <li>unit rules A -> B are replaced by the rules of B, remembering the chain of non-terminals left out.</li>
+ * </ol>
+ *
+ * The new non-terminals are auxiliary (see NonTerminal.isAuxiliary), so a tree of the original grammar is found
+ * again by replacing the auxiliary nodes by their children and putting back the chain of each rule (see getChain).
+ * Non-terminals that derive no words are not put back, as in the trees of the SyntacticAnalyser.
+ *
+ * @author Marcelo Li Koga
+ */
+public final class ChomskyNormalForm {
+
+    private final ContextFreeGrammar original;
+
+    private final ContextFreeGrammar grammar = new ContextFreeGrammar();
+
+    /** Non-terminals left out by the unit rules replaced by each rule, outermost first */
+    private final Map<ProductionRule, List<NonTerminal>> chains = new IdentityHashMap<ProductionRule, List<NonTerminal>>();
+
+    /** Whether the start symbol derives the empty sequence, which has no rule in the normal form */
+    private boolean acceptsEmpty;
+
+    /** Rule being converted: generator, products and chain */
+    private static final class Rule {
+
+        final NonTerminal generator;
+        final List<ProductionElement> products;
+        final List<NonTerminal> chain;
+
+        Rule(NonTerminal generator, List<ProductionElement> products, List<NonTerminal> chain) {
+            this.generator = generator;
+            this.products = products;
+            this.chain = chain;
+        }
+
+        boolean isUnit() {
+            return this.products.size() == 1 && this.products.get(0).getType() == ProductionElement.NONTERMINAL;
+        }
+
+        String key() {
+            return this.generator.getName() + " -> " + this.products + " " + this.chain;
+        }
+    }
+
+    public ChomskyNormalForm(ContextFreeGrammar original) {
+        this.original = original;
+        for (Terminal t : original.getTerminals()) {
+            this.grammar.addTerminal(t);
+        }
+        for (NonTerminal nt : original.getNonTerminals()) {
+            this.grammar.addNonTerminal(nt);
+        }
+        this.grammar.setStartSymbol(original.getStartSymbol());
+
+        List<Rule> rules = this.binarize();
+        rules = this.removeEpsilons(rules);
+        rules = this.removeUnits(rules);
+        for (Rule r : rules) {
+            ProductionRule rule = new ProductionRule(r.generator);
+            for (ProductionElement e : r.products) {
+                rule.add(e);
+            }
+            this.grammar.addRule(rule);
+            if (!r.chain.isEmpty())
+                this.chains.put(rule, Collections.unmodifiableList(r.chain));
+        }
+    }
+
+    /**
+     * Replaces the terminals of long rules and breaks the rules with more than two products
+     */
+    private List<Rule> binarize() {
+        List<Rule> result = new ArrayList<Rule>();
+        Map<String, NonTerminal> wrappers = new HashMap<String, NonTerminal>();
+        int count = 0;
+        for (ProductionRule rule : this.original.getRules()) {
+            List<ProductionElement> products = new ArrayList<ProductionElement>();
+            for (ProductionElement e : rule.getProducts()) {
+                if (e.getType() != ProductionElement.EPSILON)
+                    products.add(e);
+            }
+            if (products.size() > 1) {
+                for (int i = 0; i < products.size(); i++) {
+                    ProductionElement e = products.get(i);
+                    if (e.getType() != ProductionElement.TERMINAL)
+                        continue;
+                    NonTerminal wrapper = wrappers.get(e.getName());
+                    if (wrapper == null) {
+                        wrapper = this.newNonTerminal("<" + e.getName() + ">");
+                        wrappers.put(e.getName(), wrapper);
+                        result.add(new Rule(wrapper, Collections.singletonList(e), new ArrayList<NonTerminal>()));
+                    }
+                    products.set(i, wrapper);
+                }
+            }
+            NonTerminal generator = rule.getGenerator();
+            while (products.size() > 2) {
+                NonTerminal rest = this.newNonTerminal(rule.getGenerator().getName() + "'" + (++count));
+                List<ProductionElement> pair = new ArrayList<ProductionElement>(2);
+                pair.add(products.get(0));
+                pair.add(rest);
+                result.add(new Rule(generator, pair, new ArrayList<NonTerminal>()));
+                generator = rest;
+                products = products.subList(1, products.size());
+            }
+            result.add(new Rule(generator, new ArrayList<ProductionElement>(products), new ArrayList<NonTerminal>()));
+        }
+        return result;
+    }
+
+    /**
+     * Adds the rules without the products that derive the empty sequence, and removes the epsilon rules
+     */
+    private List<Rule> removeEpsilons(List<Rule> rules) {
+        Set<String> nullable = new HashSet<String>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Rule r : rules) {
+                if (nullable.contains(r.generator.getName()))
+                    continue;
+                boolean all = true;
+                for (ProductionElement e : r.products) {
+                    all &= e.getType() == ProductionElement.NONTERMINAL && nullable.contains(e.getName());
+                }
+                if (all) {
+                    nullable.add(r.generator.getName());
+                    changed = true;
+                }
+            }
+        }
+        this.acceptsEmpty = nullable.contains(this.original.getStartSymbol().getName());
+
+        Map<String, Rule> result = new LinkedHashMap<String, Rule>();
+        for (Rule r : rules) {
+            this.addRule(result, r.generator, r.products);
+            if (r.products.size() == 2) {
+                for (int i = 0; i < 2; i++) {
+                    if (nullable.contains(r.products.get(i).getName())
+                            && r.products.get(i).getType() == ProductionElement.NONTERMINAL)
+                        this.addRule(result, r.generator, r.products.subList(1 - i, 2 - i));
+                }
+            }
+        }
+        return new ArrayList<Rule>(result.values());
+    }
+
+    /**
+     * Replaces each unit rule A -> B by the rules of B (and of the non-terminals reached from B by unit rules)
+     */
+    private List<Rule> removeUnits(List<Rule> rules) {
+        Map<String, List<Rule>> rulesOf = new HashMap<String, List<Rule>>();
+        for (Rule r : rules) {
+            List<Rule> list = rulesOf.get(r.generator.getName());
+            if (list == null) {
+                list = new ArrayList<Rule>();
+                rulesOf.put(r.generator.getName(), list);
+            }
+            list.add(r);
+        }
+
+        Map<String, Rule> result = new LinkedHashMap<String, Rule>();
+        for (Rule r : rules) {
+            if (!r.isUnit())
+                result.put(r.key(), r);
+        }
+        for (NonTerminal a : this.grammar.getNonTerminals()) {
+            // Breadth first, so each non-terminal is reached by its shortest chain
+            Map<String, List<NonTerminal>> reached = new HashMap<String, List<NonTerminal>>();
+            reached.put(a.getName(), new ArrayList<NonTerminal>());
+            LinkedList<NonTerminal> queue = new LinkedList<NonTerminal>();
+            queue.add(a);
+            while (!queue.isEmpty()) {
+                NonTerminal b = queue.removeFirst();
+                List<Rule> list = rulesOf.get(b.getName());
+                if (list == null)
+                    continue;
+                for (Rule r : list) {
+                    if (!r.isUnit())
+                        continue;
+                    NonTerminal c = (NonTerminal) r.products.get(0);
+                    if (reached.containsKey(c.getName()))
+                        continue;
+                    List<NonTerminal> chain = new ArrayList<NonTerminal>(reached.get(b.getName()));
+                    chain.add(this.grammar.getNonTerminal(c.getName()));
+                    reached.put(c.getName(), chain);
+                    queue.add(c);
+                    List<Rule> rulesOfC = rulesOf.get(c.getName());
+                    if (rulesOfC == null)
+                        continue;
+                    for (Rule s : rulesOfC) {
+                        if (!s.isUnit()) {
+                            Rule rule = new Rule(a, s.products, chain);
+                            result.put(rule.key(), rule);
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<Rule>(result.values());
+    }
+
+    private void addRule(Map<String, Rule> rules, NonTerminal generator, List<ProductionElement> products) {
+        if (products.isEmpty())
+            return;
+        if (products.size() == 1 && products.get(0).getName().equals(generator.getName()))
+            return;
+        Rule rule = new Rule(generator, new ArrayList<ProductionElement>(products), new ArrayList<NonTerminal>());
+        rules.put(rule.key(), rule);
+    }
+
+    private NonTerminal newNonTerminal(String name) {
+        while (this.grammar.hasNonTerminal(name) || this.grammar.hasTerminal(name)) {
+            name = name + "'";
+        }
+        NonTerminal nt = new NonTerminal(name, true);
+        this.grammar.addNonTerminal(nt);
+        return nt;
+    }
+
+    public ContextFreeGrammar getOriginal() {
+        return this.original;
+    }
+
+    /**
+     * @return the grammar in normal form; it must not be changed
+     */
+    public ContextFreeGrammar getGrammar() {
+        return this.grammar;
+    }
+
+    /**
+     * @param rule a rule of the grammar in normal form
+     * @return non-terminals between the generator of the rule and its products in the original grammar, outermost
+     *         first; some of them may be auxiliary
+     */
+    public List<NonTerminal> getChain(ProductionRule rule) {
+        List<NonTerminal> chain = this.chains.get(rule);
+        if (chain == null)
+            return Collections.emptyList();
+        return chain;
+    }
+
+    /**
+     * @return whether the original grammar accepts the empty sentence
+     */
+    public boolean acceptsEmpty() {
+        return this.acceptsEmpty;
+    }
+}
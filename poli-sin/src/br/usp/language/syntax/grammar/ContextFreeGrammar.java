@@ -2,23 +2,29 @@ package br.usp.language.syntax.grammar;
 
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
+import br.usp.language.automata.SymbolTable;
+
 public class ContextFreeGrammar {
     
     public static final String EPSILON = "epsilon";
     
     private Map<String, Terminal> terminals;
     private Map<String, NonTerminal> nonTerminals;
+    /** Rules in the order they are added, so that rules are numbered the same way in every run */
     private Set<ProductionRule> rules;
     private NonTerminal startSymbol;
+    /** Ids of all terminals and non-terminals, given as they are added */
+    private SymbolTable symbols;
     
     public ContextFreeGrammar() {
         terminals = new HashMap<String, Terminal>();
         nonTerminals = new HashMap<String, NonTerminal>();
-        rules = new HashSet<ProductionRule>();        
+        rules = new LinkedHashSet<ProductionRule>();        
+        symbols = new SymbolTable();
     }
     
     /**
@@ -45,6 +51,7 @@ public class ContextFreeGrammar {
      */
     public void addTerminal(Terminal t) {
         terminals.put(t.getName(), t);        
+        symbols.intern(t.getName());
     }
     /**
      * @return the nonTerminals
@@ -58,6 +65,7 @@ public class ContextFreeGrammar {
      */
     public void addNonTerminal(NonTerminal nt) {
         nonTerminals.put(nt.getName(), nt);        
+        symbols.internNonTerminal(nt.getName());
     }
     /**
      * @return the rules
@@ -89,4 +97,11 @@ public class ContextFreeGrammar {
     public NonTerminal getNonTerminal(String nonTerminalName) {
         return this.nonTerminals.get(nonTerminalName);
     }
+    
+    /**
+     * @return dense int ids of the terminals and non-terminals of the grammar
+     */
+    public SymbolTable getSymbolTable() {
+        return this.symbols;
+    }
 }
@@ -0,0 +1,179 @@
+package br.usp.language.syntax.grammar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * FIRST<sub>k</sub> and FOLLOW<sub>k</sub> sets of an IndexedGrammar: the sequences of up to k terminals that can
+ * begin a symbol, and that can come after a non-terminal. A sequence shorter than k ends with the sentence; the
+ * empty sequence means that the symbol derives nothing, or that the sentence can end right after the non-terminal.
+ *
+ * Sequences are lists of terminal ids, which must not be changed. The sets are computed once, by fixed point.
+ *
+ * @author Marcelo Li Koga
+ */
+public final class FirstFollowSets {
+
+    private static final List<Integer> EMPTY = Collections.emptyList();
+
+    private final IndexedGrammar grammar;
+
+    private final int k;
+
+    private final List<Set<List<Integer>>> first;
+
+    private final List<Set<List<Integer>>> follow;
+
+    /** Sequences that can begin each rule followed by the FOLLOW set of its generator */
+    private final List<Set<List<Integer>>> lookahead;
+
+    /**
+     * @param grammar
+     * @param k length of the sequences, at least 1
+     */
+    public FirstFollowSets(IndexedGrammar grammar, int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("k must be at least 1: " + k);
+        this.grammar = grammar;
+        this.k = k;
+        int size = grammar.getSymbolCount();
+        this.first = new ArrayList<Set<List<Integer>>>(size);
+        this.follow = new ArrayList<Set<List<Integer>>>(size);
+        for (int s = 0; s < size; s++) {
+            Set<List<Integer>> f = new LinkedHashSet<List<Integer>>();
+            if (!grammar.isNonTerminal(s))
+                f.add(Collections.singletonList(s));
+            this.first.add(f);
+            this.follow.add(new LinkedHashSet<List<Integer>>());
+        }
+        this.computeFirst();
+        this.computeFollow();
+
+        this.lookahead = new ArrayList<Set<List<Integer>>>(grammar.getRuleCount());
+        for (int r = 0; r < grammar.getRuleCount(); r++) {
+            this.lookahead.add(Collections.unmodifiableSet(this.concat(this.getFirst(grammar.getRight(r), 0),
+                    this.follow.get(grammar.getLeft(r)))));
+        }
+    }
+
+    private void computeFirst() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int r = 0; r < this.grammar.getRuleCount(); r++) {
+                Set<List<Integer>> f = this.first.get(this.grammar.getLeft(r));
+                changed |= f.addAll(this.getFirst(this.grammar.getRight(r), 0));
+            }
+        }
+    }
+
+    private void computeFollow() {
+        this.follow.get(this.grammar.getStart()).add(EMPTY);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int r = 0; r < this.grammar.getRuleCount(); r++) {
+                int[] right = this.grammar.getRight(r);
+                Set<List<Integer>> followLeft = this.follow.get(this.grammar.getLeft(r));
+                for (int i = 0; i < right.length; i++) {
+                    if (!this.grammar.isNonTerminal(right[i]))
+                        continue;
+                    Set<List<Integer>> rest = this.concat(this.getFirst(right, i + 1), followLeft);
+                    changed |= this.follow.get(right[i]).addAll(rest);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return sequences of up to k terminals that can begin the products from the given position on
+     */
+    public Set<List<Integer>> getFirst(int[] products, int from) {
+        Set<List<Integer>> result = Collections.singleton(EMPTY);
+        for (int i = from; i < products.length; i++) {
+            result = this.concat(result, this.first.get(products[i]));
+            if (result.isEmpty() || this.isComplete(result))
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * @return whether all sequences already have k terminals
+     */
+    private boolean isComplete(Set<List<Integer>> set) {
+        for (List<Integer> s : set) {
+            if (s.size() < this.k)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the sequences of a followed by the ones of b, cut at k terminals
+     */
+    private Set<List<Integer>> concat(Set<List<Integer>> a, Set<List<Integer>> b) {
+        Set<List<Integer>> result = new LinkedHashSet<List<Integer>>();
+        for (List<Integer> x : a) {
+            if (x.size() >= this.k) {
+                result.add(x);
+                continue;
+            }
+            for (List<Integer> y : b) {
+                List<Integer> z = new ArrayList<Integer>(Math.min(this.k, x.size() + y.size()));
+                z.addAll(x);
+                for (int i = 0; i < y.size() && z.size() < this.k; i++) {
+                    z.add(y.get(i));
+                }
+                result.add(Collections.unmodifiableList(z));
+            }
+        }
+        return result;
+    }
+
+    public IndexedGrammar getGrammar() {
+        return this.grammar;
+    }
+
+    public int getK() {
+        return this.k;
+    }
+
+    /**
+     * @return FIRST<sub>k</sub> of a symbol; must not be changed
+     */
+    public Set<List<Integer>> getFirst(int symbol) {
+        return this.first.get(symbol);
+    }
+
+    /**
+     * @return FOLLOW<sub>k</sub> of a non-terminal; must not be changed
+     */
+    public Set<List<Integer>> getFollow(int nonTerminal) {
+        return this.follow.get(nonTerminal);
+    }
+
+    /**
+     * @return sequences of up to k terminals that can come next when the rule is chosen
+     */
+    public Set<List<Integer>> getLookahead(int rule) {
+        return this.lookahead.get(rule);
+    }
+
+    /**
+     * @return terminals that can come right after a non-terminal (FOLLOW<sub>1</sub>); the sentence can end there if
+     *         the FOLLOW set has the empty sequence
+     */
+    public Set<Integer> getFollowTerminals(int nonTerminal) {
+        Set<Integer> result = new HashSet<Integer>();
+        for (List<Integer> s : this.follow.get(nonTerminal)) {
+            if (!s.isEmpty())
+                result.add(s.get(0));
+        }
+        return result;
+    }
+}
@@ -5,11 +5,16 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class GrammarLoader {
     
     private static final String REGEX = "['*'\\-'-'><='+']+";
 
+    /** Probabilidade opcional no fim da regra, por exemplo SS -> PrAdj + NOME [0.4] */
+    private static final Pattern PROBABILITY = Pattern.compile("\\[\\s*([^\\]]*?)\\s*\\]\\s*$");
+
     public static ContextFreeGrammar load(String filename) throws IOException {
 
         File grammarFile = new File(filename);
@@ -24,7 +29,7 @@ public class GrammarLoader {
         
         int i = 0;
         while (reader.ready()) {
-            String line = reader.readLine().trim();
+            String line = PROBABILITY.matcher(reader.readLine()).replaceFirst("").trim();
             if (!line.isEmpty()) {
                 //line = line.replaceAll("\\p{Punct}", " ");
                 line = line.replaceAll(REGEX, " ");
@@ -44,6 +49,16 @@ public class GrammarLoader {
         int x = 1;
         while (reader.ready()) {
             String line = reader.readLine();
+            double probability = Double.NaN;
+            Matcher m = PROBABILITY.matcher(line);
+            if (m.find()) {
+                try {
+                    probability = Double.parseDouble(m.group(1));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid probability in line " + x + ": " + m.group());
+                }
+                line = line.substring(0, m.start());
+            }
             line = line.replaceAll(REGEX, " "); // Substitui pontuações por espaço            
             String[] symbols = line.split("\\s+"); // Divide em tokens separados por espaço
             
@@ -51,6 +66,11 @@ public class GrammarLoader {
             
             // Cria nova regra
             ProductionRule rule = new ProductionRule(new NonTerminal(symbols[0]));
+            if (!Double.isNaN(probability)) {
+                if (probability < 0 || probability > 1)
+                    throw new IOException("Probability out of [0, 1] in line " + x + ": " + probability);
+                rule.setProbability(probability);
+            }
             
             // Passa de novo pela gramática, agora acrescentando os produtos da regra
             for (String symbol : Arrays.copyOfRange(symbols, 1, symbols.length)) {
@@ -0,0 +1,265 @@
+package br.usp.language.syntax.grammar;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import br.usp.language.automata.SymbolTable;
+
+/**
+ * Read-only view of a ContextFreeGrammar for the parsers that work on the grammar itself: rules are numbered in the
+ * order they were added, the symbols are the ids of the SymbolTable of the grammar and epsilon products are left out,
+ * so an empty right side is an epsilon rule. The NULLABLE and FIRST sets of the non-terminals and rules are computed once.
+ *
+ * The view is immutable and can be shared by parsers running in different threads; the grammar should not change
+ * after the view is created.
+ *
+ * @author Marcelo Li Koga
+ */
+public final class IndexedGrammar {
+
+    private final ContextFreeGrammar grammar;
+
+    private final SymbolTable symbols;
+
+    private final ProductionRule[] rules;
+
+    /** Id of the generator of each rule */
+    private final int[] lhs;
+
+    /** Ids of the products of each rule, without epsilons */
+    private final int[][] rhs;
+
+    /** Rules of each non-terminal, indexed by its id; empty for terminals */
+    private final int[][] rulesOf;
+
+    private final int start;
+
+    private final boolean[] nullable;
+
+    private final BitSet[] first;
+
+    private final boolean[] ruleNullable;
+
+    private final BitSet[] ruleFirst;
+
+    /** Probability of each rule among the rules of its generator */
+    private final double[] probability;
+
+    public IndexedGrammar(ContextFreeGrammar grammar) {
+        this.grammar = grammar;
+        this.symbols = grammar.getSymbolTable();
+        this.rules = grammar.getRules().toArray(new ProductionRule[0]);
+        this.start = this.id(grammar.getStartSymbol());
+
+        this.lhs = new int[this.rules.length];
+        this.rhs = new int[this.rules.length][];
+        for (int r = 0; r < this.rules.length; r++) {
+            this.lhs[r] = this.id(this.rules[r].getGenerator());
+            List<Integer> products = new ArrayList<Integer>();
+            for (ProductionElement e : this.rules[r].getProducts()) {
+                if (e.getType() != ProductionElement.EPSILON) {
+                    products.add(this.id(e));
+                }
+            }
+            this.rhs[r] = new int[products.size()];
+            for (int i = 0; i < this.rhs[r].length; i++) {
+                this.rhs[r][i] = products.get(i);
+            }
+        }
+
+        int size = this.symbols.size();
+        int[] count = new int[size];
+        for (int r = 0; r < this.rules.length; r++) {
+            count[this.lhs[r]]++;
+        }
+        this.rulesOf = new int[size][];
+        for (int s = 0; s < size; s++) {
+            this.rulesOf[s] = new int[count[s]];
+            count[s] = 0;
+        }
+        for (int r = 0; r < this.rules.length; r++) {
+            this.rulesOf[this.lhs[r]][count[this.lhs[r]]++] = r;
+        }
+
+        this.nullable = new boolean[size];
+        this.first = new BitSet[size];
+        this.ruleNullable = new boolean[this.rules.length];
+        this.ruleFirst = new BitSet[this.rules.length];
+        this.computeFirst();
+
+        this.probability = new double[this.rules.length];
+        this.computeProbabilities();
+    }
+
+    /**
+     * Looks the symbol up in the table of the grammar; the table is shared, so it is not changed here
+     *
+     * @param e terminal or non-terminal
+     * @return id of the symbol
+     * @throws IllegalArgumentException if the symbol was not added to the grammar as the same kind of symbol
+     */
+    private int id(ProductionElement e) {
+        int id = this.symbols.getId(e.getName());
+        boolean nonTerminal = e.getType() == ProductionElement.NONTERMINAL;
+        if (id == SymbolTable.UNKNOWN || this.symbols.isNonTerminal(id) != nonTerminal)
+            throw new IllegalArgumentException("Symbol not in the grammar: " + e.getName());
+        return id;
+    }
+
+    /**
+     * Rules without a probability share what is left by the others of the same generator; the probabilities of each
+     * generator are then scaled to add up to 1
+     */
+    private void computeProbabilities() {
+        for (int[] rules : this.rulesOf) {
+            double given = 0;
+            int missing = 0;
+            for (int r : rules) {
+                if (this.rules[r].hasProbability())
+                    given += this.rules[r].getProbability();
+                else
+                    missing++;
+            }
+            double rest = missing == 0 ? 0 : Math.max(0, 1 - given) / missing;
+            double total = given + rest * missing;
+            for (int r : rules) {
+                double p = this.rules[r].hasProbability() ? this.rules[r].getProbability() : rest;
+                this.probability[r] = total > 0 ? p / total : 1.0 / rules.length;
+            }
+        }
+    }
+
+    /**
+     * Fixed point of the NULLABLE and FIRST sets
+     */
+    private void computeFirst() {
+        for (int s = 0; s < this.first.length; s++) {
+            this.first[s] = new BitSet();
+            if (!this.symbols.isNonTerminal(s))
+                this.first[s].set(s);
+        }
+        for (int r = 0; r < this.rules.length; r++) {
+            this.ruleFirst[r] = new BitSet();
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int r = 0; r < this.rules.length; r++) {
+                BitSet f = this.ruleFirst[r];
+                int before = f.cardinality();
+                boolean allNullable = true;
+                for (int i = 0; i < this.rhs[r].length && allNullable; i++) {
+                    f.or(this.first[this.rhs[r][i]]);
+                    allNullable = this.nullable[this.rhs[r][i]];
+                }
+                int a = this.lhs[r];
+                int beforeA = this.first[a].cardinality();
+                this.first[a].or(f);
+                if (allNullable && !this.ruleNullable[r]) {
+                    this.ruleNullable[r] = true;
+                    changed = true;
+                }
+                if (allNullable && !this.nullable[a]) {
+                    this.nullable[a] = true;
+                    changed = true;
+                }
+                changed |= f.cardinality() != before || this.first[a].cardinality() != beforeA;
+            }
+        }
+    }
+
+    public ContextFreeGrammar getGrammar() {
+        return this.grammar;
+    }
+
+    public SymbolTable getSymbolTable() {
+        return this.symbols;
+    }
+
+    /**
+     * @return id of the start symbol
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    public int getRuleCount() {
+        return this.rules.length;
+    }
+
+    public ProductionRule getRule(int rule) {
+        return this.rules[rule];
+    }
+
+    /**
+     * @return probability of the rule among the rules of its generator, from ProductionRule.getProbability; rules
+     *         without one share what is left, so a grammar without probabilities gives the same chance to each rule
+     */
+    public double getProbability(int rule) {
+        return this.probability[rule];
+    }
+
+    /**
+     * @return id of the generator of the rule
+     */
+    public int getLeft(int rule) {
+        return this.lhs[rule];
+    }
+
+    /**
+     * @return ids of the products of the rule, without epsilons; must not be changed
+     */
+    public int[] getRight(int rule) {
+        return this.rhs[rule];
+    }
+
+    /**
+     * @return rules of a non-terminal; must not be changed
+     */
+    public int[] getRulesOf(int nonTerminal) {
+        if (nonTerminal < 0 || nonTerminal >= this.rulesOf.length)
+            return new int[0];
+        return this.rulesOf[nonTerminal];
+    }
+
+    public boolean isNonTerminal(int symbol) {
+        return this.symbols.isNonTerminal(symbol);
+    }
+
+    /**
+     * @return whether the symbol derives the empty sequence
+     */
+    public boolean isNullable(int symbol) {
+        return symbol >= 0 && symbol < this.nullable.length && this.nullable[symbol];
+    }
+
+    /**
+     * @return terminals that can begin the symbol; must not be changed
+     */
+    public BitSet getFirst(int symbol) {
+        return this.first[symbol];
+    }
+
+    public boolean isRuleNullable(int rule) {
+        return this.ruleNullable[rule];
+    }
+
+    /**
+     * @return terminals that can begin the right side of the rule; must not be changed
+     */
+    public BitSet getRuleFirst(int rule) {
+        return this.ruleFirst[rule];
+    }
+
+    /**
+     * @return number of symbols; all ids are smaller than it
+     */
+    public int getSymbolCount() {
+        return this.first.length;
+    }
+
+    public String getName(int symbol) {
+        return this.symbols.getName(symbol);
+    }
+}
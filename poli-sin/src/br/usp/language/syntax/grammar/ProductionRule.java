@@ -7,6 +7,7 @@ public class ProductionRule {
     
     private NonTerminal generator;
     private List<ProductionElement> products;
+    private double probability = Double.NaN;
     
     /**
      * Cria nova regra gramatical, começando com o não-terminal generator.
@@ -42,6 +43,26 @@ public class ProductionRule {
         products.add(index, e);
     }
     
+    /**
+     * Probabilidade da regra entre as regras do mesmo gerador; NaN se não foi definida.
+     */
+    public double getProbability() {
+        return probability;
+    }
+    
+    /**
+     * @param probability valor entre 0 e 1, ou NaN para deixar a regra sem probabilidade
+     */
+    public void setProbability(double probability) {
+        if (probability < 0 || probability > 1)
+            throw new IllegalArgumentException("Probability out of [0, 1]: " + probability);
+        this.probability = probability;
+    }
+    
+    public boolean hasProbability() {
+        return !Double.isNaN(probability);
+    }
+    
     public String toString() {
         StringBuilder sb = new StringBuilder(generator.getName() + " -> ");
         for (ProductionElement pe : products) {
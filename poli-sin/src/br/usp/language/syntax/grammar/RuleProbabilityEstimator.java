@@ -0,0 +1,183 @@
+package br.usp.language.syntax.grammar;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import br.usp.language.automata.SymbolTable;
+import br.usp.language.syntax.tree.SyntaxTree;
+import br.usp.language.syntax.tree.SyntaxTreeNode;
+
+/**
+ * Estimates the probabilities of the rules of a grammar from a corpus of trees, such as the ones accepted by the
+ * SyntacticAnalyser: the probability of a rule is the number of times it was used divided by the number of times
+ * its generator was expanded, with additive smoothing so that unseen rules keep some chance.
+ *
+ * The trees leave out the non-terminals without words, so the rule of a node is the one whose products are its
+ * children once the products that derive the empty sequence may be skipped. Each skipped product is counted as one
+ * use of its rules with only such products, shared among them, and so on down to the epsilon rules. When more than
+ * one rule fits a node, the use is shared among them as well.
+ *
+ * @author Marcelo Li Koga
+ */
+public class RuleProbabilityEstimator {
+
+    public static final double DEFAULT_SMOOTHING = 1.0;
+
+    private final IndexedGrammar grammar;
+
+    private final double smoothing;
+
+    /** Number of uses of each rule */
+    private final double[] counts;
+
+    /** Nodes of non-terminals that fit none of their rules */
+    private int unmatched;
+
+    public RuleProbabilityEstimator(IndexedGrammar grammar) {
+        this(grammar, DEFAULT_SMOOTHING);
+    }
+
+    /**
+     * @param grammar
+     * @param smoothing added to the count of every rule
+     */
+    public RuleProbabilityEstimator(IndexedGrammar grammar, double smoothing) {
+        if (smoothing < 0)
+            throw new IllegalArgumentException("Negative smoothing: " + smoothing);
+        this.grammar = grammar;
+        this.smoothing = smoothing;
+        this.counts = new double[grammar.getRuleCount()];
+    }
+
+    public IndexedGrammar getGrammar() {
+        return this.grammar;
+    }
+
+    /**
+     * Counts the rules used by a tree
+     */
+    public void add(SyntaxTree tree) {
+        if (tree != null && tree.getRoot() != null)
+            this.add(tree.getRoot());
+    }
+
+    private void add(SyntaxTreeNode node) {
+        SymbolTable symbols = this.grammar.getSymbolTable();
+        int symbol = symbols.getId(node.getLabel());
+        if (node.isLeaf() || symbol == SymbolTable.UNKNOWN || !this.grammar.isNonTerminal(symbol))
+            return;
+
+        List<SyntaxTreeNode> children = node.getChildNodes();
+        int[] labels = new int[children.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = symbols.getId(children.get(i).getLabel());
+        }
+        List<Integer> fits = new ArrayList<Integer>();
+        List<List<Integer>> skips = new ArrayList<List<Integer>>();
+        for (int r : this.grammar.getRulesOf(symbol)) {
+            List<Integer> skipped = new ArrayList<Integer>();
+            if (this.match(this.grammar.getRight(r), 0, labels, 0, skipped)) {
+                fits.add(r);
+                skips.add(skipped);
+            }
+        }
+        if (fits.isEmpty()) {
+            this.unmatched++;
+        } else {
+            double share = 1.0 / fits.size();
+            for (int f = 0; f < fits.size(); f++) {
+                this.counts[fits.get(f)] += share;
+                for (int skipped : skips.get(f)) {
+                    this.addEmpty(skipped, share);
+                }
+            }
+        }
+        for (SyntaxTreeNode child : children) {
+            this.add(child);
+        }
+    }
+
+    /**
+     * @return whether the products from i on fit the labels from j on, skipping products that derive the empty
+     *         sequence; the skipped ones are added to the list
+     */
+    private boolean match(int[] products, int i, int[] labels, int j, List<Integer> skipped) {
+        if (i == products.length)
+            return j == labels.length;
+        if (j < labels.length && products[i] == labels[j] && this.match(products, i + 1, labels, j + 1, skipped))
+            return true;
+        if (this.grammar.isNullable(products[i])) {
+            skipped.add(products[i]);
+            if (this.match(products, i + 1, labels, j, skipped))
+                return true;
+            skipped.remove(skipped.size() - 1);
+        }
+        return false;
+    }
+
+    /**
+     * Shares a use among the rules of a non-terminal whose products all derive the empty sequence, and goes on with
+     * their products; non-terminals already on the way are not followed again
+     */
+    private void addEmpty(int nonTerminal, double count) {
+        this.addEmpty(nonTerminal, count, new HashSet<Integer>());
+    }
+
+    private void addEmpty(int nonTerminal, double count, Set<Integer> path) {
+        if (!path.add(nonTerminal))
+            return;
+        List<Integer> empty = new ArrayList<Integer>();
+        for (int r : this.grammar.getRulesOf(nonTerminal)) {
+            if (this.grammar.isRuleNullable(r))
+                empty.add(r);
+        }
+        for (int r : empty) {
+            double share = count / empty.size();
+            this.counts[r] += share;
+            for (int product : this.grammar.getRight(r)) {
+                this.addEmpty(product, share, path);
+            }
+        }
+        path.remove(nonTerminal);
+    }
+
+    /**
+     * @return number of uses of a rule in the trees added so far, without smoothing
+     */
+    public double getCount(int rule) {
+        return this.counts[rule];
+    }
+
+    /**
+     * @return number of nodes that fit none of the rules of their non-terminal; they were not counted
+     */
+    public int getUnmatched() {
+        return this.unmatched;
+    }
+
+    /**
+     * @return estimated probability of a rule among the rules of its generator
+     */
+    public double getProbability(int rule) {
+        int[] rules = this.grammar.getRulesOf(this.grammar.getLeft(rule));
+        double total = 0;
+        for (int r : rules) {
+            total += this.counts[r] + this.smoothing;
+        }
+        if (total == 0)
+            return 1.0 / rules.length;
+        return (this.counts[rule] + this.smoothing) / total;
+    }
+
+    /**
+     * Sets the estimated probabilities on the rules of the grammar (ProductionRule.setProbability). An IndexedGrammar
+     * reads the probabilities when it is created, so a new one must be created to use them.
+     */
+    public void apply() {
+        for (int r = 0; r < this.grammar.getRuleCount(); r++) {
+            this.grammar.getRule(r).setProbability(this.getProbability(r));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package br.usp.language.syntax.ll;
+
+import java.util.Collections;
+import java.util.List;
+
+import br.usp.language.syntax.grammar.ProductionRule;
+
+/**
+ * A cell of an LLTable with more than one rule, or a non-terminal that cannot be parsed top-down because it is left
+ * recursive.
+ *
+ * @author Marcelo Li Koga
+ */
+public class LLConflict {
+
+    private final String nonTerminal;
+
+    private final List<String> lookahead;
+
+    private final List<ProductionRule> rules;
+
+    private final boolean leftRecursion;
+
+    LLConflict(String nonTerminal, List<String> lookahead, List<ProductionRule> rules, boolean leftRecursion) {
+        this.nonTerminal = nonTerminal;
+        this.lookahead = Collections.unmodifiableList(lookahead);
+        this.rules = Collections.unmodifiableList(rules);
+        this.leftRecursion = leftRecursion;
+    }
+
+    public String getNonTerminal() {
+        return this.nonTerminal;
+    }
+
+    /**
+     * @return terminals of the cell; empty for left recursion. A sequence shorter than k ends with the sentence.
+     */
+    public List<String> getLookahead() {
+        return this.lookahead;
+    }
+
+    /**
+     * @return rules of the cell; for left recursion, the rules of the non-terminal
+     */
+    public List<ProductionRule> getRules() {
+        return this.rules;
+    }
+
+    public boolean isLeftRecursion() {
+        return this.leftRecursion;
+    }
+
+    @Override
+    public String toString() {
+        if (this.leftRecursion)
+            return this.nonTerminal + ": left recursion";
+        return this.nonTerminal + ": " + this.lookahead + " " + this.rules;
+    }
+}
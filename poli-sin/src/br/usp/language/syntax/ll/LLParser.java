@@ -0,0 +1,195 @@
+package br.usp.language.syntax.ll;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.tree.SyntaxTree;
+import br.usp.language.syntax.tree.SyntaxTreeNode;
+
+/**
+ * Predictive parser driven by an LLTable, with an explicit stack and no backtracking. The rule of each non-terminal
+ * is chosen by the readings of the next k words; a word with many readings can match many sequences of the table.
+ * If no rule fits, the sentence is rejected; if more than one does, or the non-terminal has a conflict in the table,
+ * the parser stops and tells so, so another parser can take over.
+ *
+ * @author Marcelo Li Koga
+ */
+public class LLParser {
+
+    public enum Status {
+        ACCEPTED, REJECTED,
+        /** A decision needs backtracking */
+        CONFLICT
+    }
+
+    /**
+     * Result of one parse: the status, the tree (only when accepted) and where the parser stopped
+     */
+    public static class Result {
+
+        private final Status status;
+        private final SyntaxTree tree;
+        private final int word;
+        private final String nonTerminal;
+
+        Result(Status status, SyntaxTree tree, int word, String nonTerminal) {
+            this.status = status;
+            this.tree = tree;
+            this.word = word;
+            this.nonTerminal = nonTerminal;
+        }
+
+        public Status getStatus() {
+            return this.status;
+        }
+
+        /**
+         * @return the tree; null if the sentence was not accepted
+         */
+        public SyntaxTree getTree() {
+            return this.tree;
+        }
+
+        /**
+         * @return position of the word where the parser stopped
+         */
+        public int getWord() {
+            return this.word;
+        }
+
+        /**
+         * @return non-terminal whose rule could not be chosen; null if the parser did not stop at a non-terminal
+         */
+        public String getNonTerminal() {
+            return this.nonTerminal;
+        }
+    }
+
+    /** A symbol still to be parsed and the node of its parent */
+    private static final class Frame {
+
+        final int symbol;
+        final SyntaxTreeNode parent;
+
+        Frame(int symbol, SyntaxTreeNode parent) {
+            this.symbol = symbol;
+            this.parent = parent;
+        }
+    }
+
+    private final LLTable table;
+
+    public LLParser(LLTable table) {
+        this.table = table;
+    }
+
+    public LLTable getTable() {
+        return this.table;
+    }
+
+    /**
+     * Parses a sentence.
+     *
+     * @param readings ids of the categories of the readings of each word, in the SymbolTable of the grammar
+     * @param tokens tokens of the readings, in the same positions; may be null
+     */
+    public Result parse(int[][] readings, TokenMorph[][] tokens) {
+        IndexedGrammar grammar = this.table.getGrammar();
+        int n = readings.length;
+        List<Frame> stack = new ArrayList<Frame>();
+        stack.add(new Frame(grammar.getStart(), null));
+        SyntaxTreeNode root = null;
+        BitSet nonTerminalNodes = new BitSet();
+        List<SyntaxTreeNode> nodes = new ArrayList<SyntaxTreeNode>();
+        int i = 0;
+
+        while (!stack.isEmpty()) {
+            Frame frame = stack.remove(stack.size() - 1);
+            if (!grammar.isNonTerminal(frame.symbol)) {
+                int j = i < n ? indexOf(readings[i], frame.symbol) : -1;
+                if (j < 0)
+                    return new Result(Status.REJECTED, null, i, null);
+                TokenMorph token = tokens == null ? null : tokens[i][j];
+                frame.parent.addChild(new SyntaxTreeNode(grammar.getName(frame.symbol), token));
+                i++;
+                continue;
+            }
+
+            String name = grammar.getName(frame.symbol);
+            if (this.table.isConflicting(frame.symbol))
+                return new Result(Status.CONFLICT, null, i, name);
+            int rule = this.predict(frame.symbol, readings, i);
+            if (rule == -1)
+                return new Result(Status.REJECTED, null, i, name);
+            if (rule == -2)
+                return new Result(Status.CONFLICT, null, i, name);
+
+            SyntaxTreeNode node = new SyntaxTreeNode(name);
+            nonTerminalNodes.set(nodes.size());
+            nodes.add(node);
+            if (frame.parent == null)
+                root = node;
+            else
+                frame.parent.addChild(node);
+            int[] right = grammar.getRight(rule);
+            for (int p = right.length - 1; p >= 0; p--) {
+                stack.add(new Frame(right[p], node));
+            }
+        }
+        if (i < n)
+            return new Result(Status.REJECTED, null, i, null);
+
+        // Non-terminals without words are left out, as in the trees of the SyntacticAnalyser
+        for (int p = nodes.size() - 1; p > 0; p--) {
+            SyntaxTreeNode node = nodes.get(p);
+            if (nonTerminalNodes.get(p) && node.getNumberOfChildren() == 0)
+                node.pruneItselfFromParent();
+        }
+        return new Result(Status.ACCEPTED, new SyntaxTree(root), n, null);
+    }
+
+    /**
+     * Finds the rule of a non-terminal for the readings of the next words
+     *
+     * @return the rule; -1 if there is none, -2 if there is more than one
+     */
+    private int predict(int nonTerminal, int[][] readings, int word) {
+        int[] found = { -1 };
+        int k = Math.min(this.table.getK(), readings.length - word);
+        this.predict(nonTerminal, readings, word, k, new ArrayList<Integer>(k), found);
+        return found[0];
+    }
+
+    /**
+     * Looks up every sequence of readings of the next k words
+     */
+    private void predict(int nonTerminal, int[][] readings, int word, int k, List<Integer> lookahead, int[] found) {
+        if (found[0] == -2)
+            return;
+        if (lookahead.size() == k) {
+            for (int rule : this.table.getRules(nonTerminal, lookahead)) {
+                if (found[0] == -1)
+                    found[0] = rule;
+                else if (found[0] != rule)
+                    found[0] = -2;
+            }
+            return;
+        }
+        for (int symbol : readings[word + lookahead.size()]) {
+            lookahead.add(symbol);
+            this.predict(nonTerminal, readings, word, k, lookahead, found);
+            lookahead.remove(lookahead.size() - 1);
+        }
+    }
+
+    private static int indexOf(int[] readings, int symbol) {
+        for (int j = 0; j < readings.length; j++) {
+            if (readings[j] == symbol)
+                return j;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,173 @@
+package br.usp.language.syntax.ll;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.usp.language.syntax.grammar.FirstFollowSets;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.grammar.ProductionRule;
+
+/**
+ * Strong LL(k) parse table of a grammar: for each non-terminal and each sequence of up to k terminals that can come
+ * next, the rules that can be chosen. Cells with more than one rule, and left recursive non-terminals, are reported
+ * as conflicts of their non-terminal.
+ *
+ * The table is immutable and can be shared by parsers in different threads.
+ *
+ * @author Marcelo Li Koga
+ */
+public class LLTable {
+
+    private static final int[] NO_RULES = new int[0];
+
+    private final FirstFollowSets sets;
+
+    /** Rules of each cell, by non-terminal id and lookahead */
+    private final List<Map<List<Integer>, int[]>> cells;
+
+    private final boolean[] conflicting;
+
+    private final List<LLConflict> conflicts = new ArrayList<LLConflict>();
+
+    public LLTable(IndexedGrammar grammar, int k) {
+        this.sets = new FirstFollowSets(grammar, k);
+        int size = grammar.getSymbolCount();
+        this.cells = new ArrayList<Map<List<Integer>, int[]>>(size);
+        this.conflicting = new boolean[size];
+        for (int s = 0; s < size; s++) {
+            this.cells.add(new HashMap<List<Integer>, int[]>());
+        }
+
+        for (int r = 0; r < grammar.getRuleCount(); r++) {
+            Map<List<Integer>, int[]> row = this.cells.get(grammar.getLeft(r));
+            for (List<Integer> lookahead : this.sets.getLookahead(r)) {
+                int[] rules = row.get(lookahead);
+                if (rules == null) {
+                    row.put(lookahead, new int[] { r });
+                } else {
+                    int[] more = new int[rules.length + 1];
+                    System.arraycopy(rules, 0, more, 0, rules.length);
+                    more[rules.length] = r;
+                    row.put(lookahead, more);
+                }
+            }
+        }
+
+        boolean[] leftRecursive = this.findLeftRecursion(grammar);
+        for (int a = 0; a < size; a++) {
+            if (!grammar.isNonTerminal(a))
+                continue;
+            if (leftRecursive[a]) {
+                this.conflicting[a] = true;
+                this.conflicts.add(new LLConflict(grammar.getName(a), new ArrayList<String>(), this.rulesOf(
+                        grammar.getRulesOf(a)), true));
+                continue;
+            }
+            for (Map.Entry<List<Integer>, int[]> cell : this.cells.get(a).entrySet()) {
+                if (cell.getValue().length > 1) {
+                    this.conflicting[a] = true;
+                    List<String> names = new ArrayList<String>();
+                    for (int t : cell.getKey()) {
+                        names.add(grammar.getName(t));
+                    }
+                    this.conflicts.add(new LLConflict(grammar.getName(a), names, this.rulesOf(cell.getValue()),
+                            false));
+                }
+            }
+        }
+    }
+
+    /**
+     * A non-terminal is left recursive if it derives a sequence that begins with itself
+     */
+    private boolean[] findLeftRecursion(IndexedGrammar grammar) {
+        int size = grammar.getSymbolCount();
+        // leftCorner[a][b]: a derives a sequence that begins with b
+        boolean[][] leftCorner = new boolean[size][size];
+        for (int r = 0; r < grammar.getRuleCount(); r++) {
+            for (int product : grammar.getRight(r)) {
+                if (!grammar.isNonTerminal(product))
+                    break;
+                leftCorner[grammar.getLeft(r)][product] = true;
+                if (!grammar.isNullable(product))
+                    break;
+            }
+        }
+        // Transitive closure (Warshall)
+        for (int m = 0; m < size; m++) {
+            for (int a = 0; a < size; a++) {
+                if (!leftCorner[a][m])
+                    continue;
+                for (int b = 0; b < size; b++) {
+                    leftCorner[a][b] |= leftCorner[m][b];
+                }
+            }
+        }
+        boolean[] result = new boolean[size];
+        for (int a = 0; a < size; a++) {
+            result[a] = leftCorner[a][a];
+        }
+        return result;
+    }
+
+    private List<ProductionRule> rulesOf(int[] rules) {
+        List<ProductionRule> result = new ArrayList<ProductionRule>();
+        for (int r : rules) {
+            result.add(this.sets.getGrammar().getRule(r));
+        }
+        return result;
+    }
+
+    public IndexedGrammar getGrammar() {
+        return this.sets.getGrammar();
+    }
+
+    public FirstFollowSets getSets() {
+        return this.sets;
+    }
+
+    public int getK() {
+        return this.sets.getK();
+    }
+
+    /**
+     * @return rules of a cell; empty if there is none
+     */
+    public int[] getRules(int nonTerminal, List<Integer> lookahead) {
+        int[] rules = this.cells.get(nonTerminal).get(lookahead);
+        return rules == null ? NO_RULES : rules;
+    }
+
+    /**
+     * @return whether the non-terminal has a conflict, so it cannot be parsed without backtracking
+     */
+    public boolean isConflicting(int nonTerminal) {
+        return this.conflicting[nonTerminal];
+    }
+
+    public boolean isConflictFree() {
+        return this.conflicts.isEmpty();
+    }
+
+    /**
+     * @return all conflicts, grouped by non-terminal
+     */
+    public List<LLConflict> getConflicts() {
+        return Collections.unmodifiableList(this.conflicts);
+    }
+
+    /**
+     * @return conflicts of one non-terminal
+     */
+    public List<LLConflict> getConflicts(String nonTerminal) {
+        List<LLConflict> result = new ArrayList<LLConflict>();
+        for (LLConflict c : this.conflicts) {
+            if (c.getNonTerminal().equals(nonTerminal))
+                result.add(c);
+        }
+        return result;
+    }
+}
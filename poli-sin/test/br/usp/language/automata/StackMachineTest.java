@@ -43,9 +43,12 @@ public class StackMachineTest {
         sm.input("1");
         assertEquals(fsm2s1, sm.getCurrentStateMachine().getCurrentState());
         assertEquals(1, sm.getStackMachines().size());
+        assertEquals(fsm1, sm.getStackMachines().peek());
+        assertEquals(1, sm.getStackDepth());
         sm.input("0");
         assertEquals(fsm1s2, sm.getCurrentStateMachine().getCurrentState());
         assertEquals(0, sm.getStackMachines().size());
+        assertEquals(0, sm.getStackDepth());
     }
     
     @Test
@@ -53,4 +56,93 @@ public class StackMachineTest {
         sm.restart();
         assertFalse(sm.execute(new String[]{"0","0"}));
     }
+    
+    @Test
+    public void testChangeAfterRestart() {
+        sm.restart();
+        assertTrue(sm.execute(new String[]{"1","0"}));
+        // B -> 2
+        fsm2.getInitialState().createTransitionTo(fsm2s1, "2", null);
+        sm.restart();
+        assertTrue(sm.execute(new String[]{"2","0"}));
+    }
+    
+    @Test
+    public void testInputSymbols() {
+        SymbolTable symbols = new SymbolTable();
+        sm.compile(symbols);
+        assertTrue(symbols.isNonTerminal(symbols.getId("B")));
+        assertFalse(symbols.isNonTerminal(symbols.getId("1")));
+        sm.restart();
+        assertTrue(sm.execute(symbols.getIds(new String[]{"1","0"})));
+        sm.restart();
+        assertFalse(sm.execute(new int[]{symbols.getId("0"), SymbolTable.UNKNOWN}));
+    }
+    
+    @Test
+    public void testChooseByFirstSet() {
+        // S -> X | Y
+        // X -> N + b
+        // N -> n | epsilon
+        // Y -> z
+        StateMachine fsmS = new StateMachine("S");
+        State sFinal = fsmS.createState("S: F");
+        sFinal.setAcceptState();
+        fsmS.getInitialState().createMachineCallTo(sFinal, "X", null, null);
+        fsmS.getInitialState().createMachineCallTo(sFinal, "Y", null, null);
+        StateMachine fsmX = new StateMachine("X");
+        State x1 = fsmX.createState("X: N");
+        State xFinal = fsmX.createState("X: F");
+        xFinal.setAcceptState();
+        fsmX.getInitialState().createMachineCallTo(x1, "N", null, null);
+        x1.createTransitionTo(xFinal, "b", null);
+        StateMachine fsmN = new StateMachine("N");
+        State nFinal = fsmN.createState("N: F");
+        nFinal.setAcceptState();
+        fsmN.getInitialState().createTransitionTo(nFinal, "n", null);
+        fsmN.getInitialState().createEpsilonTransitionTo(nFinal, null);
+        StateMachine fsmY = new StateMachine("Y");
+        State yFinal = fsmY.createState("Y: F");
+        yFinal.setAcceptState();
+        fsmY.getInitialState().createTransitionTo(yFinal, "z", null);
+        
+        StackMachine machine = new StackMachine(new StateMachine[]{fsmS, fsmX, fsmN, fsmY});
+        // X is nullable-prefixed, but cannot start with z
+        assertTrue(machine.execute(new String[]{"z"}));
+        machine.restart();
+        assertTrue(machine.execute(new String[]{"b"}));
+        machine.restart();
+        assertTrue(machine.execute(new String[]{"n", "b"}));
+    }
+    
+    @Test
+    public void testCursors() {
+        StackMachineCursor c1 = sm.newCursor();
+        StackMachineCursor c2 = sm.newCursor();
+        assertTrue(c1.input("1"));
+        assertEquals("B", c1.getCurrentMachineName());
+        assertEquals(1, c1.getStackDepth());
+        // The other cursor and the machine itself did not move
+        assertEquals("A", c2.getCurrentMachineName());
+        assertEquals(0, c2.getStackDepth());
+        assertEquals(fsm1, sm.getCurrentStateMachine());
+        assertTrue(c1.input("0"));
+        c1.finish();
+        assertTrue(c1.isAtAcceptState());
+        assertEquals(fsm1s2, c1.getCurrentState());
+        assertFalse(c2.execute(new int[]{c2.getSymbolTable().getId("0")}));
+    }
+    
+    @Test
+    public void testSnapshot() {
+        StackMachineCursor cursor = sm.newCursor();
+        cursor.input("1");
+        StackMachineCursor.Snapshot snapshot = cursor.snapshot();
+        assertTrue(cursor.input("0"));
+        assertEquals(0, cursor.getStackDepth());
+        cursor.restore(snapshot);
+        assertEquals("B", cursor.getCurrentMachineName());
+        assertEquals(1, cursor.getStackDepth());
+        assertTrue(cursor.execute(new int[]{cursor.getSymbolTable().getId("0")}));
+    }
 }
@@ -0,0 +1,63 @@
+package br.usp.language.automata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class StateMachineOptimizerTest {
+
+    @Test
+    public void testMergeSuffixes() throws Exception {
+        // A -> x + B | y + B | z
+        StateMachine fsm = new StateMachine("A");
+        State fin = fsm.createState("Final");
+        fin.setAcceptState();
+        State error = fsm.createState("Error");
+        error.setErrorState();
+        error.setAlternateTransition(error, null);
+        State x = fsm.createState("x");
+        State y = fsm.createState("y");
+        State xb = fsm.createState("xB");
+        State yb = fsm.createState("yB");
+        State z = fsm.createState("z");
+        fsm.getInitialState().createTransitionTo(x, "x", null);
+        fsm.getInitialState().createTransitionTo(y, "y", null);
+        fsm.getInitialState().createTransitionTo(z, "z", null);
+        fsm.getInitialState().setAlternateTransition(error, null);
+        x.createMachineCallTo(xb, "B", null, null);
+        y.createMachineCallTo(yb, "B", null, null);
+        xb.createEpsilonTransitionTo(fin, null);
+        yb.createEpsilonTransitionTo(fin, null);
+        z.createEpsilonTransitionTo(fin, null);
+
+        StateMachine optimized = StateMachineOptimizer.optimize(fsm);
+        // Initial, x|y, xB|yB|z, Final, Error
+        assertEquals(5, optimized.getAllStates().size());
+        assertEquals("A", optimized.getName());
+
+        State afterX = optimized.getInitialState().getNextState("x");
+        assertTrue(afterX == optimized.getInitialState().getNextState("y"));
+        State afterB = afterX.getNextState("B");
+        assertTrue(afterB == optimized.getInitialState().getNextState("z"));
+        assertTrue(afterB.hasEpsilonTransition());
+        assertTrue(optimized.getInitialState().hasAlternateTransition());
+
+        assertTrue(optimized.execute(new String[] { "z" }));
+        optimized.restart();
+        assertFalse(optimized.execute(new String[] { "x" }));
+    }
+
+    @Test
+    public void testNotOptimizable() {
+        StateMachine fsm = new StateMachine("A");
+        State fin = fsm.createState("Final");
+        fin.setAcceptState();
+        fsm.getInitialState().createTransitionTo(fin, "x", new Action() {
+            public void doAction() {
+            }
+        });
+        assertTrue(fsm == StateMachineOptimizer.optimize(fsm));
+    }
+}
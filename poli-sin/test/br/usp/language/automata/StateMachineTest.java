@@ -78,5 +78,56 @@ public class StateMachineTest {
         assertTrue(fsm.isAtAcceptState());
     }
     
+    @Test
+    public void compiledInputTest() {
+        fsm.compile();
+        assertTrue(fsm.isCompiled());
+        assertEquals(stateOne, initialState2.getNextState("1"));
+        assertTrue(initialState2.containsTransitionForInput("0"));
+        assertFalse(initialState2.containsTransitionForInput("2"));
+        fsm.input("1");
+        assertEquals(stateOne, fsm.getCurrentState());
+        fsm.input("0");
+        assertEquals(stateZero, fsm.getCurrentState());
+        fsm.input("2");
+        assertEquals(stateOther, fsm.getCurrentState());
+    }
+    
+    @Test
+    public void compiledChangeTest() {
+        fsm.compile();
+        State stateTwo = fsm.createState("Two");
+        stateOne.createTransitionTo(stateTwo, "2", null);
+        assertFalse(fsm.isCompiled());
+        fsm.input("1");
+        fsm.input("2");
+        assertEquals(stateTwo, fsm.getCurrentState());
+    }
+
+    @Test
+    public void compiledFinishTest() {
+        // Initial -e-> A -e-> B -e-> C (accept); the action on B is still executed
+        StateMachine m = new StateMachine("M");
+        State a = m.createState("A");
+        State b = m.createState("B");
+        State c = m.createState("C");
+        c.setAcceptState();
+        final int[] executed = new int[1];
+        m.getInitialState().createEpsilonTransitionTo(a, null);
+        a.createEpsilonTransitionTo(b, null);
+        b.createEpsilonTransitionTo(c, new Action() {
+            public void doAction() {
+                executed[0]++;
+            }
+        });
+        m.compile();
+        assertTrue(m.execute(new String[0]));
+        assertEquals(c, m.getCurrentState());
+        assertEquals(1, executed[0]);
+        assertEquals(1, b.getNextEpsilonStates().length);
+        // Changing the array given does not change the state
+        b.getNextEpsilonStates()[0] = null;
+        assertEquals(c, b.getNextEpsilonStates()[0]);
+    }
 
 }
@@ -0,0 +1,62 @@
+package br.usp.language.syntax;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import br.usp.language.automata.StackMachineCursor;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.NonTerminal;
+import br.usp.language.syntax.grammar.ProductionRule;
+import br.usp.language.syntax.grammar.Terminal;
+
+public class FailureMemoTest {
+
+    private StackMachineCursor newCursor() {
+        // A -> s + s + s
+        ContextFreeGrammar grammar = new ContextFreeGrammar();
+        NonTerminal a = new NonTerminal("A");
+        Terminal s = new Terminal("s");
+        grammar.addNonTerminal(a);
+        grammar.addTerminal(s);
+        ProductionRule rule = new ProductionRule(a);
+        rule.add(s);
+        rule.add(s);
+        rule.add(s);
+        grammar.addRule(rule);
+        grammar.setStartSymbol(a);
+        return SyntacticAnalyser.createStackMachine(grammar).newCursor();
+    }
+
+    @Test
+    public void testFailures() {
+        StackMachineCursor cursor = newCursor();
+        StackMachineCursor.Snapshot start = cursor.snapshot();
+        cursor.input("s");
+        StackMachineCursor.Snapshot second = cursor.snapshot();
+        cursor.restore(start);
+        // Same configuration, other snapshot
+        assertEquals(start, cursor.snapshot());
+
+        FailureMemo memo = new FailureMemo(2);
+        memo.addFailure(0, start);
+        assertTrue(memo.isFailure(0, cursor.snapshot()));
+        assertFalse(memo.isFailure(1, start));
+        assertFalse(memo.isFailure(0, second));
+        assertEquals(1, memo.getHits());
+
+        // The least recently used configuration is dropped
+        memo.addFailure(1, second);
+        memo.isFailure(0, start);
+        memo.addFailure(2, second);
+        assertEquals(2, memo.size());
+        assertTrue(memo.isFailure(0, start));
+        assertFalse(memo.isFailure(1, second));
+
+        FailureMemo off = new FailureMemo(0);
+        off.addFailure(0, start);
+        assertFalse(off.isFailure(0, start));
+    }
+}
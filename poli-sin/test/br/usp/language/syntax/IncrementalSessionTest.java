@@ -0,0 +1,73 @@
+package br.usp.language.syntax;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.usp.language.syntax.grammar.GrammarLoader;
+
+public class IncrementalSessionTest {
+
+    SyntacticAnalyserFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = new SyntacticAnalyserFactory(GrammarLoader.load("resources/gramatica_simples.txt"));
+    }
+
+    private static HashSet<String> set(String... names) {
+        return new HashSet<String>(Arrays.asList(names));
+    }
+
+    @Test
+    public void testExpectedTerminals() {
+        IncrementalSession session = factory.newSession();
+        // SS can be empty, so the sentence can begin with the verb
+        assertEquals(set("art", "ppes", "a_nc", "nc", "np", "v"), session.expectedTerminals());
+        assertFalse(session.isComplete());
+
+        assertTrue(session.add("art"));
+        assertEquals(set("a_nc", "nc", "np"), session.expectedTerminals());
+        assertTrue(session.add("nc"));
+        assertEquals(set("v"), session.expectedTerminals());
+        assertTrue(session.add("v"));
+        assertTrue(session.expectedTerminals().contains("art"));
+        assertFalse(session.expectedTerminals().contains("v"));
+        // The object can be empty too
+        assertTrue(session.isComplete());
+        assertEquals(3, session.getLength());
+    }
+
+    @Test
+    public void testReadings() {
+        IncrementalSession session = factory.newSession();
+        // Only the reading as an article fits after the first word
+        assertTrue(session.add("ppes", "art"));
+        assertEquals(2, session.getConfigurationCount());
+        assertTrue(session.add("nc", "adj"));
+        assertEquals(1, session.getConfigurationCount());
+        assertEquals(set("v"), session.expectedTerminals());
+    }
+
+    @Test
+    public void testRejectedWord() {
+        IncrementalSession session = factory.newSession();
+        assertTrue(session.add("art"));
+        // A verb cannot come after the article; the session stays where it was
+        assertFalse(session.add("v"));
+        assertFalse(session.add("unknown"));
+        assertEquals(1, session.getLength());
+        assertEquals(set("a_nc", "nc", "np"), session.expectedTerminals());
+
+        assertTrue(session.removeLast());
+        assertEquals(0, session.getLength());
+        assertTrue(session.expectedTerminals().contains("v"));
+        assertFalse(session.removeLast());
+    }
+}
@@ -0,0 +1,112 @@
+package br.usp.language.syntax;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import br.usp.language.morph.MorphologicAnalyser;
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.GrammarLoader;
+import br.usp.language.syntax.grammar.Terminal;
+
+public class SyntacticAnalyserFactoryTest {
+
+    /**
+     * The factory optimizes the machines; the analysis must not change
+     */
+    @Test
+    public void testOptimizedMachines() throws Exception {
+        String[] files = { "resources/gramatica_simples.txt", "resources/gramatica_teste.txt",
+                "resources/gramatica_luft.txt", "resources/gramatica_luft2.txt" };
+        for (String file : files) {
+            ContextFreeGrammar grammar = GrammarLoader.load(file);
+            List<String> categories = new ArrayList<String>();
+            for (Terminal terminal : grammar.getTerminals()) {
+                categories.add(terminal.getName());
+            }
+            Collections.sort(categories);
+            categories.add("desconhecida");
+
+            SentenceAnalyser ma = new SentenceAnalyser();
+            SyntacticAnalyser plain = new SyntacticAnalyser(ma, grammar);
+            SyntacticAnalyser optimized = new SyntacticAnalyserFactory(grammar).newAnalyser(ma);
+            int accepted = 0;
+            Random random = new Random(7);
+            for (int n = 0; n < 300; n++) {
+                List<TokenMorph[]> sentence = sentence(random, categories);
+                ma.start(sentence);
+                plain.reset();
+                boolean expected = plain.analyse2();
+                ma.start(sentence);
+                optimized.reset();
+                assertEquals(file, expected, optimized.analyse2());
+                assertEquals(file, plain.getTree().polishNotation(), optimized.getTree().polishNotation());
+                if (expected)
+                    accepted++;
+            }
+            assertTrue(file, accepted > 0);
+        }
+    }
+
+    /**
+     * Up to 6 words with up to 3 readings each; short sentences are more likely to be accepted
+     */
+    private static List<TokenMorph[]> sentence(Random random, List<String> categories) {
+        List<TokenMorph[]> sentence = new ArrayList<TokenMorph[]>();
+        int length = 1 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            TokenMorph[] readings = new TokenMorph[1 + random.nextInt(3)];
+            for (int j = 0; j < readings.length; j++) {
+                Map<String, String> attribs = new HashMap<String, String>();
+                attribs.put("cat", categories.get(random.nextInt(categories.size())));
+                readings[j] = new TokenMorph("w" + i, "", attribs, false);
+            }
+            sentence.add(readings);
+        }
+        return sentence;
+    }
+
+    /**
+     * Gives the words of one sentence
+     */
+    private static class SentenceAnalyser implements MorphologicAnalyser {
+
+        private List<TokenMorph[]> words;
+
+        private int next;
+
+        void start(List<TokenMorph[]> words) {
+            this.words = words;
+            this.next = 0;
+        }
+
+        public void setInput(Reader reader) {
+        }
+
+        public boolean hasMoreTokens() {
+            return this.next < this.words.size();
+        }
+
+        public TokenMorph lookNextToken() {
+            return this.words.get(this.next)[0];
+        }
+
+        public TokenMorph getNextToken() {
+            return this.words.get(this.next++)[0];
+        }
+
+        public TokenMorph[] getNextTokens() {
+            return this.words.get(this.next++);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package br.usp.language.syntax;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.StringReader;
 import java.util.ArrayList;
@@ -10,6 +11,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.easymock.EasyMock;
 import org.junit.Before;
@@ -37,10 +39,15 @@ public class SyntacticAnalyserTest {
     @Before
     public void setUp() throws Exception {
         mockMa = EasyMock.createMock(MorphologicAnalyser.class);
+        grammar = createGrammar();
+        sa = new SyntacticAnalyser(mockMa, grammar);
+    }
+    
+    private static ContextFreeGrammar createGrammar() {
         // A -> s + B
         // B -> s
         // B -> v
-        grammar = new ContextFreeGrammar();
+        ContextFreeGrammar grammar = new ContextFreeGrammar();
         NonTerminal a = new NonTerminal("A");
         NonTerminal b = new NonTerminal("B");
         Terminal subst = new Terminal("s");
@@ -60,8 +67,7 @@ public class SyntacticAnalyserTest {
         grammar.addRule(rule2);
         grammar.addRule(rule3);
         grammar.setStartSymbol(a);
-        
-        sa = new SyntacticAnalyser(mockMa, grammar);
+        return grammar;
     }
     
     @Test
@@ -85,6 +91,21 @@ public class SyntacticAnalyserTest {
         assertEquals(5, m2.getAllStates().size());
     }
 
+    @Test
+    public void testOverrideSyntaxStateMachines() {
+        SyntacticAnalyser custom = new SyntacticAnalyser(mockMa, grammar) {
+            @Override
+            protected List<StateMachine> createSyntaxStateMachines(ContextFreeGrammar g) {
+                List<StateMachine> machines = super.createSyntaxStateMachines(g);
+                StateMachine extra = new StateMachine("C");
+                extra.getInitialState().setAcceptState();
+                machines.add(extra);
+                return machines;
+            }
+        };
+        assertEquals(3, custom.getStackMachine().getSubMachines().size());
+    }
+
     @Test
     public void testAnalyse1() {
         // Criando Tokens da entrada
@@ -208,4 +229,414 @@ public class SyntacticAnalyserTest {
     	// confere o resultado
     	assertEquals("[M1 [M2 [art o]][nc rato]]", synAn.getTree().polishNotation());
     }
+    
+    @Test
+    public void testFactory() {
+        SyntacticAnalyserFactory factory = new SyntacticAnalyserFactory(grammar, 1);
+        TokenMorph token1 = token("Eu", "s");
+        TokenMorph token2 = token("fui", "v");
+        
+        MorphologicAnalyser otherMa = EasyMock.createMock(MorphologicAnalyser.class);
+        EasyMock.expect(mockMa.hasMoreTokens()).andReturn(true);
+        EasyMock.expect(mockMa.getNextToken()).andReturn(token1);
+        EasyMock.expect(mockMa.hasMoreTokens()).andReturn(true);
+        EasyMock.expect(mockMa.getNextToken()).andReturn(token2);
+        EasyMock.expect(mockMa.hasMoreTokens()).andReturn(false);
+        EasyMock.expect(otherMa.hasMoreTokens()).andReturn(true);
+        EasyMock.expect(otherMa.getNextToken()).andReturn(token2);
+        EasyMock.expect(otherMa.hasMoreTokens()).andReturn(false);
+        EasyMock.replay(mockMa, otherMa);
+        
+        // Both analysers share the machine, but not the tree
+        SyntacticAnalyser sa1 = factory.acquire(mockMa);
+        SyntacticAnalyser sa2 = factory.acquire(otherMa);
+        assertTrue(sa1.getStackMachine() == sa2.getStackMachine());
+        assertFalse(sa2.analyse());
+        assertTrue(sa1.analyse());
+        assertEquals("[A [s Eu][B [v fui]]]", sa1.getTree().polishNotation());
+        
+        factory.release(sa1);
+        factory.release(sa2);
+        assertEquals(1, factory.getPoolSize());
+        SyntacticAnalyser sa3 = factory.acquire(mockMa);
+        assertTrue(sa3 == sa1);
+        assertEquals(0, sa3.getTree().getRoot().getNumberOfChildren());
+        assertEquals(0, factory.getPoolSize());
+        
+        EasyMock.verify(mockMa, otherMa);
+    }
+    
+    @Test
+    public void testFactoryParsers() {
+        SyntacticAnalyserFactory factory = new SyntacticAnalyserFactory(grammar, 1);
+        MorphologicAnalyser otherMa = EasyMock.createMock(MorphologicAnalyser.class);
+        for (int i = 0; i < 2; i++) {
+            expectSentence(mockMa, word("Eu", "s"), word("fui", "v"));
+        }
+        for (int i = 0; i < 3; i++) {
+            expectSentence(otherMa, word("fui", "v"));
+        }
+        EasyMock.replay(mockMa, otherMa);
+        
+        // The analysers of a factory know its grammar and share its parsers
+        SyntacticAnalyser sa1 = factory.acquire(mockMa);
+        SyntacticAnalyser sa2 = factory.acquire(otherMa);
+        assertTrue(sa1.analyseLL());
+        assertEquals("[A [s Eu][B [v fui]]]", sa1.getTree().polishNotation());
+        assertFalse(sa2.analyseLL());
+        sa1.reset();
+        sa2.reset();
+        assertTrue(sa1.analyseCYK());
+        assertEquals("[A [s Eu][B [v fui]]]", sa1.getTree().polishNotation());
+        assertFalse(sa2.analyseCYK());
+        sa2.reset();
+        List<ParseError> errors = sa2.analyseRecovering();
+        assertEquals(1, errors.size());
+        assertEquals(ParseError.Kind.INSERTED, errors.get(0).getKind());
+        assertEquals("[A [s ][B [v fui]]]", sa2.getTree().polishNotation());
+        
+        EasyMock.verify(mockMa, otherMa);
+    }
+    
+    @Test
+    public void testBacktrack() {
+        // S -> X + c
+        // X -> a + b
+        // X -> b
+        ContextFreeGrammar g = new ContextFreeGrammar();
+        NonTerminal s = new NonTerminal("S");
+        NonTerminal x = new NonTerminal("X");
+        Terminal a = new Terminal("a");
+        Terminal b = new Terminal("b");
+        Terminal c = new Terminal("c");
+        g.addNonTerminal(s);
+        g.addNonTerminal(x);
+        g.addTerminal(a);
+        g.addTerminal(b);
+        g.addTerminal(c);
+        ProductionRule rule1 = new ProductionRule(s);
+        rule1.add(x);
+        rule1.add(c);
+        ProductionRule rule2 = new ProductionRule(x);
+        rule2.add(a);
+        rule2.add(b);
+        ProductionRule rule3 = new ProductionRule(x);
+        rule3.add(b);
+        g.addRule(rule1);
+        g.addRule(rule2);
+        g.addRule(rule3);
+        g.setStartSymbol(s);
+        
+        // The first word can be "a" or "b"; only "b" leads to an analysis
+        expectSentence(mockMa, word("w1", "a", "b"), word("w2", "c"));
+        EasyMock.replay(mockMa);
+        
+        SyntacticAnalyser analyser = new SyntacticAnalyser(mockMa, g);
+        assertTrue(analyser.analyse2());
+        // Nothing is left from the reading "a"
+        assertEquals("[S [X [b w1]][c w2]]", analyser.getTree().polishNotation());
+        
+        EasyMock.verify(mockMa);
+    }
+    
+    @Test
+    public void testAnalyseAll() {
+        expectSentence(mockMa, word("Eu", "v", "s"), word("fui", "v"));
+        EasyMock.replay(mockMa);
+        
+        assertTrue(sa.analyseAll());
+        assertEquals("[A [s Eu][B [v fui]]]", sa.getTree().polishNotation());
+        assertFalse(sa.getForest().getRoot().isAmbiguous());
+        
+        EasyMock.verify(mockMa);
+    }
+
+    @Test
+    public void testAnalyseCYK() {
+        expectSentence(mockMa, word("Eu", "v", "s"), word("fui", "v"));
+        EasyMock.replay(mockMa);
+        
+        assertTrue(sa.analyseCYK());
+        assertEquals("[A [s Eu][B [v fui]]]", sa.getTree().polishNotation());
+        
+        EasyMock.verify(mockMa);
+    }
+
+    @Test
+    public void testAnalyseViterbi() {
+        // A grammar of its own, so the probability does not leak into the other tests
+        ContextFreeGrammar probabilistic = createGrammar();
+        for (ProductionRule rule : probabilistic.getRules()) {
+            if (rule.toString().equals("B -> v"))
+                rule.setProbability(0.7);
+        }
+        SyntacticAnalyser analyser = new SyntacticAnalyser(mockMa, probabilistic);
+        TokenMorph reading1 = token("fui", "v");
+        reading1.setProperty("weight", "0.2");
+        TokenMorph reading2 = token("fui", "s");
+        reading2.setProperty("weight", "0.8");
+        for (int i = 0; i < 2; i++) {
+            expectSentence(mockMa, word("Eu", "s"), new TokenMorph[] {reading1, reading2});
+        }
+        EasyMock.replay(mockMa);
+        
+        // B -> v is more probable, 0.7 against 0.3
+        assertTrue(analyser.analyseViterbi());
+        assertEquals("[A [s Eu][B [v fui]]]", analyser.getTree().polishNotation());
+        assertEquals(2, analyser.getForest().countTrees().intValue());
+        
+        // But the reading as s weighs more: 0.3 * 0.8 against 0.7 * 0.2
+        analyser.setReadingScorer(new WeightScorer());
+        assertTrue(analyser.analyseViterbi());
+        assertEquals("[A [s Eu][B [s fui]]]", analyser.getTree().polishNotation());
+        
+        EasyMock.verify(mockMa);
+    }
+
+    @Test
+    public void testWeightScorer() {
+        WeightScorer scorer = new WeightScorer();
+        TokenMorph token = token("Eu", "s");
+        assertEquals(0, scorer.score(token), 0);
+        token.setProperty("weight", "0.5");
+        assertEquals(Math.log(0.5), scorer.score(token), 1e-9);
+        for (String weight : new String[] {"0", "-0.5", "Infinity"}) {
+            token.setProperty("weight", weight);
+            try {
+                scorer.score(token);
+                fail(weight);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    @Test
+    public void testAnalyseRecovering() {
+        expectSentence(mockMa, word("Eu", "s"), word("bom", "adj"), word("fui", "v"));
+        expectSentence(mockMa, word("fui", "v"));
+        expectSentence(mockMa, word("Eu", "s"));
+        EasyMock.replay(mockMa);
+        
+        // The adjective fits nowhere
+        List<ParseError> errors = sa.analyseRecovering();
+        assertEquals(1, errors.size());
+        assertEquals(ParseError.Kind.SKIPPED, errors.get(0).getKind());
+        assertEquals(1, errors.get(0).getWord());
+        assertEquals("[A [s Eu][ERROR [adj bom]][B [v fui]]]", sa.getTree().polishNotation());
+        
+        // The subject is missing
+        sa.reset();
+        errors = sa.analyseRecovering();
+        assertEquals(1, errors.size());
+        assertEquals(ParseError.Kind.INSERTED, errors.get(0).getKind());
+        assertEquals("s", errors.get(0).getSymbol());
+        assertEquals("[A [s ][B [v fui]]]", sa.getTree().polishNotation());
+        
+        // The sentence ends too soon
+        sa.reset();
+        errors = sa.analyseRecovering();
+        assertEquals(1, errors.size());
+        assertEquals(ParseError.Kind.ABANDONED, errors.get(0).getKind());
+        assertEquals("A", errors.get(0).getSymbol());
+        assertEquals("[A [s Eu][ERROR ]]", sa.getTree().polishNotation());
+        
+        EasyMock.verify(mockMa);
+    }
+
+    @Test
+    public void testAnalyseTiered() {
+        expectSentence(mockMa, word("Eu", "s"), word("fui", "v"));
+        for (int i = 0; i < 2; i++) {
+            expectSentence(mockMa, word("Eu", "v", "s"), word("fui", "v"));
+        }
+        expectSentence(mockMa, word("fui", "v"));
+        EasyMock.replay(mockMa);
+        
+        assertEquals(TierStatistics.Tier.FIRST_READING, sa.analyseTiered());
+        assertEquals("[A [s Eu][B [v fui]]]", sa.getTree().polishNotation());
+        
+        // The first reading of the first word is wrong
+        sa.reset();
+        assertEquals(TierStatistics.Tier.BACKTRACKING, sa.analyseTiered());
+        assertEquals("[A [s Eu][B [v fui]]]", sa.getTree().polishNotation());
+        
+        // Without budget for backtracking, the generalized parser finds the analysis
+        sa.reset();
+        assertEquals(TierStatistics.Tier.GENERALIZED, sa.analyseTiered(new ParseBudget(0, ParseBudget.UNLIMITED)));
+        assertEquals("[A [s Eu][B [v fui]]]", sa.getTree().polishNotation());
+        
+        sa.reset();
+        assertEquals(null, sa.analyseTiered());
+        
+        TierStatistics statistics = sa.getTierStatistics();
+        assertEquals(4, statistics.getSentences());
+        assertEquals(1, statistics.getHits(TierStatistics.Tier.FIRST_READING));
+        assertEquals(3, statistics.getAttempts(TierStatistics.Tier.BACKTRACKING));
+        assertEquals(1, statistics.getHits(TierStatistics.Tier.BACKTRACKING));
+        assertEquals(0.5, statistics.getHitRate(TierStatistics.Tier.GENERALIZED), 1e-9);
+        assertEquals(1, statistics.getRejected());
+        
+        EasyMock.verify(mockMa);
+    }
+
+    @Test
+    public void testAnalyseBeam() {
+        // The first reading of fui is approximate, so it comes second
+        TokenMorph[] fui = {new TokenMorph("fui", "", attributes("v"), true), token("fui", "s")};
+        for (int i = 0; i < 3; i++) {
+            expectSentence(mockMa, word("Eu", "s"), fui);
+        }
+        EasyMock.replay(mockMa);
+        
+        List<SyntaxTree> trees = sa.analyseBeam(4, 2);
+        assertEquals(2, trees.size());
+        assertEquals("[A [s Eu][B [s fui]]]", trees.get(0).polishNotation());
+        assertEquals("[A [s Eu][B [v fui]]]", trees.get(1).polishNotation());
+        assertTrue(sa.getTree() == trees.get(0));
+        
+        // A beam of one keeps only the best configuration
+        sa.reset();
+        trees = sa.analyseBeam(1, 2);
+        assertEquals(1, trees.size());
+        assertEquals("[A [s Eu][B [s fui]]]", sa.getTree().polishNotation());
+        
+        // In the optimized machines both readings of fui lead to the same configuration, which is kept once
+        SyntacticAnalyser optimized = new SyntacticAnalyserFactory(grammar).newAnalyser(mockMa);
+        trees = optimized.analyseBeam(4, 2);
+        assertEquals(1, trees.size());
+        assertEquals("[A [s Eu][B [s fui]]]", trees.get(0).polishNotation());
+        
+        EasyMock.verify(mockMa);
+    }
+
+    @Test
+    public void testBudget() {
+        for (int i = 0; i < 3; i++) {
+            expectSentence(mockMa, word("Eu", "s"), word("fui", "v"));
+        }
+        EasyMock.replay(mockMa);
+        
+        ParseOutcome outcome = sa.analyse2(new ParseBudget());
+        assertEquals(ParseOutcome.Status.ACCEPTED, outcome.getStatus());
+        assertEquals("[A [s Eu][B [v fui]]]", outcome.getTree().polishNotation());
+        assertTrue(outcome.getSteps() > 0);
+        
+        // The budget runs out after the first word
+        sa.reset();
+        outcome = sa.analyse2(new ParseBudget(0, ParseBudget.UNLIMITED));
+        assertEquals(ParseOutcome.Status.BUDGET_EXHAUSTED, outcome.getStatus());
+        assertEquals(1, outcome.getWordsRead());
+        assertEquals(2, outcome.getLength());
+        assertEquals("[A [s Eu]]", outcome.getTree().polishNotation());
+        assertTrue(sa.getTree() == outcome.getTree());
+        
+        sa.reset();
+        ParseBudget cancelled = new ParseBudget();
+        cancelled.cancel();
+        outcome = sa.analyse2(cancelled);
+        assertEquals(ParseOutcome.Status.BUDGET_EXHAUSTED, outcome.getStatus());
+        assertEquals(0, outcome.getWordsRead());
+        
+        EasyMock.verify(mockMa);
+    }
+
+    @Test
+    public void testBudgetTimeout() {
+        // Long timeouts do not overflow into the past
+        assertFalse(new ParseBudget(ParseBudget.UNLIMITED, Long.MAX_VALUE / 1000).start(0).isExhausted(0));
+        assertFalse(new ParseBudget(ParseBudget.UNLIMITED, Long.MAX_VALUE - 1).start(0).isExhausted(0));
+        assertFalse(new ParseBudget(ParseBudget.UNLIMITED, 60000).start(0).isExhausted(0));
+    }
+
+    @Test
+    public void testAnalyseLL() {
+        expectSentence(mockMa, word("Eu", "s"), word("fui", "v"));
+        // Both readings fit B, so analyse2 decides
+        expectSentence(mockMa, word("Eu", "s"), word("fui", "v", "s"));
+        EasyMock.replay(mockMa);
+        
+        assertTrue(sa.analyseLL());
+        assertEquals("[A [s Eu][B [v fui]]]", sa.getTree().polishNotation());
+        sa.reset();
+        assertTrue(sa.analyseLL());
+        assertEquals("[A [s Eu][B [v fui]]]", sa.getTree().polishNotation());
+        
+        EasyMock.verify(mockMa);
+    }
+
+    @Test
+    public void testAnalyseParallel() {
+        expectSentence(mockMa, word("Eu", "v", "s"), word("fui", "v", "s"));
+        expectSentence(mockMa, word("fui", "v", "s"));
+        EasyMock.replay(mockMa);
+        
+        // With one thread, the readings are tried in order, so the first one that is accepted wins
+        ForkJoinPool pool = new ForkJoinPool(1);
+        assertTrue(sa.analyseParallel(pool));
+        assertEquals("[A [s Eu][B [v fui]]]", sa.getTree().polishNotation());
+        
+        sa.reset();
+        assertFalse(sa.analyseParallel(pool));
+        
+        EasyMock.verify(mockMa);
+    }
+
+    @Test
+    public void testParallelBudget() {
+        for (int i = 0; i < 3; i++) {
+            expectSentence(mockMa, word("Eu", "v", "s"), word("fui", "v", "s"));
+        }
+        EasyMock.replay(mockMa);
+        
+        ForkJoinPool pool = new ForkJoinPool(2);
+        // The tasks stop before the first word
+        ParseBudget cancelled = new ParseBudget();
+        cancelled.cancel();
+        assertFalse(sa.analyseParallel(pool, cancelled));
+        
+        // The budget runs out after the first word
+        sa.reset();
+        assertFalse(sa.analyseParallel(pool, new ParseBudget(0, ParseBudget.UNLIMITED)));
+        
+        sa.reset();
+        sa.setMemoCapacity(0);
+        assertTrue(sa.analyseParallel(pool, new ParseBudget(1000, ParseBudget.UNLIMITED)));
+        
+        EasyMock.verify(mockMa);
+    }
+
+    /**
+     * @return attributes of a token of the category
+     */
+    private static Map<String, String> attributes(String category) {
+        Map<String, String> attributes = new HashMap<String, String>();
+        attributes.put("cat", category);
+        return attributes;
+    }
+
+    private static TokenMorph token(String lexeme, String category) {
+        return new TokenMorph(lexeme, "", attributes(category), false);
+    }
+
+    /**
+     * @return one reading of the word for each category, in order
+     */
+    private static TokenMorph[] word(String lexeme, String... categories) {
+        TokenMorph[] readings = new TokenMorph[categories.length];
+        for (int j = 0; j < categories.length; j++) {
+            readings[j] = token(lexeme, categories[j]);
+        }
+        return readings;
+    }
+
+    /**
+     * Expects the morphological analyser to give the words of one sentence through getNextTokens
+     */
+    private static void expectSentence(MorphologicAnalyser ma, TokenMorph[]... words) {
+        for (TokenMorph[] readings : words) {
+            EasyMock.expect(ma.hasMoreTokens()).andReturn(true);
+            EasyMock.expect(ma.getNextTokens()).andReturn(readings);
+        }
+        EasyMock.expect(ma.hasMoreTokens()).andReturn(false);
+    }
 }
@@ -0,0 +1,148 @@
+package br.usp.language.syntax.chart;
+
+import static br.usp.language.syntax.grammar.GrammarFixtures.input;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.usp.language.automata.SymbolTable;
+import br.usp.language.syntax.grammar.ChomskyNormalForm;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.Epsilon;
+import br.usp.language.syntax.grammar.NonTerminal;
+import br.usp.language.syntax.grammar.ProductionElement;
+import br.usp.language.syntax.grammar.ProductionRule;
+import br.usp.language.syntax.grammar.Terminal;
+import br.usp.language.syntax.tree.SyntaxTreeNode;
+
+public class CYKParserTest {
+
+    ChomskyNormalForm normalForm;
+
+    CYKParser parser;
+
+    SymbolTable symbols;
+
+    @Before
+    public void setUp() throws Exception {
+        // S -> A + x + A
+        // S -> B
+        // A -> a
+        // A -> epsilon
+        // B -> b
+        ContextFreeGrammar g = new ContextFreeGrammar();
+        NonTerminal s = new NonTerminal("S");
+        NonTerminal a = new NonTerminal("A");
+        NonTerminal b = new NonTerminal("B");
+        Terminal ta = new Terminal("a");
+        Terminal tb = new Terminal("b");
+        Terminal x = new Terminal("x");
+        g.addNonTerminal(s);
+        g.addNonTerminal(a);
+        g.addNonTerminal(b);
+        g.addTerminal(ta);
+        g.addTerminal(tb);
+        g.addTerminal(x);
+        ProductionRule rule1 = new ProductionRule(s);
+        rule1.add(a);
+        rule1.add(x);
+        rule1.add(a);
+        ProductionRule rule2 = new ProductionRule(s);
+        rule2.add(b);
+        ProductionRule rule3 = new ProductionRule(a);
+        rule3.add(ta);
+        ProductionRule rule4 = new ProductionRule(a);
+        rule4.add(new Epsilon());
+        ProductionRule rule5 = new ProductionRule(b);
+        rule5.add(tb);
+        g.addRule(rule1);
+        g.addRule(rule2);
+        g.addRule(rule3);
+        g.addRule(rule4);
+        g.addRule(rule5);
+        g.setStartSymbol(s);
+
+        normalForm = new ChomskyNormalForm(g);
+        parser = new CYKParser(normalForm);
+        symbols = parser.getGrammar().getSymbolTable();
+    }
+
+    @Test
+    public void testNormalForm() {
+        assertFalse(normalForm.acceptsEmpty());
+        for (ProductionRule rule : normalForm.getGrammar().getRules()) {
+            int size = rule.getProducts().size();
+            assertTrue(rule.toString(), size == 1 || size == 2);
+            for (ProductionElement e : rule.getProducts()) {
+                assertEquals(rule.toString(), size == 1, e.getType() == ProductionElement.TERMINAL);
+            }
+        }
+    }
+
+    @Test
+    public void testParse() {
+        assertTrue(parser.parse(input(symbols, "x"), null).isAccepted());
+        assertTrue(parser.parse(input(symbols, "a", "x"), null).isAccepted());
+        assertTrue(parser.parse(input(symbols, "a", "x", "a"), null).isAccepted());
+        assertFalse(parser.parse(input(symbols, "a", "a"), null).isAccepted());
+        assertFalse(parser.parse(input(symbols), null).isAccepted());
+        assertNull(parser.parse(input(symbols, "b", "x"), null).toTree());
+    }
+
+    @Test
+    public void testTree() {
+        // The auxiliary non-terminals are left out and the unit rule S -> B is put back
+        assertEquals("[S [B [b ]]]", parser.parse(input(symbols, "b"), null).toTree().polishNotation());
+        assertEquals("[S [x ][A [a ]]]", parser.parse(input(symbols, "x|b", "a"), null).toTree().polishNotation());
+    }
+
+    @Test
+    public void testParallel() {
+        // L -> L + L
+        // L -> a
+        ContextFreeGrammar g = new ContextFreeGrammar();
+        NonTerminal l = new NonTerminal("L");
+        Terminal a = new Terminal("a");
+        g.addNonTerminal(l);
+        g.addTerminal(a);
+        ProductionRule rule1 = new ProductionRule(l);
+        rule1.add(l);
+        rule1.add(l);
+        ProductionRule rule2 = new ProductionRule(l);
+        rule2.add(a);
+        g.addRule(rule1);
+        g.addRule(rule2);
+        g.setStartSymbol(l);
+
+        // Long enough for the diagonals to be split among the threads
+        parser = new CYKParser(new ChomskyNormalForm(g), new ForkJoinPool(4));
+        symbols = parser.getGrammar().getSymbolTable();
+        String[] words = new String[4 * CYKParser.THRESHOLD];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "a";
+        }
+        Chart chart = parser.parse(input(symbols, words), null);
+        assertTrue(chart.isAccepted());
+        for (int start = 0; start < words.length; start++) {
+            assertTrue(chart.derives(symbols.getId("L"), start, words.length - start));
+        }
+        assertEquals(2 * words.length - 1, count(chart.toTree().getRoot()));
+
+        words[words.length / 2] = "b";
+        assertFalse(parser.parse(input(symbols, words), null).isAccepted());
+    }
+
+    private int count(SyntaxTreeNode node) {
+        int count = node.isLeaf() ? 0 : 1;
+        for (SyntaxTreeNode child : node.getChildNodes()) {
+            count += count(child);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,111 @@
+package br.usp.language.syntax.chunk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.GrammarLoader;
+import br.usp.language.syntax.grammar.NonTerminal;
+import br.usp.language.syntax.grammar.ProductionRule;
+import br.usp.language.syntax.grammar.Terminal;
+
+public class ChunkerTest {
+
+    ContextFreeGrammar grammar;
+
+    @Before
+    public void setUp() throws Exception {
+        grammar = GrammarLoader.load("resources/gramatica_luft2.txt");
+    }
+
+    private static List<TokenMorph[]> sentence(String... words) {
+        List<TokenMorph[]> sentence = new ArrayList<TokenMorph[]>();
+        for (String word : words) {
+            String[] categories = word.split("/");
+            TokenMorph[] readings = new TokenMorph[categories.length];
+            for (int j = 0; j < categories.length; j++) {
+                Map<String, String> attribs = new HashMap<String, String>();
+                attribs.put("cat", categories[j]);
+                readings[j] = new TokenMorph(word, "", attribs, false);
+            }
+            sentence.add(readings);
+        }
+        return sentence;
+    }
+
+    @Test
+    public void testCascade() {
+        Chunker chunker = new Chunker(grammar, "SS", "SP", "SV");
+        // o gato viu a casa com o cão
+        List<Chunk> chunks = chunker.chunk(sentence("art", "nc", "v", "art", "nc", "prep", "art", "nc"));
+        assertEquals("[SS[0,2), SV[2,8)]", chunks.toString());
+        assertEquals("[SS[3,5), SP[5,8)]", chunks.get(1).getChildren().toString());
+        assertEquals("[SS[6,8)]", chunks.get(1).getChildren().get(1).getChildren().toString());
+
+        // The object and the complement can be missing; the adverb is in no chunk
+        chunks = chunker.chunk(sentence("np", "adv", "v"));
+        assertEquals("[SS[0,1), SV[2,3)]", chunks.toString());
+    }
+
+    @Test
+    public void testReadings() {
+        Chunker chunker = new Chunker(grammar, "SS");
+        // The longest chunk is taken, whichever reading it needs
+        List<Chunk> chunks = chunker.chunk(sentence("v/art", "adj/nc", "v"));
+        assertEquals("[SS[0,2)]", chunks.toString());
+        assertTrue(chunks.get(0).getChildren().isEmpty());
+    }
+
+    @Test
+    public void testDepth() {
+        // With depth 0, the non-terminals inside SS are not put in place, so only pronouns are found
+        Chunker chunker = new Chunker(grammar, 0, "SS");
+        assertEquals("[SS[1,2)]", chunker.chunk(sentence("art", "ppes", "nc")).toString());
+    }
+
+    /**
+     * S -> S c | S d | a: inlining every occurrence of S up to the depth would need 2^20 copies, while the machine of
+     * S at each depth is built once and has few states
+     */
+    @Test(timeout = 10000)
+    public void testRecursiveGrammar() {
+        ContextFreeGrammar g = new ContextFreeGrammar();
+        NonTerminal s = new NonTerminal("S");
+        Terminal a = new Terminal("a");
+        Terminal c = new Terminal("c");
+        Terminal d = new Terminal("d");
+        g.addNonTerminal(s);
+        g.addTerminal(a);
+        g.addTerminal(c);
+        g.addTerminal(d);
+        for (Terminal last : new Terminal[] { c, d }) {
+            ProductionRule rule = new ProductionRule(s);
+            rule.add(s);
+            rule.add(last);
+            g.addRule(rule);
+        }
+        ProductionRule rule = new ProductionRule(s);
+        rule.add(a);
+        g.addRule(rule);
+        g.setStartSymbol(s);
+
+        Chunker chunker = new Chunker(g, 20, "S");
+        assertTrue(chunker.getMachine(0).getAllStates().size() <= 2 * (20 + 2));
+        assertEquals("[S[0,4)]", chunker.chunk(sentence("a", "c", "d", "c")).toString());
+        assertEquals("[S[1,2), S[2,3)]", chunker.chunk(sentence("c", "a", "a")).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownLabel() {
+        new Chunker(grammar, "XX");
+    }
+}
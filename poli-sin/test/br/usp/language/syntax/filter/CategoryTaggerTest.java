@@ -0,0 +1,164 @@
+package br.usp.language.syntax.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.usp.language.morph.MorphologicAnalyser;
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.tree.SyntaxTree;
+import br.usp.language.syntax.tree.SyntaxTreeNode;
+
+public class CategoryTaggerTest {
+
+    CategoryModel model;
+
+    @Before
+    public void setUp() {
+        model = new CategoryModel(3);
+        for (int i = 0; i < 3; i++) {
+            model.add(new String[] { "o", "gato", "caiu" }, new String[] { "art", "nc", "v" });
+            model.add(new String[] { "eu", "o", "vi" }, new String[] { "ppes", "ppes", "v" });
+        }
+        model.add(new String[] { "a", "casa", "caiu" }, new String[] { "art", "nc", "v" });
+    }
+
+    private static TokenMorph token(String lexeme, String category) {
+        Map<String, String> attribs = new HashMap<String, String>();
+        attribs.put("cat", category);
+        return new TokenMorph(lexeme, "", attribs, false);
+    }
+
+    private static String categories(TokenMorph[] readings) {
+        String result = "";
+        for (TokenMorph reading : readings) {
+            result += reading.getType() + " ";
+        }
+        return result.trim();
+    }
+
+    @Test
+    public void testSnapshot() {
+        CategoryModel.Snapshot snapshot = model.snapshot();
+        assertTrue(snapshot == model.snapshot());
+        double before = snapshot.emission("casa", "nc");
+        model.add(new String[] { "a", "casa", "caiu" }, new String[] { "art", "nc", "v" });
+        // A snapshot taken before does not change
+        assertEquals(before, snapshot.emission("casa", "nc"), 0);
+        assertFalse(snapshot == model.snapshot());
+        assertTrue(model.emission("casa", "nc") > before);
+    }
+
+    @Test
+    public void testSnapshotSharesCounts() {
+        // Snapshots taken between the sentences share rows with the model; none of them may see a later sentence
+        String[][] words = { { "o", "gato", "caiu" }, { "eu", "o", "vi" }, { "a", "casa", "caiu" } };
+        String[][] categories = { { "art", "nc", "v" }, { "ppes", "ppes", "v" }, { "art", "nc", "v" } };
+        CategoryModel shared = new CategoryModel(3);
+        CategoryModel plain = new CategoryModel(3);
+        List<CategoryModel.Snapshot> snapshots = new ArrayList<CategoryModel.Snapshot>();
+        List<Double> emissions = new ArrayList<Double>();
+        for (int i = 0; i < 30; i++) {
+            snapshots.add(shared.snapshot());
+            emissions.add(shared.emission("casa", "nc"));
+            shared.add(words[i % 3], categories[i % 3]);
+            plain.add(words[i % 3], categories[i % 3]);
+        }
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertEquals(emissions.get(i), snapshots.get(i).emission("casa", "nc"), 0);
+        }
+        assertEquals(plain.emission("casa", "nc"), shared.emission("casa", "nc"), 0);
+        assertEquals(plain.emission("cão", "nc"), shared.emission("cão", "nc"), 0);
+        assertEquals(plain.emission("o", "ppes"), shared.emission("o", "ppes"), 0);
+        // The weights of the frequencies may be older, but not by much
+        assertEquals(plain.transition("art", "nc", "v"), shared.transition("art", "nc", "v"), 0.05);
+    }
+
+    @Test
+    public void testTag() {
+        CategoryTagger tagger = new CategoryTagger(null, model, 1);
+        // "o" is an article before a noun, even an unknown one
+        List<TokenMorph[]> sentence = new ArrayList<TokenMorph[]>();
+        sentence.add(new TokenMorph[] { token("o", "ppes"), token("o", "art") });
+        sentence.add(new TokenMorph[] { token("cão", "nc") });
+        sentence.add(new TokenMorph[] { token("caiu", "v") });
+        List<TokenMorph[]> tagged = tagger.filter(sentence);
+        assertEquals("art", categories(tagged.get(0)));
+        assertEquals("nc", categories(tagged.get(1)));
+
+        // ... and a pronoun after another one
+        sentence.set(0, new TokenMorph[] { token("eu", "ppes") });
+        sentence.add(1, new TokenMorph[] { token("o", "art"), token("o", "ppes") });
+        sentence.remove(2);
+        tagged = tagger.filter(sentence);
+        assertEquals("ppes", categories(tagged.get(1)));
+        assertEquals(2, tagger.getPrunedCount());
+
+        // With a larger k, every reading is kept, the best first
+        tagger = new CategoryTagger(null, model, 2);
+        tagged = tagger.filter(sentence);
+        assertEquals("ppes art", categories(tagged.get(1)));
+        assertEquals(0, tagger.getPrunedCount());
+    }
+
+    @Test
+    public void testLearnFromTree() {
+        CategoryModel learnt = new CategoryModel(2);
+        SyntaxTreeNode root = new SyntaxTreeNode("S");
+        SyntaxTreeNode subject = new SyntaxTreeNode("SN");
+        subject.addChild(new SyntaxTreeNode("art", token("a", "art")));
+        subject.addChild(new SyntaxTreeNode("nc", token("casa", "nc")));
+        root.addChild(subject);
+        root.addChild(new SyntaxTreeNode("v", token("caiu", "v")));
+        // Left out
+        root.addChild(new SyntaxTreeNode("ERROR"));
+        learnt.add(new SyntaxTree(root));
+        learnt.add(new SyntaxTree(root));
+
+        assertTrue(learnt.transition("<s>", "art", "nc") > learnt.transition("<s>", "art", "v"));
+        assertTrue(learnt.emission("A", "art") > learnt.emission("casa", "art"));
+        assertTrue(learnt.transition("nc", "v", "<s>") > learnt.transition("nc", "v", "ERROR"));
+    }
+
+    @Test
+    public void testDecorator() {
+        MorphologicAnalyser mockMa = EasyMock.createMock(MorphologicAnalyser.class);
+        TokenMorph[] word1 = { token("o", "ppes"), token("o", "art") };
+        TokenMorph[] word2 = { token("gato", "nc") };
+
+        // o gato; o
+        EasyMock.expect(mockMa.hasMoreTokens()).andReturn(true);
+        EasyMock.expect(mockMa.getNextTokens()).andReturn(word1);
+        EasyMock.expect(mockMa.hasMoreTokens()).andReturn(true);
+        EasyMock.expect(mockMa.getNextTokens()).andReturn(word2);
+        EasyMock.expect(mockMa.hasMoreTokens()).andReturn(false);
+        EasyMock.expect(mockMa.hasMoreTokens()).andReturn(true);
+        EasyMock.expect(mockMa.getNextTokens()).andReturn(word1);
+        EasyMock.expect(mockMa.hasMoreTokens()).andReturn(false);
+        EasyMock.replay(mockMa);
+
+        CategoryTagger tagger = new CategoryTagger(mockMa, model, 1);
+        assertTrue(tagger.hasMoreTokens());
+        assertEquals("art", tagger.lookNextToken().getType());
+        assertEquals("art", categories(tagger.getNextTokens()));
+        assertTrue(tagger.hasMoreTokens());
+        assertEquals("nc", tagger.getNextToken().getType());
+        assertFalse(tagger.hasMoreTokens());
+
+        assertTrue(tagger.hasMoreTokens());
+        assertEquals(1, tagger.getNextTokens().length);
+        assertFalse(tagger.hasMoreTokens());
+        assertEquals(2, tagger.getPrunedCount());
+
+        EasyMock.verify(mockMa);
+    }
+}
@@ -0,0 +1,101 @@
+package br.usp.language.syntax.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.usp.language.morph.MorphologicAnalyser;
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.GrammarLoader;
+
+public class GrammarFilterTest {
+
+    ContextFreeGrammar grammar;
+
+    List<TokenMorph[]> sentence;
+
+    @Before
+    public void setUp() throws Exception {
+        grammar = GrammarLoader.load("resources/gramatica_simples.txt");
+        // o gato viu a bela
+        sentence = new ArrayList<TokenMorph[]>();
+        sentence.add(readings("o", "ppes", "art"));
+        sentence.add(readings("gato", "nc", "adj", "xyz"));
+        sentence.add(readings("viu", "v", "nc"));
+        sentence.add(readings("a", "art", "ppes", "prep"));
+        sentence.add(readings("bela", "adj", "nc"));
+    }
+
+    private static TokenMorph[] readings(String lexeme, String... categories) {
+        TokenMorph[] readings = new TokenMorph[categories.length];
+        for (int j = 0; j < categories.length; j++) {
+            Map<String, String> attribs = new HashMap<String, String>();
+            attribs.put("cat", categories[j]);
+            readings[j] = new TokenMorph(lexeme, "", attribs, false);
+        }
+        return readings;
+    }
+
+    private static String categories(List<TokenMorph[]> words) {
+        String result = "";
+        for (TokenMorph[] readings : words) {
+            for (TokenMorph reading : readings) {
+                result += reading.getType() + " ";
+            }
+            result += "| ";
+        }
+        return result.trim();
+    }
+
+    @Test
+    public void testTerminals() {
+        GrammarFilter filter = new GrammarFilter(null, grammar);
+        assertEquals("ppes art | nc adj | v nc | art ppes | adj nc |", categories(filter.filter(sentence)));
+        assertEquals(2, filter.getPrunedCount());
+    }
+
+    @Test
+    public void testPositional() {
+        GrammarFilter filter = new GrammarFilter(null, grammar, true);
+        assertEquals("art | nc | v | art | nc |", categories(filter.filter(sentence)));
+        assertEquals(7, filter.getPrunedCount());
+
+        // No verb can follow a verb: the sentence has no analysis, so only the terminals are filtered
+        List<TokenMorph[]> wrong = new ArrayList<TokenMorph[]>();
+        wrong.add(readings("viu", "v", "xyz"));
+        wrong.add(readings("viu", "v"));
+        assertEquals("v | v |", categories(filter.filter(wrong)));
+        assertEquals(8, filter.getPrunedCount());
+    }
+
+    @Test
+    public void testDecorator() {
+        MorphologicAnalyser mockMa = EasyMock.createMock(MorphologicAnalyser.class);
+        EasyMock.expect(mockMa.hasMoreTokens()).andReturn(true);
+        EasyMock.expect(mockMa.getNextTokens()).andReturn(sentence.get(0));
+        EasyMock.expect(mockMa.hasMoreTokens()).andReturn(true);
+        EasyMock.expect(mockMa.getNextTokens()).andReturn(readings("x", "xyz"));
+        EasyMock.expect(mockMa.hasMoreTokens()).andReturn(false);
+        EasyMock.replay(mockMa);
+
+        GrammarFilter filter = new GrammarFilter(mockMa, grammar, true);
+        assertTrue(filter.hasMoreTokens());
+        assertEquals(2, filter.getNextTokens().length);
+        // A word without terminals keeps its readings
+        assertEquals("xyz", filter.getNextToken().getType());
+        assertFalse(filter.hasMoreTokens());
+        assertEquals(0, filter.getPrunedCount());
+
+        EasyMock.verify(mockMa);
+    }
+}
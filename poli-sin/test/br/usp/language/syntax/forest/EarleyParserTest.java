@@ -0,0 +1,69 @@
+package br.usp.language.syntax.forest;
+
+import static br.usp.language.syntax.grammar.GrammarFixtures.input;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.Epsilon;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.grammar.NonTerminal;
+import br.usp.language.syntax.grammar.ProductionRule;
+import br.usp.language.syntax.grammar.Terminal;
+
+public class EarleyParserTest extends ForestParserTest {
+
+    @Override
+    protected ForestParser createParser(IndexedGrammar grammar) {
+        return new EarleyParser(grammar);
+    }
+
+    @Test
+    public void testSameRootAsGLL() {
+        int[][] readings = input(symbols, "n", "m|op", "op", "n", "op|m", "n");
+        ParseForest earley = parser.parse(readings, null);
+        ParseForest gll = new GLLParser(grammar).parse(readings, null);
+        assertTrue(earley.isAccepted());
+        assertEquals(gll.getRoot().getPackedNodes().size(), earley.getRoot().getPackedNodes().size());
+    }
+
+    @Test
+    public void testHiddenLeftRecursion() {
+        // S -> A + S + b
+        // S -> x
+        // A -> epsilon
+        ContextFreeGrammar g = new ContextFreeGrammar();
+        NonTerminal s = new NonTerminal("S");
+        NonTerminal a = new NonTerminal("A");
+        Terminal b = new Terminal("b");
+        Terminal x = new Terminal("x");
+        g.addNonTerminal(s);
+        g.addNonTerminal(a);
+        g.addTerminal(b);
+        g.addTerminal(x);
+        ProductionRule rule1 = new ProductionRule(s);
+        rule1.add(a);
+        rule1.add(s);
+        rule1.add(b);
+        ProductionRule rule2 = new ProductionRule(s);
+        rule2.add(x);
+        ProductionRule rule3 = new ProductionRule(a);
+        rule3.add(new Epsilon());
+        g.addRule(rule1);
+        g.addRule(rule2);
+        g.addRule(rule3);
+        g.setStartSymbol(s);
+
+        grammar = new IndexedGrammar(g);
+        parser = createParser(grammar);
+        symbols = grammar.getSymbolTable();
+        assertTrue(parser.parse(input(symbols, "x"), null).isAccepted());
+        ParseForest forest = parser.parse(input(symbols, "x", "b", "b"), null);
+        assertTrue(forest.isAccepted());
+        assertEquals("[S [S [S [x ]][b ]][b ]]", polish(forest));
+        assertFalse(parser.parse(input(symbols, "b", "x"), null).isAccepted());
+    }
+}
@@ -0,0 +1,77 @@
+package br.usp.language.syntax.forest;
+
+import static br.usp.language.syntax.grammar.GrammarFixtures.input;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.usp.language.automata.SymbolTable;
+import br.usp.language.syntax.grammar.GrammarFixtures;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+
+/**
+ * Tests every ForestParser must pass; subclasses give the parser and add the tests of their engine
+ *
+ * @author Marcelo Li Koga
+ */
+public abstract class ForestParserTest {
+
+    IndexedGrammar grammar;
+
+    ForestParser parser;
+
+    SymbolTable symbols;
+
+    /**
+     * @param grammar
+     * @return parser under test for the grammar
+     */
+    protected abstract ForestParser createParser(IndexedGrammar grammar);
+
+    @Before
+    public void setUp() throws Exception {
+        grammar = new IndexedGrammar(GrammarFixtures.expressions());
+        parser = createParser(grammar);
+        symbols = grammar.getSymbolTable();
+    }
+
+    @Test
+    public void testLeftRecursion() {
+        assertTrue(parser.parse(input(symbols, "n"), null).isAccepted());
+        assertTrue(parser.parse(input(symbols, "n", "m", "op", "n"), null).isAccepted());
+        assertFalse(parser.parse(input(symbols, "n", "op"), null).isAccepted());
+        assertFalse(parser.parse(input(symbols), null).isAccepted());
+    }
+
+    @Test
+    public void testAmbiguity() {
+        // n op n op n has two analyses, which share the root
+        ParseForest forest = parser.parse(input(symbols, "n", "op", "n", "op", "n"), null);
+        assertTrue(forest.isAccepted());
+        assertEquals(0, forest.getRoot().getLeft());
+        assertEquals(5, forest.getRoot().getRight());
+        assertTrue(forest.getRoot().isAmbiguous());
+        assertEquals(2, forest.getRoot().getPackedNodes().size());
+    }
+
+    @Test
+    public void testReadings() {
+        // The second word can be m or op; only m ends an analysis
+        ParseForest forest = parser.parse(input(symbols, "n", "op|x"), null);
+        assertFalse(forest.isAccepted());
+        assertTrue(parser.parse(input(symbols, "n", "m|op"), null).isAccepted());
+        forest = parser.parse(input(symbols, "n", "m|op", "op|x", "n"), null);
+        assertTrue(forest.isAccepted());
+        assertEquals("[E [E [n ][M [m ]]][op ][E [n ]]]", polish(forest));
+    }
+
+    /**
+     * Polish notation of the first tree; leaves have no tokens in these tests
+     */
+    protected static String polish(ParseForest forest) {
+        return forest.toTree().polishNotation();
+    }
+}
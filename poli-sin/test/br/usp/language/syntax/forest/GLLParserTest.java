@@ -0,0 +1,55 @@
+package br.usp.language.syntax.forest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.GrammarFixtures;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.grammar.ProductionRule;
+import br.usp.language.syntax.grammar.Terminal;
+
+public class GLLParserTest extends ForestParserTest {
+
+    @Override
+    protected ForestParser createParser(IndexedGrammar grammar) {
+        return new GLLParser(grammar);
+    }
+
+    @Test
+    public void testNullable() {
+        assertTrue(grammar.isNullable(symbols.getId("M")));
+        assertFalse(grammar.isNullable(symbols.getId("E")));
+    }
+
+    @Test
+    public void testRuleOrder() {
+        // Rules are numbered in the order they were added to the grammar
+        String[] left = { "E", "E", "M", "M" };
+        int[] length = { 3, 2, 1, 0 };
+        for (int r = 0; r < grammar.getRuleCount(); r++) {
+            assertEquals(left[r], grammar.getName(grammar.getLeft(r)));
+            assertEquals(length[r], grammar.getRight(r).length);
+        }
+    }
+
+    @Test
+    public void testUnknownSymbol() {
+        ContextFreeGrammar g = GrammarFixtures.expressions();
+        ProductionRule rule = new ProductionRule(g.getNonTerminal("M"));
+        rule.add(new Terminal("x"));
+        g.addRule(rule);
+        int size = g.getSymbolTable().size();
+        try {
+            new IndexedGrammar(g);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // The shared table is not changed
+            assertEquals(size, g.getSymbolTable().size());
+        }
+    }
+}
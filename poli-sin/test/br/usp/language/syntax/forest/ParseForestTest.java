@@ -0,0 +1,144 @@
+package br.usp.language.syntax.forest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.usp.language.automata.SymbolTable;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.grammar.NonTerminal;
+import br.usp.language.syntax.grammar.ProductionRule;
+import br.usp.language.syntax.grammar.Terminal;
+import br.usp.language.syntax.tree.SyntaxTree;
+
+public class ParseForestTest {
+
+    IndexedGrammar grammar;
+
+    SymbolTable symbols;
+
+    @Before
+    public void setUp() throws Exception {
+        // E -> E + op + E
+        // E -> n
+        // E -> F
+        // F -> E
+        ContextFreeGrammar g = new ContextFreeGrammar();
+        NonTerminal e = new NonTerminal("E");
+        NonTerminal f = new NonTerminal("F");
+        Terminal n = new Terminal("n");
+        Terminal op = new Terminal("op");
+        g.addNonTerminal(e);
+        g.addNonTerminal(f);
+        g.addTerminal(n);
+        g.addTerminal(op);
+        ProductionRule rule1 = new ProductionRule(e);
+        rule1.add(e);
+        rule1.add(op);
+        rule1.add(e);
+        ProductionRule rule2 = new ProductionRule(e);
+        rule2.add(n);
+        ProductionRule rule3 = new ProductionRule(e);
+        rule3.add(f);
+        ProductionRule rule4 = new ProductionRule(f);
+        rule4.add(e);
+        g.addRule(rule1);
+        g.addRule(rule2);
+        g.addRule(rule3);
+        g.addRule(rule4);
+        g.setStartSymbol(e);
+
+        grammar = new IndexedGrammar(g);
+        symbols = grammar.getSymbolTable();
+    }
+
+    private ParseForest parse(int operators) {
+        int[][] readings = new int[2 * operators + 1][];
+        for (int i = 0; i < readings.length; i++) {
+            readings[i] = new int[] { symbols.getId(i % 2 == 0 ? "n" : "op") };
+        }
+        return new GLLParser(grammar).parse(readings, null);
+    }
+
+    @Test
+    public void testCount() {
+        // The cycle E -> F -> E is not followed, so only the binary trees remain (Catalan numbers)
+        assertEquals(BigInteger.ONE, parse(0).countTrees());
+        assertEquals(BigInteger.valueOf(5), parse(3).countTrees());
+        assertEquals(new BigInteger("6564120420"), parse(20).countTrees());
+        assertEquals(BigInteger.ZERO, new GLLParser(grammar).parse(new int[][] { { symbols.getId("op") } }, null)
+                .countTrees());
+    }
+
+    @Test
+    public void testCycleOrder() {
+        // S -> A | B, A -> B, B -> A | b: each of A and B is counted with the other one in the path
+        ContextFreeGrammar g = new ContextFreeGrammar();
+        NonTerminal s = new NonTerminal("S");
+        NonTerminal a = new NonTerminal("A");
+        NonTerminal b = new NonTerminal("B");
+        Terminal tb = new Terminal("b");
+        g.addNonTerminal(s);
+        g.addNonTerminal(a);
+        g.addNonTerminal(b);
+        g.addTerminal(tb);
+        for (NonTerminal[] rule : new NonTerminal[][] { { s, a }, { s, b }, { a, b }, { b, a } }) {
+            ProductionRule r = new ProductionRule(rule[0]);
+            r.add(rule[1]);
+            g.addRule(r);
+        }
+        ProductionRule rule = new ProductionRule(b);
+        rule.add(tb);
+        g.addRule(rule);
+        g.setStartSymbol(s);
+
+        IndexedGrammar cyclic = new IndexedGrammar(g);
+        ParseForest forest = new GLLParser(cyclic).parse(new int[][] { { cyclic.getSymbolTable().getId("b") } },
+                null);
+        assertEquals(BigInteger.valueOf(2), forest.countTrees());
+        Set<String> trees = new HashSet<String>();
+        for (SyntaxTree tree : forest) {
+            trees.add(tree.polishNotation());
+        }
+        assertEquals(new HashSet<String>(Arrays.asList("[S [A [B [b ]]]]", "[S [B [b ]]]")), trees);
+    }
+
+    @Test
+    public void testIterator() {
+        ParseForest forest = parse(3);
+        Set<String> trees = new HashSet<String>();
+        for (SyntaxTree tree : forest) {
+            trees.add(tree.polishNotation());
+        }
+        assertEquals(5, trees.size());
+        assertEquals(forest.toTree().polishNotation(), forest.iterator().next().polishNotation());
+    }
+
+    @Test
+    public void testGetTree() {
+        ParseForest forest = parse(20);
+        BigInteger last = forest.countTrees().subtract(BigInteger.ONE);
+        assertFalse(forest.getTree(last).polishNotation().equals(forest.getTree(BigInteger.ZERO).polishNotation()));
+        try {
+            forest.getTree(forest.countTrees());
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+        }
+
+        Iterator<SyntaxTree> none = new GLLParser(grammar).parse(new int[0][], null).iterator();
+        assertFalse(none.hasNext());
+        assertNull(new GLLParser(grammar).parse(new int[0][], null).toTree());
+    }
+}
@@ -0,0 +1,176 @@
+package br.usp.language.syntax.forest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.usp.language.automata.SymbolTable;
+import br.usp.language.morph.TokenMorph;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.grammar.NonTerminal;
+import br.usp.language.syntax.grammar.ProductionElement;
+import br.usp.language.syntax.grammar.ProductionRule;
+import br.usp.language.syntax.grammar.Terminal;
+
+public class ViterbiParserTest {
+
+    ContextFreeGrammar g;
+
+    ProductionRule vpObject;
+
+    ProductionRule vpModifier;
+
+    @Before
+    public void setUp() throws Exception {
+        // VP -> v + NP
+        // VP -> VP + PP
+        // NP -> n
+        // NP -> x
+        // NP -> NP + PP
+        // PP -> p + NP
+        g = new ContextFreeGrammar();
+        NonTerminal vp = new NonTerminal("VP");
+        NonTerminal np = new NonTerminal("NP");
+        NonTerminal pp = new NonTerminal("PP");
+        Terminal v = new Terminal("v");
+        Terminal n = new Terminal("n");
+        Terminal x = new Terminal("x");
+        Terminal p = new Terminal("p");
+        g.addNonTerminal(vp);
+        g.addNonTerminal(np);
+        g.addNonTerminal(pp);
+        g.addTerminal(v);
+        g.addTerminal(n);
+        g.addTerminal(x);
+        g.addTerminal(p);
+        vpObject = rule(vp, 0.9, v, np);
+        vpModifier = rule(vp, 0.1, vp, pp);
+        rule(np, 0.6, n);
+        rule(np, 0.1, x);
+        rule(np, 0.3, np, pp);
+        rule(pp, 1.0, p, np);
+        g.setStartSymbol(vp);
+    }
+
+    private ProductionRule rule(NonTerminal generator, double probability, ProductionElement... products) {
+        ProductionRule rule = new ProductionRule(generator);
+        for (ProductionElement e : products) {
+            rule.add(e);
+        }
+        rule.setProbability(probability);
+        g.addRule(rule);
+        return rule;
+    }
+
+    private int[][] input(SymbolTable symbols, String... words) {
+        int[][] readings = new int[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            readings[i] = symbols.getIds(words[i].split("\\|"));
+        }
+        return readings;
+    }
+
+    @Test
+    public void testAttachment() {
+        // NP attachment: 0.9 * 0.3 * 0.6 * 0.6; VP attachment: 0.1 * 0.9 * 0.6 * 0.6
+        ViterbiParser parser = new ViterbiParser(new GLLParser(new IndexedGrammar(g)));
+        ViterbiParser.Result result = parser.parse(input(parser.getGrammar().getSymbolTable(), "v", "n", "p", "n"),
+                null, null);
+        assertTrue(result.isAccepted());
+        assertEquals("[VP [v ][NP [NP [n ]][PP [p ][NP [n ]]]]]", result.getTree().polishNotation());
+        assertEquals(Math.log(0.9 * 0.3 * 0.6 * 0.6), result.getLogProbability(), 1e-9);
+        assertEquals(2, result.getForest().countTrees().intValue());
+
+        // The same sentence, once the modifiers of verbs are more likely
+        vpObject.setProbability(0.5);
+        vpModifier.setProbability(0.5);
+        parser = new ViterbiParser(new EarleyParser(new IndexedGrammar(g)));
+        result = parser.parse(input(parser.getGrammar().getSymbolTable(), "v", "n", "p", "n"), null, null);
+        assertEquals("[VP [VP [v ][NP [n ]]][PP [p ][NP [n ]]]]", result.getTree().polishNotation());
+        assertEquals(Math.log(0.5 * 0.5 * 0.6 * 0.6), result.getLogProbability(), 1e-9);
+    }
+
+    @Test
+    public void testWeights() {
+        ViterbiParser parser = new ViterbiParser(new GLLParser(new IndexedGrammar(g)));
+        int[][] readings = input(parser.getGrammar().getSymbolTable(), "v", "n|x|x");
+        TokenMorph[][] tokens = new TokenMorph[][] { { token("v") },
+                { token("n"), token("x"), token("x") } };
+
+        // Without weights, NP -> n is the best rule
+        ViterbiParser.Result result = parser.parse(readings, tokens, null);
+        assertSame(tokens[1][0], result.getTree().getRoot().getChild(1).getChild(0).getToken());
+
+        // The second x outweighs the rule
+        double[][] weights = { { 0 }, { Math.log(0.1), Math.log(0.5), Math.log(0.9) } };
+        result = parser.parse(readings, tokens, weights);
+        assertEquals("[VP [v v][NP [x x]]]", result.getTree().polishNotation());
+        assertSame(tokens[1][2], result.getTree().getRoot().getChild(1).getChild(0).getToken());
+        assertEquals(Math.log(0.9 * 0.1 * 0.9), result.getLogProbability(), 1e-9);
+    }
+
+    @Test
+    public void testRejected() {
+        ViterbiParser parser = new ViterbiParser(new GLLParser(new IndexedGrammar(g)));
+        ViterbiParser.Result result = parser.parse(input(parser.getGrammar().getSymbolTable(), "v", "p"), null, null);
+        assertFalse(result.isAccepted());
+        assertNull(result.getTree());
+        assertEquals(Double.NEGATIVE_INFINITY, result.getLogProbability(), 0);
+    }
+
+    @Test
+    public void testCycle() {
+        // S -> A (0.9) | B (0.1), A -> B, B -> A (0.5) | b (0.5): the best tree goes through the cycle once
+        g = new ContextFreeGrammar();
+        NonTerminal s = new NonTerminal("S");
+        NonTerminal a = new NonTerminal("A");
+        NonTerminal b = new NonTerminal("B");
+        Terminal tb = new Terminal("b");
+        g.addNonTerminal(s);
+        g.addNonTerminal(a);
+        g.addNonTerminal(b);
+        g.addTerminal(tb);
+        rule(s, 0.9, a);
+        rule(s, 0.1, b);
+        rule(a, 1.0, b);
+        rule(b, 0.5, a);
+        rule(b, 0.5, tb);
+        g.setStartSymbol(s);
+
+        IndexedGrammar grammar = new IndexedGrammar(g);
+        for (ForestParser forestParser : new ForestParser[] { new GLLParser(grammar), new EarleyParser(grammar) }) {
+            ViterbiParser parser = new ViterbiParser(forestParser);
+            ViterbiParser.Result result = parser.parse(input(grammar.getSymbolTable(), "b"), null, null);
+            assertEquals("[S [A [B [b ]]]]", result.getTree().polishNotation());
+            assertEquals(Math.log(0.9 * 0.5), result.getLogProbability(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testMissingProbabilities() {
+        // The rules of NP without probability share what is left
+        for (ProductionRule rule : g.getRules()) {
+            if (rule.getGenerator().getName().equals("NP") && rule.getProducts().size() == 1)
+                rule.setProbability(Double.NaN);
+        }
+        IndexedGrammar grammar = new IndexedGrammar(g);
+        for (int r = 0; r < grammar.getRuleCount(); r++) {
+            if (grammar.getName(grammar.getLeft(r)).equals("NP"))
+                assertEquals(grammar.getRight(r).length == 1 ? 0.35 : 0.3, grammar.getProbability(r), 1e-9);
+        }
+    }
+
+    private static TokenMorph token(String category) {
+        HashMap<String, String> attribs = new HashMap<String, String>();
+        attribs.put("cat", category);
+        return new TokenMorph(category, category, attribs, false);
+    }
+}
@@ -0,0 +1,68 @@
+package br.usp.language.syntax.grammar;
+
+import br.usp.language.automata.SymbolTable;
+
+/**
+ * Grammars and inputs shared by the tests of the parsers
+ *
+ * @author Marcelo Li Koga
+ */
+public final class GrammarFixtures {
+
+    private GrammarFixtures() {
+    }
+
+    /**
+     * Left recursive and ambiguous grammar:
+     *
+     * <pre>
+     * E -> E + op + E
+     * E -> n + M
+     * M -> m
+     * M -> epsilon
+     * </pre>
+     */
+    public static ContextFreeGrammar expressions() {
+        ContextFreeGrammar g = new ContextFreeGrammar();
+        NonTerminal e = new NonTerminal("E");
+        NonTerminal m = new NonTerminal("M");
+        Terminal n = new Terminal("n");
+        Terminal op = new Terminal("op");
+        Terminal tm = new Terminal("m");
+        g.addNonTerminal(e);
+        g.addNonTerminal(m);
+        g.addTerminal(n);
+        g.addTerminal(op);
+        g.addTerminal(tm);
+        ProductionRule rule1 = new ProductionRule(e);
+        rule1.add(e);
+        rule1.add(op);
+        rule1.add(e);
+        ProductionRule rule2 = new ProductionRule(e);
+        rule2.add(n);
+        rule2.add(m);
+        ProductionRule rule3 = new ProductionRule(m);
+        rule3.add(tm);
+        ProductionRule rule4 = new ProductionRule(m);
+        rule4.add(new Epsilon());
+        g.addRule(rule1);
+        g.addRule(rule2);
+        g.addRule(rule3);
+        g.addRule(rule4);
+        g.setStartSymbol(e);
+        return g;
+    }
+
+    /**
+     * @param symbols table of the parser
+     * @param words categories of each word, separated by "|"
+     * @return ids of the categories of each word
+     */
+    public static int[][] input(SymbolTable symbols, String... words) {
+        int[][] readings = new int[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            readings[i] = symbols.getIds(words[i].split("\\|"));
+        }
+        return readings;
+    }
+}
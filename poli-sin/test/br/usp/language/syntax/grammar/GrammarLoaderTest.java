@@ -1,6 +1,10 @@
 package br.usp.language.syntax.grammar;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import org.junit.Test;
 
@@ -16,6 +20,8 @@ public class GrammarLoaderTest {
         assertEquals(5, grammar.getNonTerminals().size());
         assertEquals(6, grammar.getTerminals().size());
         assertEquals(9, grammar.getRules().size());
+        assertEquals(11, grammar.getSymbolTable().size());
+        assertTrue(grammar.getSymbolTable().isNonTerminal(grammar.getSymbolTable().getId("SS")));
     }
     
     @Test 
@@ -27,4 +33,27 @@ public class GrammarLoaderTest {
         assertEquals("a_nc", lines[1]);
         assertEquals("NOME", lines[2]);
     }
+    
+    @Test
+    public void testProbabilities() throws IOException {
+        File file = File.createTempFile("gramatica", ".txt");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        writer.write("SS -> *art* + NOME [0.4]\n");
+        writer.write("SS -> NOME [ 0.6 ]\n");
+        writer.write("NOME -> *nc*\n");
+        writer.close();
+
+        ContextFreeGrammar grammar = GrammarLoader.load(file.getPath());
+        assertEquals(2, grammar.getNonTerminals().size());
+        assertEquals(2, grammar.getTerminals().size());
+        for (ProductionRule rule : grammar.getRules()) {
+            if (rule.toString().equals("SS -> art + NOME"))
+                assertEquals(0.4, rule.getProbability(), 0);
+            else if (rule.toString().equals("SS -> NOME"))
+                assertEquals(0.6, rule.getProbability(), 0);
+            else
+                assertFalse(rule.hasProbability());
+        }
+    }
 }
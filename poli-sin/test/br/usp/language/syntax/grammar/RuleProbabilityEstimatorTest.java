@@ -0,0 +1,116 @@
+package br.usp.language.syntax.grammar;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.usp.language.syntax.tree.SyntaxTree;
+import br.usp.language.syntax.tree.SyntaxTreeNode;
+
+public class RuleProbabilityEstimatorTest {
+
+    IndexedGrammar grammar;
+
+    ProductionRule binary, unary, word, empty;
+
+    @Before
+    public void setUp() throws Exception {
+        // E -> E + op + E
+        // E -> n + M
+        // M -> m
+        // M -> epsilon
+        ContextFreeGrammar g = new ContextFreeGrammar();
+        NonTerminal e = new NonTerminal("E");
+        NonTerminal m = new NonTerminal("M");
+        Terminal n = new Terminal("n");
+        Terminal op = new Terminal("op");
+        Terminal tm = new Terminal("m");
+        g.addNonTerminal(e);
+        g.addNonTerminal(m);
+        g.addTerminal(n);
+        g.addTerminal(op);
+        g.addTerminal(tm);
+        binary = new ProductionRule(e);
+        binary.add(e);
+        binary.add(op);
+        binary.add(e);
+        unary = new ProductionRule(e);
+        unary.add(n);
+        unary.add(m);
+        word = new ProductionRule(m);
+        word.add(tm);
+        empty = new ProductionRule(m);
+        empty.add(new Epsilon());
+        g.addRule(binary);
+        g.addRule(unary);
+        g.addRule(word);
+        g.addRule(empty);
+        g.setStartSymbol(e);
+        grammar = new IndexedGrammar(g);
+    }
+
+    private int index(ProductionRule rule) {
+        for (int r = 0; r < grammar.getRuleCount(); r++) {
+            if (grammar.getRule(r) == rule)
+                return r;
+        }
+        throw new IllegalArgumentException(rule.toString());
+    }
+
+    /**
+     * Tree of E -> n + M, with or without the word of M
+     */
+    private static SyntaxTreeNode leaf(boolean withM) {
+        SyntaxTreeNode node = new SyntaxTreeNode("E");
+        node.addChild(new SyntaxTreeNode("n"));
+        if (withM) {
+            SyntaxTreeNode m = new SyntaxTreeNode("M");
+            m.addChild(new SyntaxTreeNode("m"));
+            node.addChild(m);
+        }
+        return node;
+    }
+
+    @Test
+    public void testEstimate() {
+        // [E [E [n ]][op ][E [n ][M [m ]]]] and [E [n ]]
+        SyntaxTreeNode root = new SyntaxTreeNode("E");
+        root.addChild(leaf(false));
+        root.addChild(new SyntaxTreeNode("op"));
+        root.addChild(leaf(true));
+        RuleProbabilityEstimator estimator = new RuleProbabilityEstimator(grammar, 0);
+        estimator.add(new SyntaxTree(root));
+        estimator.add(new SyntaxTree(leaf(false)));
+
+        assertEquals(1, estimator.getCount(index(binary)), 0);
+        assertEquals(3, estimator.getCount(index(unary)), 0);
+        assertEquals(1, estimator.getCount(index(word)), 0);
+        // M left out of the tree
+        assertEquals(2, estimator.getCount(index(empty)), 0);
+        assertEquals(0, estimator.getUnmatched());
+
+        assertEquals(0.25, estimator.getProbability(index(binary)), 1e-9);
+        assertEquals(0.75, estimator.getProbability(index(unary)), 1e-9);
+        assertEquals(1.0 / 3, estimator.getProbability(index(word)), 1e-9);
+
+        estimator.apply();
+        assertEquals(0.75, unary.getProbability(), 1e-9);
+        grammar = new IndexedGrammar(grammar.getGrammar());
+        assertEquals(0.75, grammar.getProbability(index(unary)), 1e-9);
+    }
+
+    @Test
+    public void testSmoothing() {
+        RuleProbabilityEstimator estimator = new RuleProbabilityEstimator(grammar);
+        estimator.add(new SyntaxTree(leaf(true)));
+        // (1 + 1) / (1 + 2) and (0 + 1) / (1 + 2)
+        assertEquals(2.0 / 3, estimator.getProbability(index(unary)), 1e-9);
+        assertEquals(1.0 / 3, estimator.getProbability(index(binary)), 1e-9);
+
+        SyntaxTreeNode wrong = new SyntaxTreeNode("E");
+        wrong.addChild(new SyntaxTreeNode("op"));
+        estimator.add(new SyntaxTree(wrong));
+        assertEquals(1, estimator.getUnmatched());
+    }
+}
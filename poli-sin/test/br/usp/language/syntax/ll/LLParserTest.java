@@ -0,0 +1,116 @@
+package br.usp.language.syntax.ll;
+
+import static br.usp.language.syntax.grammar.GrammarFixtures.input;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.usp.language.automata.SymbolTable;
+import br.usp.language.syntax.grammar.ContextFreeGrammar;
+import br.usp.language.syntax.grammar.Epsilon;
+import br.usp.language.syntax.grammar.IndexedGrammar;
+import br.usp.language.syntax.grammar.NonTerminal;
+import br.usp.language.syntax.grammar.ProductionRule;
+import br.usp.language.syntax.grammar.Terminal;
+
+public class LLParserTest {
+
+    ContextFreeGrammar g;
+
+    IndexedGrammar grammar;
+
+    SymbolTable symbols;
+
+    @Before
+    public void setUp() throws Exception {
+        // S -> a + b + M
+        // S -> a + c
+        // M -> m
+        // M -> epsilon
+        g = new ContextFreeGrammar();
+        NonTerminal s = new NonTerminal("S");
+        NonTerminal m = new NonTerminal("M");
+        Terminal a = new Terminal("a");
+        Terminal b = new Terminal("b");
+        Terminal c = new Terminal("c");
+        Terminal tm = new Terminal("m");
+        g.addNonTerminal(s);
+        g.addNonTerminal(m);
+        g.addTerminal(a);
+        g.addTerminal(b);
+        g.addTerminal(c);
+        g.addTerminal(tm);
+        ProductionRule rule1 = new ProductionRule(s);
+        rule1.add(a);
+        rule1.add(b);
+        rule1.add(m);
+        ProductionRule rule2 = new ProductionRule(s);
+        rule2.add(a);
+        rule2.add(c);
+        ProductionRule rule3 = new ProductionRule(m);
+        rule3.add(tm);
+        ProductionRule rule4 = new ProductionRule(m);
+        rule4.add(new Epsilon());
+        g.addRule(rule1);
+        g.addRule(rule2);
+        g.addRule(rule3);
+        g.addRule(rule4);
+        g.setStartSymbol(s);
+
+        grammar = new IndexedGrammar(g);
+        symbols = grammar.getSymbolTable();
+    }
+
+    @Test
+    public void testConflicts() {
+        LLTable table = new LLTable(grammar, 1);
+        assertFalse(table.isConflictFree());
+        assertEquals(1, table.getConflicts("S").size());
+        assertEquals("[a]", table.getConflicts("S").get(0).getLookahead().toString());
+        assertEquals(2, table.getConflicts("S").get(0).getRules().size());
+        assertTrue(table.getConflicts("M").isEmpty());
+
+        // Two words tell the rules of S apart
+        assertTrue(new LLTable(grammar, 2).isConflictFree());
+    }
+
+    @Test
+    public void testLeftRecursion() {
+        // M -> M + m
+        ProductionRule rule = new ProductionRule(g.getNonTerminal("M"));
+        rule.add(g.getNonTerminal("M"));
+        rule.add(g.getTerminal("m"));
+        g.addRule(rule);
+        LLTable table = new LLTable(new IndexedGrammar(g), 3);
+        assertTrue(table.getConflicts("M").get(0).isLeftRecursion());
+        assertTrue(table.isConflicting(table.getGrammar().getSymbolTable().getId("M")));
+    }
+
+    @Test
+    public void testParse() {
+        LLParser parser = new LLParser(new LLTable(grammar, 2));
+        LLParser.Result result = parser.parse(input(symbols, "a", "b"), null);
+        assertEquals(LLParser.Status.ACCEPTED, result.getStatus());
+        // M has no words, so it is left out
+        assertEquals("[S [a ][b ]]", result.getTree().polishNotation());
+        assertEquals("[S [a ][b ][M [m ]]]",
+                parser.parse(input(symbols, "a", "b", "m"), null).getTree().polishNotation());
+
+        result = parser.parse(input(symbols, "a", "b", "c"), null);
+        assertEquals(LLParser.Status.REJECTED, result.getStatus());
+        assertNull(result.getTree());
+        assertEquals(2, result.getWord());
+
+        // The second word fits both rules of S
+        result = parser.parse(input(symbols, "a", "b|c"), null);
+        assertEquals(LLParser.Status.CONFLICT, result.getStatus());
+        assertEquals("S", result.getNonTerminal());
+
+        result = new LLParser(new LLTable(grammar, 1)).parse(input(symbols, "a", "c"), null);
+        assertEquals(LLParser.Status.CONFLICT, result.getStatus());
+    }
+}